@@ -0,0 +1,98 @@
+package ust.tad.dockerplugin.analysis;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.PropertySource;
+import ust.tad.dockerplugin.analysis.util.ComponentTypeCache;
+import ust.tad.dockerplugin.benchmark.SyntheticModels;
+import ust.tad.dockerplugin.config.AnalysisConfig;
+import ust.tad.dockerplugin.metrics.AnalysisMetrics;
+import ust.tad.dockerplugin.models.tadm.Component;
+import ust.tad.dockerplugin.models.tadm.TechnologyAgnosticDeploymentModel;
+
+/**
+ * Benchmarks the classification of the Docker images of all components of a model in one analysis
+ * run, as done by the AnalysisService. As the analysis changes the model, a new model is created
+ * before every invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DockerImageAnalysisBenchmark {
+
+  @Param({"10", "1000", "10000", "100000"})
+  private int numberOfComponents;
+
+  private AnnotationConfigApplicationContext context;
+
+  private DockerImageAnalysisService dockerImageAnalysisService;
+
+  private TechnologyAgnosticDeploymentModel tadm;
+
+  @Setup(Level.Trial)
+  public void setUpService() {
+    context = new AnnotationConfigApplicationContext(AnalysisContextConfiguration.class);
+    dockerImageAnalysisService = context.getBean(DockerImageAnalysisService.class);
+  }
+
+  @Setup(Level.Invocation)
+  public void setUpModel() {
+    tadm = SyntheticModels.createModel(numberOfComponents);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public TechnologyAgnosticDeploymentModel analyzeDockerImagesOfAllComponents() throws Exception {
+    ComponentTypeCache componentTypeCache = new ComponentTypeCache(tadm);
+    for (Component component : new ArrayList<>(tadm.getComponents())) {
+      dockerImageAnalysisService.analyzeDockerImageOfComponent(component, componentTypeCache);
+    }
+    componentTypeCache.removeUnusedComponentTypes();
+    return tadm;
+  }
+
+  @Benchmark
+  public TechnologyAgnosticDeploymentModel analyzeAll() {
+    dockerImageAnalysisService.analyzeAll(
+        tadm, tadm.getComponents().stream().map(Component::getId).collect(Collectors.toList()));
+    return tadm;
+  }
+
+  /**
+   * Context with the analysis services, the ObjectMapper configured by Spring Boot, the layer scan
+   * pool and the analysis metrics in a simple registry, but without messaging and the models
+   * service.
+   */
+  @Configuration
+  @PropertySource("classpath:application.properties")
+  @Import({AnalysisConfig.class, AnalysisMetrics.class, JacksonAutoConfiguration.class})
+  @ComponentScan(
+      basePackages = "ust.tad.dockerplugin.analysis",
+      excludeFilters =
+          @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = AnalysisService.class))
+  public static class AnalysisContextConfiguration {
+
+    @Bean
+    public MeterRegistry meterRegistry() {
+      return new SimpleMeterRegistry();
+    }
+  }
+}
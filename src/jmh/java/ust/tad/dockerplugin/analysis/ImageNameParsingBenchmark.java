@@ -0,0 +1,72 @@
+package ust.tad.dockerplugin.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import ust.tad.dockerplugin.analysis.image.ImageReference;
+import ust.tad.dockerplugin.benchmark.SyntheticModels;
+import ust.tad.dockerplugin.models.tadm.Artifact;
+import ust.tad.dockerplugin.models.tadm.Component;
+
+/**
+ * Benchmarks deriving the image identifier and the fileURI from the Docker image names used in the
+ * synthetic models, and parsing these names into image references without the parse cache. The
+ * score is the time for processing all of these image names once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageNameParsingBenchmark {
+
+  private AnnotationConfigApplicationContext context;
+
+  private DockerImageAnalysisService dockerImageAnalysisService;
+
+  private List<Component> components;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    context =
+        new AnnotationConfigApplicationContext(
+            DockerImageAnalysisBenchmark.AnalysisContextConfiguration.class);
+    dockerImageAnalysisService = context.getBean(DockerImageAnalysisService.class);
+    components = new ArrayList<>();
+    for (String imageName : SyntheticModels.imageNames()) {
+      Artifact artifact = new Artifact();
+      artifact.setType("docker_image");
+      artifact.setName(imageName);
+      Component component = new Component();
+      component.setArtifacts(List.of(artifact));
+      components.add(component);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public void parseImageNames(Blackhole blackhole) throws Exception {
+    for (Component component : components) {
+      blackhole.consume(dockerImageAnalysisService.getImageIdentifierFromComponent(component));
+      Artifact artifact = component.getArtifacts().get(0);
+      artifact.setFileURI(null);
+      dockerImageAnalysisService.setFileURIOfDockerImageArtifact(artifact);
+      blackhole.consume(artifact.getFileURI());
+    }
+  }
+
+  @Benchmark
+  public void parseImageReferencesUncached(Blackhole blackhole) {
+    for (String imageName : SyntheticModels.imageNames()) {
+      blackhole.consume(ImageReference.parse(imageName));
+    }
+  }
+}
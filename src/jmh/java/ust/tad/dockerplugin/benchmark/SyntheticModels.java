@@ -0,0 +1,98 @@
+package ust.tad.dockerplugin.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import ust.tad.dockerplugin.models.tadm.Artifact;
+import ust.tad.dockerplugin.models.tadm.Component;
+import ust.tad.dockerplugin.models.tadm.ComponentType;
+import ust.tad.dockerplugin.models.tadm.Operation;
+import ust.tad.dockerplugin.models.tadm.TechnologyAgnosticDeploymentModel;
+
+/**
+ * Creates synthetic technology-agnostic deployment models shaped like the ones produced from
+ * docker-compose files: every component has its own component type and a docker_image artifact.
+ * Most images are well-known database or message broker images in various spellings, the rest are
+ * custom application images. The models are deterministic for a given size.
+ */
+public final class SyntheticModels {
+
+  private static final List<String> IMAGE_NAMES =
+      List.of(
+          "postgres:16",
+          "docker.io/bitnami/postgresql:16.2.0-debian-12-r8",
+          "mysql:8.0",
+          "mongo:7",
+          "redis:7-alpine",
+          "registry.example.com:5000/mirror/rabbitmq:3-management",
+          "kafka",
+          "docker.io/bitnami/kafka:3.9.0-debian-12-r4",
+          "eclipse-mosquitto:2",
+          "nginx:1.25",
+          "ghcr.io/example/orders-api:1.4.2",
+          "example/payment-service:latest",
+          "localhost:5000/app@sha256:4a1c4b21597c1b4415bdbecb28a3296c6b5e23ca4f9feeb599860a1dac6a0108");
+
+  private SyntheticModels() {}
+
+  /**
+   * Image names as they appear in the docker_image artifacts of a synthetic model.
+   *
+   * @return the image names.
+   */
+  public static List<String> imageNames() {
+    return IMAGE_NAMES;
+  }
+
+  /**
+   * Create a model with the given number of components.
+   *
+   * @param numberOfComponents the number of components.
+   * @return the model.
+   */
+  public static TechnologyAgnosticDeploymentModel createModel(int numberOfComponents) {
+    return createModel(numberOfComponents, "");
+  }
+
+  /**
+   * Create a model with the given number of components. The names of components and component
+   * types are prefixed, so that models with overlapping or distinct names can be merged.
+   *
+   * @param numberOfComponents the number of components.
+   * @param namePrefix the prefix for the names of components and component types.
+   * @return the model.
+   */
+  public static TechnologyAgnosticDeploymentModel createModel(
+      int numberOfComponents, String namePrefix) {
+    Random random = new Random(numberOfComponents);
+    TechnologyAgnosticDeploymentModel tadm = new TechnologyAgnosticDeploymentModel();
+    ComponentType baseType = new ComponentType();
+    baseType.setName("BaseType");
+    List<ComponentType> componentTypes = new ArrayList<>(List.of(baseType));
+    List<Component> components = new ArrayList<>();
+    for (int i = 0; i < numberOfComponents; i++) {
+      String imageName = IMAGE_NAMES.get(random.nextInt(IMAGE_NAMES.size()));
+
+      ComponentType componentType = new ComponentType();
+      componentType.setName(namePrefix + "service-" + i);
+      componentType.setParentType(baseType);
+      Operation deploy = new Operation();
+      deploy.setName("deploy");
+      componentType.setOperations(new ArrayList<>(List.of(deploy)));
+      componentTypes.add(componentType);
+
+      Artifact artifact = new Artifact();
+      artifact.setType("docker_image");
+      artifact.setName(imageName);
+
+      Component component = new Component();
+      component.setName(namePrefix + "service-" + i);
+      component.setType(componentType);
+      component.setArtifacts(new ArrayList<>(List.of(artifact)));
+      components.add(component);
+    }
+    tadm.setComponentTypes(componentTypes);
+    tadm.setComponents(components);
+    return tadm;
+  }
+}
@@ -0,0 +1,90 @@
+package ust.tad.dockerplugin.models.tadm;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ust.tad.dockerplugin.benchmark.SyntheticModels;
+
+/**
+ * Benchmarks merging technology-agnostic deployment models and their JSON (de)serialization with
+ * an ObjectMapper configured like the one used for the models service.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TechnologyAgnosticDeploymentModelBenchmark {
+
+  /**
+   * Models to merge, created before every invocation as merging changes them. The merged model
+   * contains the component types of the first model again, so half of the added component types
+   * are merged into existing ones and half are new.
+   */
+  @State(Scope.Thread)
+  public static class MergeState {
+
+    @Param({"10", "1000", "10000", "100000"})
+    private int numberOfComponents;
+
+    private TechnologyAgnosticDeploymentModel tadm;
+
+    private TechnologyAgnosticDeploymentModel otherTADM;
+
+    private List<ComponentType> newComponentTypes;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+      tadm = SyntheticModels.createModel(numberOfComponents);
+      otherTADM = SyntheticModels.createModel(numberOfComponents, "other-");
+      otherTADM.addFromOtherTADM(SyntheticModels.createModel(numberOfComponents));
+      newComponentTypes = new ArrayList<>(otherTADM.getComponentTypes());
+    }
+  }
+
+  /** A model and its JSON representation, created once per trial. */
+  @State(Scope.Benchmark)
+  public static class JsonState {
+
+    @Param({"10", "1000", "10000", "100000"})
+    private int numberOfComponents;
+
+    private ObjectMapper objectMapper;
+
+    private TechnologyAgnosticDeploymentModel tadm;
+
+    private byte[] json;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+      objectMapper = Jackson2ObjectMapperBuilder.json().build();
+      tadm = SyntheticModels.createModel(numberOfComponents);
+      json = objectMapper.writeValueAsBytes(tadm);
+    }
+  }
+
+  @Benchmark
+  public TechnologyAgnosticDeploymentModel addComponentTypes(MergeState state) {
+    state.tadm.addComponentTypes(state.newComponentTypes);
+    return state.tadm;
+  }
+
+  @Benchmark
+  public TechnologyAgnosticDeploymentModel addFromOtherTADM(MergeState state) {
+    state.tadm.addFromOtherTADM(state.otherTADM);
+    return state.tadm;
+  }
+
+  @Benchmark
+  public byte[] serializeToJson(JsonState state) throws Exception {
+    return state.objectMapper.writeValueAsBytes(state.tadm);
+  }
+
+  @Benchmark
+  public TechnologyAgnosticDeploymentModel deserializeFromJson(JsonState state) throws Exception {
+    return state.objectMapper.readValue(state.json, TechnologyAgnosticDeploymentModel.class);
+  }
+}
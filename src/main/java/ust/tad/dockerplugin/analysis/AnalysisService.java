@@ -1,23 +1,28 @@
 package ust.tad.dockerplugin.analysis;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import ust.tad.dockerplugin.analysis.util.MissingBaseTypeException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import ust.tad.dockerplugin.analysis.util.ComponentTypeCache;
 import ust.tad.dockerplugin.analysis.util.MissingComponentsException;
-import ust.tad.dockerplugin.analysis.util.MissingDockerImageException;
 import ust.tad.dockerplugin.analysistask.AnalysisTaskResponseSender;
+import ust.tad.dockerplugin.analysistask.AnalysisTaskStartRequest;
 import ust.tad.dockerplugin.analysistask.TADMEntities;
+import ust.tad.dockerplugin.metrics.AnalysisMetrics;
 import ust.tad.dockerplugin.models.ModelsService;
-import ust.tad.dockerplugin.models.tadm.Component;
 import ust.tad.dockerplugin.models.tadm.TechnologyAgnosticDeploymentModel;
 
-import java.net.URISyntaxException;
-import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Service
 public class AnalysisService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AnalysisService.class);
+
   @Autowired
   private ModelsService modelsService;
 
@@ -27,43 +32,97 @@ public class AnalysisService {
   @Autowired
   private DockerImageAnalysisService dockerImageAnalysisService;
 
-  private TechnologyAgnosticDeploymentModel tadm;
+  @Autowired
+  private Scheduler analysisScheduler;
+
+  @Autowired
+  private AnalysisMetrics analysisMetrics;
 
   /**
-   * Start the analysis of the deployment model.
+   * Start the analysis of the deployment model for a batch of analysis tasks of the same
+   * transformation process.
    * 1. Retrieve internal deployment models from models service
-   * 2. Run the analysis
+   * 2. Run the analysis for the union of the components of all tasks
    * 3. Send updated model to models service
-   * 4. Send AnalysisTaskResponse
+   * 4. Send an AnalysisTaskResponse for each task
+   * Tasks without components to analyze are answered with a failure response right away and are
+   * not part of the batch. The responses are sent concurrently, and the returned Mono completes
+   * once the broker confirmed all of them. The steps are chained without blocking: while the models service is
+   * requested no thread is occupied, and the analysis itself runs on the analysis scheduler. The
+   * tadm is only held by the returned pipeline, so that analysis tasks of different
+   * transformation processes can run concurrently.
    *
-   * @param taskId the id of the analysis task.
    * @param transformationProcessId the id of the transformation process.
-   * @param tadmEntities the entities of the tadm to analyze.
+   * @param analysisTasks the analysis tasks of the transformation process.
+   * @return a Mono completing after the AnalysisTaskResponses were sent and confirmed.
    */
-  public void startAnalysis(
-          UUID taskId,
+  public Mono<Void> startAnalysis(
           UUID transformationProcessId,
-          List<TADMEntities> tadmEntities) {
-    this.tadm = modelsService.getTechnologyAgnosticDeploymentModel(transformationProcessId);
-    try {
-      runAnalysis(tadmEntities);
-    } catch (MissingComponentsException e) {
-      e.printStackTrace();
-      analysisTaskResponseSender.sendFailureResponse(taskId, e.getClass() + ": " + e.getMessage());
-      return;
+          List<AnalysisTaskStartRequest> analysisTasks) {
+    List<UUID> taskIds = new ArrayList<>();
+    Set<String> componentIds = new LinkedHashSet<>();
+    List<Mono<Void>> responses = new ArrayList<>();
+    for (AnalysisTaskStartRequest analysisTask : analysisTasks) {
+      try {
+        componentIds.addAll(getComponentIdsToAnalyze(analysisTask.getTadmEntities()));
+        taskIds.add(analysisTask.getTaskId());
+      } catch (MissingComponentsException e) {
+        LOG.error("Analysis task " + analysisTask.getTaskId() + " failed", e);
+        responses.add(sendResponse(analysisTask.getTaskId(), e));
+      }
+    }
+    if (taskIds.isEmpty()) {
+      return Mono.whenDelayError(responses);
     }
-    modelsService.updateTechnologyAgnosticDeploymentModel(tadm);
-    analysisTaskResponseSender.sendSuccessResponse(taskId);
+    Mono<Void> analysis = modelsService.getTechnologyAgnosticDeploymentModel(transformationProcessId)
+            .switchIfEmpty(Mono.error(() -> new IllegalStateException(
+                    "No technology-agnostic deployment model found for transformation process "
+                            + transformationProcessId)))
+            .publishOn(analysisScheduler)
+            .flatMap(tadm -> Mono.fromCallable(() -> {
+                      runAnalysis(tadm, componentIds);
+                      return tadm;
+                    })
+                    .flatMap(modelsService::updateTechnologyAgnosticDeploymentModel));
+    Mono<Void> analysisResponses = analysis
+            .thenReturn(Optional.<Throwable>empty())
+            .onErrorResume(e -> {
+              LOG.error("Analysis tasks " + taskIds + " failed", e);
+              return Mono.just(Optional.of(e));
+            })
+            .publishOn(analysisScheduler)
+            .flatMap(failure -> Mono.whenDelayError(taskIds.stream()
+                    .map(taskId -> sendResponse(taskId, failure.orElse(null)))
+                    .collect(Collectors.toList())));
+    responses.add(analysisResponses);
+    return Mono.whenDelayError(responses);
   }
 
   /**
-   * Run the analysis by retrieving the components from the tadm that are listed in the given tadm
-   * entities.
+   * Count the result of an analysis task and send its AnalysisTaskResponse.
+   *
+   * @param taskId the id of the analysis task.
+   * @param exception the exception the task failed with or null if it succeeded.
+   * @return a Mono completing when the broker confirmed the response.
+   */
+  private Mono<Void> sendResponse(UUID taskId, Throwable exception) {
+    analysisMetrics.countTaskResult(exception);
+    if (exception == null) {
+      return analysisTaskResponseSender.sendSuccessResponse(taskId);
+    }
+    return analysisTaskResponseSender.sendFailureResponse(
+            taskId, exception.getClass() + ": " + exception.getMessage());
+  }
+
+  /**
+   * Get the ids of the components to analyze from the tadm entities of an analysis task.
    *
    * @param tadmEntities the tadm entities with the list of components to analyze.
+   * @return the ids of the components to analyze.
    * @throws MissingComponentsException if tadmEntities does not contain components to analyze.
    */
-  private void runAnalysis(List<TADMEntities> tadmEntities) throws MissingComponentsException {
+  private List<String> getComponentIdsToAnalyze(List<TADMEntities> tadmEntities)
+          throws MissingComponentsException {
     if (tadmEntities == null) {
       throw new MissingComponentsException("No components to analyze in request.");
     }
@@ -71,20 +130,22 @@ public class AnalysisService {
             tadmEntities.stream().filter(tadmEntities1 -> tadmEntities1.getTadmEntitiesType().equals(
                     "Component")).findFirst();
     if (componentsToAnalyze.isPresent()) {
-      List<String> componentIds = componentsToAnalyze.get().getTadmEntityIds();
-      for (String componentId : componentIds) {
-        Optional<Component> optionalComponentToAnalyze =
-                tadm.getComponents().stream().filter(component -> component.getId().equals(componentId)).findFirst();
-        optionalComponentToAnalyze.ifPresent(component -> {
-          try {
-            this.tadm =
-                    dockerImageAnalysisService.analyzeDockerImageOfComponent(component, tadm);
-          } catch (MissingDockerImageException | MissingBaseTypeException | URISyntaxException ignored) {
-          }
-        });
-      }
+      return componentsToAnalyze.get().getTadmEntityIds();
     } else {
       throw new MissingComponentsException("No components to analyze in request.");
     }
   }
+
+  /**
+   * Run the analysis for the components of the tadm with the given ids.
+   *
+   * @param tadm the tadm of the current analysis tasks.
+   * @param componentIds the ids of the components to analyze.
+   */
+  private void runAnalysis(TechnologyAgnosticDeploymentModel tadm, Collection<String> componentIds) {
+    tadm.startChangeTracking();
+    ComponentTypeCache componentTypeCache = new ComponentTypeCache(tadm);
+    dockerImageAnalysisService.analyzeAll(componentTypeCache, componentIds);
+    componentTypeCache.removeUnusedComponentTypes();
+  }
 }
@@ -1,36 +1,58 @@
 package ust.tad.dockerplugin.analysis;
 
-import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import ust.tad.dockerplugin.analysis.classification.ImageCategory;
+import ust.tad.dockerplugin.analysis.classification.ImageClassifier;
+import ust.tad.dockerplugin.analysis.image.ImageReference;
+import ust.tad.dockerplugin.analysis.image.ImageReferenceParser;
+import ust.tad.dockerplugin.analysis.inspection.ImageConfiguration;
+import ust.tad.dockerplugin.analysis.inspection.ImageInspection;
+import ust.tad.dockerplugin.analysis.inspection.ImageInspector;
+import ust.tad.dockerplugin.analysis.util.ComponentTypeCache;
 import ust.tad.dockerplugin.analysis.util.ComponentTypeProvider;
 import ust.tad.dockerplugin.analysis.util.MissingBaseTypeException;
 import ust.tad.dockerplugin.analysis.util.MissingDockerImageException;
+import ust.tad.dockerplugin.metrics.AnalysisMetrics;
 import ust.tad.dockerplugin.models.tadm.*;
 
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 public class DockerImageAnalysisService {
 
-    @Value("#{${image-identifiers.database}}")
-    private List<String> databaseImageIdentifiers;
+    @Autowired
+    private ImageClassifier imageClassifier;
 
-    @Value("#{${image-identifiers.message-broker}}")
-    private List<String> messageBrokerImageIdentifiers;
+    @Autowired
+    private ImageReferenceParser imageReferenceParser;
 
     @Autowired
     private ComponentTypeProvider componentTypeProvider;
 
+    @Autowired
+    private ImageInspector imageInspector;
+
+    @Autowired
+    private AnalysisMetrics analysisMetrics;
+
     /**
      * Analyze the Docker image of a Component. Based on the name of the Docker image, classify the
-     * Docker image, transform the component accordingly, and add the changes to the given tadm.
+     * Docker image, transform the component accordingly, and add the changes to the given tadm. If
+     * the Docker image is available as a local image archive, its configuration is added to the
+     * component as properties, and used to classify the Docker image if its name does not.
      *
      * @param componentToAnalyze the component containing the Docker image to analyze.
      * @param tadm               the complete tadm.
@@ -42,142 +64,295 @@ public class DockerImageAnalysisService {
     public TechnologyAgnosticDeploymentModel analyzeDockerImageOfComponent(
             Component componentToAnalyze, TechnologyAgnosticDeploymentModel tadm) throws
             MissingDockerImageException, MissingBaseTypeException, URISyntaxException {
-        String imageIdentifier = getImageIdentifierFromComponent(componentToAnalyze);
-        if (databaseImageIdentifiers.contains(imageIdentifier)) {
-            transformComponentWithDatabaseImage(componentToAnalyze, tadm, imageIdentifier);
-        } else if (messageBrokerImageIdentifiers.contains(imageIdentifier)) {
-            transformComponentWithMessageBrokerImage(componentToAnalyze, tadm, imageIdentifier);
-        } else {
-            transformComponentWithoutImageClassification(componentToAnalyze, tadm, imageIdentifier);
+        ComponentTypeCache componentTypeCache = new ComponentTypeCache(tadm);
+        try {
+            return analyzeDockerImageOfComponent(componentToAnalyze, componentTypeCache);
+        } finally {
+            componentTypeCache.removeUnusedComponentTypes();
         }
-        return tadm;
     }
 
     /**
-     * Transform a Component that contains a Docker image classified as a database system and
-     * persist the changes in the given tadm.
+     * Analyze the Docker image of a Component as part of an analysis run over several components
+     * of the same tadm. The component types are resolved through the given cache of the run, which
+     * must be completed with removeUnusedComponentTypes() after the last component was analyzed.
      *
-     * @param componentToAnalyze the component with the Docker image.
-     * @param tadm               the tadm to update with the transformation changes.
-     * @param imageIdentifier    the Docker image identifier.
-     * @throws MissingBaseTypeException if the tadm does not contain a component type 'BaseType'.
+     * @param componentToAnalyze the component containing the Docker image to analyze.
+     * @param componentTypeCache the component type cache of the run over the complete tadm.
+     * @return the updated tadm.
+     * @throws MissingDockerImageException if the Component does not contain a Docker image as an
+     *                                     artifact.
+     * @throws MissingBaseTypeException    if the tadm does not contain a component type 'BaseType'.
      */
-    private void transformComponentWithDatabaseImage(
-            Component componentToAnalyze, TechnologyAgnosticDeploymentModel tadm,
-            String imageIdentifier)
-            throws MissingBaseTypeException, URISyntaxException, MissingDockerImageException {
-        ComponentType databaseSystemType = getOrCreateDatabaseSystemType(tadm);
-        setComponentSpecificType(componentToAnalyze, databaseSystemType, tadm, imageIdentifier);
-        setFileURIOfDockerImageArtifacts(componentToAnalyze);
+    public TechnologyAgnosticDeploymentModel analyzeDockerImageOfComponent(
+            Component componentToAnalyze, ComponentTypeCache componentTypeCache) throws
+            MissingDockerImageException, MissingBaseTypeException, URISyntaxException {
+        ImageReference imageReference = getImageReferenceFromComponent(componentToAnalyze);
+        Optional<ImageInspection> imageInspection = imageInspector.inspect(imageReference);
+        ComponentType classifiedParentType = getOrCreateClassifiedParentType(imageReference,
+                imageInspection, componentTypeCache);
+        applyClassification(componentToAnalyze, classifiedParentType, imageInspection,
+                componentTypeCache, imageReference.getRepository());
+        return componentTypeCache.getTechnologyAgnosticDeploymentModel();
     }
 
     /**
-     * Get the Component Type for the 'Database System' from the given tadm or create it if it is
-     * not present.
+     * Analyze the Docker images of the components of a tadm with the given ids, like
+     * analyzeDockerImageOfComponent for each of them, but inspect and classify each distinct
+     * Docker image only once. The components are analyzed in the given order, and the parent type
+     * of an image is resolved, and created if needed, when its first component is analyzed, so
+     * that the result is the same as analyzing the components one by one. The classification of
+     * each component is timed, see AnalysisMetrics, so the inspection of an image is part of the
+     * duration of its first component.
      *
-     * @param tadm the tadm from which to get the Component Type.
-     * @return the Component Type for the 'Database System'.
-     * @throws MissingBaseTypeException if the tadm does not contain a component type 'BaseType'.
+     * @param tadm         the complete tadm.
+     * @param componentIds the ids of the components to analyze, ids not in the tadm are skipped.
+     * @return the exceptions of the components that could not be analyzed, in the given order.
      */
-    private ComponentType getOrCreateDatabaseSystemType(TechnologyAgnosticDeploymentModel tadm)
-            throws MissingBaseTypeException {
-        Optional<ComponentType> databaseSystemTypeOpt =
-                tadm.getComponentTypes().stream().filter(
-                        componentType -> componentType.getName().equals("DatabaseSystem")).findFirst();
-        if (databaseSystemTypeOpt.isPresent()) {
-            return databaseSystemTypeOpt.get();
-        } else {
-            ComponentType databaseSystemType =
-                    componentTypeProvider.createDatabaseSystemType(getOrCreateSoftwareApplicationType(tadm));
-            tadm.addComponentTypes(List.of(databaseSystemType));
-            return databaseSystemType;
+    public Map<Component, Exception> analyzeAll(TechnologyAgnosticDeploymentModel tadm,
+                                                Collection<String> componentIds) {
+        ComponentTypeCache componentTypeCache = new ComponentTypeCache(tadm);
+        try {
+            return analyzeAll(componentTypeCache, componentIds);
+        } finally {
+            componentTypeCache.removeUnusedComponentTypes();
         }
     }
 
     /**
-     * Transform a Component that contains a Docker image classified as a message broker and
-     * persist the changes in the given tadm.
+     * Analyze the Docker images of the components with the given ids as part of an analysis run,
+     * see analyzeAll(TechnologyAgnosticDeploymentModel, Collection). The component types are
+     * resolved through the given cache of the run, which must be completed with
+     * removeUnusedComponentTypes() afterwards.
      *
-     * @param componentToAnalyze the component with the Docker image.
-     * @param tadm               the tadm to update with the transformation changes.
-     * @param imageIdentifier    the Docker image identifier.
-     * @throws MissingBaseTypeException if the tadm does not contain a component type 'BaseType'.
+     * @param componentTypeCache the component type cache of the run over the complete tadm.
+     * @param componentIds       the ids of the components to analyze, ids not in the tadm are
+     *                           skipped.
+     * @return the exceptions of the components that could not be analyzed, in the given order.
      */
-    private void transformComponentWithMessageBrokerImage(
-            Component componentToAnalyze, TechnologyAgnosticDeploymentModel tadm,
-            String imageIdentifier)
-            throws MissingBaseTypeException, URISyntaxException, MissingDockerImageException {
-        ComponentType messageBrokerType = getOrCreateMessageBrokerType(tadm);
-        setComponentSpecificType(componentToAnalyze, messageBrokerType, tadm, imageIdentifier);
-        setFileURIOfDockerImageArtifacts(componentToAnalyze);
+    public Map<Component, Exception> analyzeAll(ComponentTypeCache componentTypeCache,
+                                                Collection<String> componentIds) {
+        TechnologyAgnosticDeploymentModel tadm =
+                componentTypeCache.getTechnologyAgnosticDeploymentModel();
+        Map<Component, Exception> failures = new LinkedHashMap<>();
+        Map<ImageReference, Optional<ImageInspection>> imageInspections = new HashMap<>();
+        Map<ClassificationKey, ComponentType> parentTypes = new HashMap<>();
+        Map<ClassificationKey, MissingBaseTypeException> parentTypeFailures = new HashMap<>();
+        for (String componentId : componentIds) {
+            Optional<Component> component = tadm.getComponentById(componentId);
+            if (component.isEmpty()) {
+                continue;
+            }
+            long classificationStart = System.nanoTime();
+            Exception failure = null;
+            try {
+                ImageReference imageReference = getImageReferenceFromComponent(component.get());
+                Optional<ImageInspection> imageInspection = imageInspections.computeIfAbsent(
+                        imageReference, imageInspector::inspect);
+                ClassificationKey image =
+                        new ClassificationKey(imageReference.getRepositoryPath(), imageInspection);
+                ComponentType classifiedParentType = parentTypes.get(image);
+                if (classifiedParentType == null) {
+                    MissingBaseTypeException parentTypeFailure = parentTypeFailures.get(image);
+                    if (parentTypeFailure != null) {
+                        throw parentTypeFailure;
+                    }
+                    try {
+                        classifiedParentType = getOrCreateClassifiedParentType(imageReference,
+                                imageInspection, componentTypeCache);
+                    } catch (MissingBaseTypeException e) {
+                        parentTypeFailures.put(image, e);
+                        throw e;
+                    }
+                    parentTypes.put(image, classifiedParentType);
+                }
+                applyClassification(component.get(), classifiedParentType, imageInspection,
+                        componentTypeCache, imageReference.getRepository());
+            } catch (MissingDockerImageException | MissingBaseTypeException
+                     | URISyntaxException e) {
+                failure = e;
+                failures.put(component.get(), e);
+            }
+            analysisMetrics.recordComponentClassification(classificationStart, failure);
+        }
+        return failures;
     }
 
     /**
-     * Get the Component Type for the 'Message Broker' from the given tadm or create it if it is
-     * not present.
+     * Classify a Docker image and get the Component Type of its category, or the
+     * 'Software Application' type if it could not be further classified.
      *
-     * @param tadm the tadm from which to get the Component Type.
-     * @return the Component Type for the 'Message Broker'.
+     * @param imageReference     the reference of the Docker image.
+     * @param imageInspection    the inspection result of the Docker image, if it is available
+     *                           locally.
+     * @param componentTypeCache the component type cache of the tadm.
+     * @return the classified parent type for components with this Docker image.
      * @throws MissingBaseTypeException if the tadm does not contain a component type 'BaseType'.
      */
-    private ComponentType getOrCreateMessageBrokerType(TechnologyAgnosticDeploymentModel tadm)
-            throws MissingBaseTypeException {
-        Optional<ComponentType> messageBrokerTypeOpt =
-                tadm.getComponentTypes().stream().filter(
-                        componentType -> componentType.getName().equals("MessageBroker")).findFirst();
-        if (messageBrokerTypeOpt.isPresent()) {
-            return messageBrokerTypeOpt.get();
+    private ComponentType getOrCreateClassifiedParentType(
+            ImageReference imageReference, Optional<ImageInspection> imageInspection,
+            ComponentTypeCache componentTypeCache) throws MissingBaseTypeException {
+        Optional<ImageCategory> imageCategory =
+                imageClassifier.classify(imageReference.getRepositoryPath());
+        if (imageCategory.isEmpty() && imageInspection.isPresent()) {
+            imageCategory = imageInspector.classifyPackages(imageInspection.get());
+        }
+        if (imageCategory.isEmpty() && imageInspection.isPresent()) {
+            imageCategory = imageInspector.classifyBinaries(imageInspection.get());
+        }
+        if (imageCategory.isEmpty() && imageInspection.isPresent()) {
+            imageCategory = classifyImageConfiguration(imageInspection.get().getConfiguration());
+        }
+        if (imageCategory.isPresent()) {
+            return getOrCreateCategoryType(imageCategory.get(), componentTypeCache);
         } else {
-            ComponentType messageBrokerType =
-                    componentTypeProvider.createMessageBrokerType(getOrCreateSoftwareApplicationType(tadm));
-            tadm.addComponentTypes(List.of(messageBrokerType));
-            return messageBrokerType;
+            return getOrCreateSoftwareApplicationType(componentTypeCache);
+        }
+    }
+
+    /**
+     * Classify a Docker image whose name is not known by the images it is presumably derived from
+     * according to its labels and environment, and otherwise by the well-known ports it exposes.
+     *
+     * @param imageConfiguration the configuration of the Docker image.
+     * @return the category of the Docker image or an empty Optional if it could not be classified.
+     */
+    private Optional<ImageCategory> classifyImageConfiguration(
+            ImageConfiguration imageConfiguration) {
+        for (String repositoryPath : imageConfiguration.getRepositoryPathHints()) {
+            Optional<ImageCategory> imageCategory = imageClassifier.classify(repositoryPath);
+            if (imageCategory.isPresent()) {
+                return imageCategory;
+            }
+        }
+        return imageInspector.classifyExposedPorts(imageConfiguration);
+    }
+
+    /**
+     * Transform a component according to the classification of its Docker image.
+     *
+     * @param component            the analyzed component.
+     * @param classifiedParentType the parent type classified for this component.
+     * @param imageInspection      the inspection result of the Docker image, if it is available
+     *                             locally.
+     * @param componentTypeCache   the component type cache of the tadm.
+     * @param imageIdentifier      the Docker image identifier.
+     * @throws URISyntaxException          if the fileURI of a Docker image artifact cannot be
+     *                                     constructed.
+     * @throws MissingDockerImageException if a Docker image artifact has no name.
+     */
+    private void applyClassification(Component component, ComponentType classifiedParentType,
+                                     Optional<ImageInspection> imageInspection,
+                                     ComponentTypeCache componentTypeCache,
+                                     String imageIdentifier)
+            throws URISyntaxException, MissingDockerImageException {
+        setComponentSpecificType(component, classifiedParentType, componentTypeCache,
+                imageIdentifier);
+        if (imageInspection.isPresent()) {
+            addImageInspectionProperties(component, imageInspection.get());
+        }
+        setFileURIOfDockerImageArtifacts(component);
+        componentTypeCache.getTechnologyAgnosticDeploymentModel().markComponentChanged(component);
+    }
+
+    /**
+     * Add the inspection result of the Docker image of a component as confirmed properties: the
+     * exposed ports, the entrypoint and command, the environment variables as
+     * 'environment.[name]', the labels as 'label.[key]', and the versions of the well-known
+     * packages installed according to its package databases as 'package.[name]'. The well-known
+     * binaries found in its layers are added as a suspected property, as their names alone do not
+     * confirm the software they belong to. Properties the component already has, e.g. from the
+     * deployment model, are kept.
+     *
+     * @param component       the analyzed component.
+     * @param imageInspection the inspection result of its Docker image.
+     */
+    private void addImageInspectionProperties(Component component,
+                                              ImageInspection imageInspection) {
+        ImageConfiguration imageConfiguration = imageInspection.getConfiguration();
+        Map<String, String> properties = new LinkedHashMap<>();
+        if (!imageConfiguration.getExposedPorts().isEmpty()) {
+            properties.put("exposed_ports", String.join(",", imageConfiguration.getExposedPorts()));
+        }
+        if (!imageConfiguration.getEntrypoint().isEmpty()) {
+            properties.put("entrypoint", String.join(" ", imageConfiguration.getEntrypoint()));
+        }
+        if (!imageConfiguration.getCommand().isEmpty()) {
+            properties.put("command", String.join(" ", imageConfiguration.getCommand()));
+        }
+        imageConfiguration.getEnvironment().forEach(
+                (name, value) -> properties.put("environment." + name, value));
+        imageConfiguration.getLabels().forEach(
+                (key, value) -> properties.put("label." + key, value));
+        imageInspector.getWellKnownPackages(imageInspection).forEach(
+                (name, version) -> properties.put("package." + name, version));
+        Set<String> suspectedProperties = new HashSet<>();
+        if (!imageInspection.getBinaries().isEmpty()) {
+            properties.put("binaries", String.join(",", imageInspection.getBinaryNames()));
+            suspectedProperties.add("binaries");
+        }
+
+        List<String> propertyKeys = component.getProperties().stream().map(Property::getKey)
+                .collect(Collectors.toList());
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            if (!propertyKeys.contains(property.getKey())) {
+                try {
+                    component.getProperties().add(new Property(property.getKey(),
+                            PropertyType.STRING, false, property.getValue(),
+                            suspectedProperties.contains(property.getKey())
+                                    ? Confidence.SUSPECTED : Confidence.CONFIRMED));
+                } catch (InvalidPropertyValueException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
         }
     }
 
     /**
-     * Transform a Component that contains a Docker image that could not be further classified and
-     * persist the changes in the given tadm. In this case, the generic 'Software Application'
-     * component type is assigned.
+     * Get the Component Type for an image category, e.g. 'Database System', from the tadm or
+     * create it if it is not present.
      *
-     * @param componentToAnalyze the component with the Docker image.
-     * @param tadm               the tadm to update with the transformation changes.
-     * @param imageIdentifier    the Docker image identifier.
+     * @param imageCategory      the image category.
+     * @param componentTypeCache the component type cache of the tadm.
+     * @return the Component Type for the image category.
      * @throws MissingBaseTypeException if the tadm does not contain a component type 'BaseType'.
      */
-    private void transformComponentWithoutImageClassification(
-            Component componentToAnalyze, TechnologyAgnosticDeploymentModel tadm,
-            String imageIdentifier)
-            throws MissingBaseTypeException, URISyntaxException, MissingDockerImageException {
-        ComponentType softwareApplicationType = getOrCreateSoftwareApplicationType(tadm);
-        setComponentSpecificType(componentToAnalyze, softwareApplicationType,
-                tadm, imageIdentifier);
-        setFileURIOfDockerImageArtifacts(componentToAnalyze);
+    private ComponentType getOrCreateCategoryType(ImageCategory imageCategory,
+                                                  ComponentTypeCache componentTypeCache)
+            throws MissingBaseTypeException {
+        Optional<ComponentType> categoryTypeOpt =
+                componentTypeCache.getComponentTypeByName(imageCategory.getComponentTypeName());
+        if (categoryTypeOpt.isPresent()) {
+            return categoryTypeOpt.get();
+        } else {
+            ComponentType categoryType = componentTypeProvider.createCategoryType(imageCategory,
+                    getOrCreateSoftwareApplicationType(componentTypeCache));
+            componentTypeCache.addComponentType(categoryType);
+            return categoryType;
+        }
     }
 
     /**
-     * Get the Component Type for the 'Software Application' from the given tadm or create it if it
-     * is not present.
+     * Get the Component Type for the 'Software Application' from the tadm or create it if it is
+     * not present. It is assigned to components with Docker images that could not be further
+     * classified.
      *
-     * @param tadm the tadm from which to get the Component Type.
+     * @param componentTypeCache the component type cache of the tadm.
      * @return the Component Type for the 'Software Application'.
      * @throws MissingBaseTypeException if the tadm does not contain a component type 'BaseType'.
      */
-    private ComponentType getOrCreateSoftwareApplicationType(TechnologyAgnosticDeploymentModel tadm)
+    private ComponentType getOrCreateSoftwareApplicationType(ComponentTypeCache componentTypeCache)
             throws MissingBaseTypeException {
         Optional<ComponentType> softwareApplicationTypeOpt =
-                tadm.getComponentTypes().stream().filter(
-                        componentType -> componentType.getName().equals("SoftwareApplication")).findFirst();
+                componentTypeCache.getComponentTypeByName("SoftwareApplication");
         if (softwareApplicationTypeOpt.isPresent()) {
             return softwareApplicationTypeOpt.get();
         } else {
-            Optional<ComponentType> baseType =
-                    tadm.getComponentTypes().stream().filter(
-                            componentType -> componentType.getName().equals("BaseType")).findFirst();
+            Optional<ComponentType> baseType = componentTypeCache.getComponentTypeByName("BaseType");
             if (baseType.isPresent()) {
                 ComponentType softwareApplicationType =
                         componentTypeProvider.createSoftwareApplicationType(baseType.get());
-                tadm.addComponentTypes(List.of(softwareApplicationType));
+                componentTypeCache.addComponentType(softwareApplicationType);
                 return softwareApplicationType;
             } else {
                 throw new MissingBaseTypeException("The given technology-agnostic deployment " +
@@ -187,20 +362,32 @@ public class DockerImageAnalysisService {
     }
 
     /**
-     * From a Docker image name, get the identifier. The identifier is the image name without the
-     * tag and the registry, like so:
-     * [registry]/[identifier]:[tag]
+     * From a Docker image name, get the identifier. The identifier is the name of the image
+     * repository without the registry, the namespaces, the tag, and the digest, like so:
+     * [registry]/[namespaces]/[identifier]:[tag]@[digest]
      *
      * @param component the component that contains the Docker image to analyze as an artifact.
      * @return the Docker image identifier.
      * @throws MissingDockerImageException if the Component does not contain a Docker image as an
      *                                     artifact or the contained artifact/image name is null.
      */
-    private String getImageIdentifierFromComponent(Component component) throws MissingDockerImageException {
+    String getImageIdentifierFromComponent(Component component) throws MissingDockerImageException {
+        return getImageReferenceFromComponent(component).getRepository();
+    }
+
+    /**
+     * Get the parsed reference of the Docker image of a Component.
+     *
+     * @param component the component that contains the Docker image to analyze as an artifact.
+     * @return the Docker image reference.
+     * @throws MissingDockerImageException if the Component does not contain a Docker image as an
+     *                                     artifact or the contained artifact/image name is null.
+     */
+    private ImageReference getImageReferenceFromComponent(Component component)
+            throws MissingDockerImageException {
         Artifact artifact = getDockerImageArtifactFromComponent(component);
         if (artifact.getName() != null) {
-            String[] imageNameParts = artifact.getName().split("/");
-            return imageNameParts[imageNameParts.length - 1].split(":")[0];
+            return imageReferenceParser.parse(artifact.getName());
         } else {
             throw new MissingDockerImageException("Component does not contain a Docker Image with" +
                     " a valid image name to analyze.");
@@ -266,23 +453,21 @@ public class DockerImageAnalysisService {
      * @throws URISyntaxException          if the constructed fileURI string cannot be parsed
      *                                     into a URI.
      */
-    private void setFileURIOfDockerImageArtifact(Artifact artifact)
+    void setFileURIOfDockerImageArtifact(Artifact artifact)
             throws MissingDockerImageException, URISyntaxException {
         if (artifact.getName() == null) {
             throw new MissingDockerImageException("Component does not contain a Docker Image with" +
                     " a valid image name to analyze.");
         } else if (artifact.getFileURI() == null || artifact.getFileURI().toString().equals("-")) {
-            String[] imageNameParts = artifact.getName().split("/");
-            String imageNameWithoutTag = StringUtils.substringBeforeLast(artifact.getName(), ":");
-            if (imageNameParts.length == 1) {
-                artifact.setFileURI(new URI("https://hub.docker.com/_/" + imageNameWithoutTag));
-            } else if (imageNameParts[0].equals("docker.io")) {
+            ImageReference imageReference = imageReferenceParser.parse(artifact.getName());
+            if (imageReference.isDockerHubOfficialImage()) {
+                artifact.setFileURI(new URI("https://hub.docker.com/_/" +
+                        imageReference.getRepository()));
+            } else if (imageReference.isDockerHubImage()) {
                 artifact.setFileURI(new URI("https://hub.docker.com/r/" +
-                        imageNameWithoutTag.replaceFirst("docker.io/", "")));
-            } else if (imageNameParts[0].matches(".*[\\.:].*")) {
-                artifact.setFileURI(new URI(artifact.getName()));
+                        imageReference.getRepositoryPath()));
             } else {
-                artifact.setFileURI(new URI("https://hub.docker.com/r/" + imageNameWithoutTag));
+                artifact.setFileURI(new URI(artifact.getName()));
             }
         }
     }
@@ -296,38 +481,73 @@ public class DockerImageAnalysisService {
      *
      * @param component            the analyzed component.
      * @param classifiedParentType the parent type classified for this component.
-     * @param tadm                 the tadm to update with the transformation changes.
+     * @param componentTypeCache   the component type cache of the tadm to update with the
+     *                             transformation changes.
      * @param imageIdentifier      the Docker image identifier.
      */
     private void setComponentSpecificType(Component component,
                                           ComponentType classifiedParentType,
-                                          TechnologyAgnosticDeploymentModel tadm,
+                                          ComponentTypeCache componentTypeCache,
                                           String imageIdentifier) {
+        TechnologyAgnosticDeploymentModel tadm =
+                componentTypeCache.getTechnologyAgnosticDeploymentModel();
         String componentTypeNewName = imageIdentifier + "-" + classifiedParentType.getName();
         ComponentType oldComponentType = tadm.getComponentTypeById(component.getType().getId());
-        if (tadm.getComponentTypes().stream().anyMatch(componentType ->
-                componentType.getName().equals(componentTypeNewName))) {
-            ComponentType existingComponentType =
-                    tadm.getComponentTypes().stream().filter(componentType ->
-                            componentType.getName().equals(componentTypeNewName)).findFirst().orElseThrow();
+        Optional<ComponentType> existingComponentTypeOpt =
+                componentTypeCache.getComponentTypeByName(componentTypeNewName);
+        if (existingComponentTypeOpt.isPresent()) {
+            ComponentType existingComponentType = existingComponentTypeOpt.get();
             existingComponentType.addPropertiesIfNotPresent(oldComponentType);
             existingComponentType.addOperationsIfNotPresent(oldComponentType);
-            component.setType(existingComponentType);
-            tadm.removeComponentTypeIfUnused(oldComponentType);
-        } else if (tadm.getComponents().stream().filter(componentToTest ->
-                componentToTest.getType().equals(oldComponentType)).count() > 1) {
+            tadm.markComponentTypeChanged(existingComponentType);
+            tadm.setTypeOfComponent(component, existingComponentType);
+            componentTypeCache.removeComponentTypeIfUnused(oldComponentType);
+        } else if (tadm.getComponentsOfType(oldComponentType).size() > 1) {
             ComponentType newComponentType = new ComponentType();
             newComponentType.setName(componentTypeNewName);
             newComponentType.setParentType(classifiedParentType);
             newComponentType.setProperties(new ArrayList<>(component.getProperties()));
             newComponentType.setOperations(oldComponentType.getOperations());
-            tadm.addComponentTypes(List.of(newComponentType));
-            component.setType(newComponentType);
+            componentTypeCache.addComponentType(newComponentType);
+            tadm.setTypeOfComponent(component, newComponentType);
         } else {
-            oldComponentType.setName(componentTypeNewName);
-            oldComponentType.setParentType(classifiedParentType);
+            componentTypeCache.setNameOfComponentType(oldComponentType, componentTypeNewName);
+            tadm.setParentTypeOfComponentType(oldComponentType, classifiedParentType);
             oldComponentType.setProperties(new ArrayList<>(component.getProperties()));
-            component.setType(oldComponentType);
+            tadm.setTypeOfComponent(component, oldComponentType);
+        }
+    }
+
+    /**
+     * The key of the images classified alike within analyzeAll: the repository path the name is
+     * classified by, and the inspection result of the image, if it is available locally.
+     */
+    private static final class ClassificationKey {
+
+        private final String repositoryPath;
+
+        private final Optional<ImageInspection> imageInspection;
+
+        private ClassificationKey(String repositoryPath,
+                                  Optional<ImageInspection> imageInspection) {
+            this.repositoryPath = repositoryPath;
+            this.imageInspection = imageInspection;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if (!(o instanceof ClassificationKey)) {
+                return false;
+            }
+            ClassificationKey that = (ClassificationKey) o;
+            return repositoryPath.equals(that.repositoryPath)
+                    && imageInspection.equals(that.imageInspection);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(repositoryPath, imageInspection);
         }
     }
 }
@@ -0,0 +1,26 @@
+package ust.tad.dockerplugin.analysis.classification;
+
+/**
+ * Categories Docker images are classified into. Each category corresponds to a component type of
+ * the same name that extends the 'SoftwareApplication' component type. If an image matches several
+ * categories, the category declared first wins.
+ */
+public enum ImageCategory {
+  DATABASE_SYSTEM("DatabaseSystem"),
+  MESSAGE_BROKER("MessageBroker"),
+  CACHE("Cache"),
+  WEB_SERVER("WebServer"),
+  SEARCH_ENGINE("SearchEngine"),
+  PROXY("Proxy"),
+  MONITORING("Monitoring");
+
+  private final String componentTypeName;
+
+  ImageCategory(String componentTypeName) {
+    this.componentTypeName = componentTypeName;
+  }
+
+  public String getComponentTypeName() {
+    return componentTypeName;
+  }
+}
@@ -0,0 +1,16 @@
+package ust.tad.dockerplugin.analysis.classification;
+
+import java.util.Optional;
+
+/** Classifies Docker images into categories based on their repository. */
+public interface ImageClassifier {
+
+  /**
+   * Classify a Docker image.
+   *
+   * @param repositoryPath the path of the image repository without registry, tag and digest, e.g.
+   *     'postgres' or 'bitnami/postgresql'.
+   * @return the category of the image or an empty Optional if the image could not be classified.
+   */
+  Optional<ImageCategory> classify(String repositoryPath);
+}
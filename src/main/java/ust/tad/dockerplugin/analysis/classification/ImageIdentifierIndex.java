@@ -0,0 +1,151 @@
+package ust.tad.dockerplugin.analysis.classification;
+
+import java.util.*;
+
+/**
+ * Precompiled index of image identifier patterns mapped to image categories. Supported patterns
+ * are:
+ *
+ * <ul>
+ *   <li>'postgres': an image repository with this name in any namespace
+ *   <li>'bitnami/postgresql': exactly this repository path
+ *   <li>'bitnami/*': every repository in this namespace
+ *   <li>'postgres-*': every repository name with this prefix
+ *   <li>'*-postgres': every repository name with this suffix
+ * </ul>
+ *
+ * In addition, aliases map repository names to other names that are classified instead, e.g.
+ * 'postgis' to 'postgres'. Exact matches take precedence over namespace matches, which take
+ * precedence over prefix and suffix matches. A lookup costs a constant number of hash lookups per
+ * path segment and per distinct prefix or suffix length.
+ */
+public class ImageIdentifierIndex {
+
+  private final Map<String, ImageCategory> exactIdentifiers = new HashMap<>();
+
+  private final Map<String, ImageCategory> namespaces = new HashMap<>();
+
+  private final Map<String, ImageCategory> prefixes = new HashMap<>();
+
+  private final Map<String, ImageCategory> suffixes = new HashMap<>();
+
+  private final Map<String, String> aliases = new HashMap<>();
+
+  private int[] prefixLengths = new int[0];
+
+  private int[] suffixLengths = new int[0];
+
+  /**
+   * Add identifier patterns of a category. Patterns that were already added for another category
+   * keep their first category.
+   *
+   * @param category the category of the images matching the patterns.
+   * @param patterns the identifier patterns.
+   */
+  public void addPatterns(ImageCategory category, Collection<String> patterns) {
+    for (String rawPattern : patterns) {
+      String pattern = rawPattern.trim().toLowerCase(Locale.ROOT);
+      if (pattern.endsWith("/*")) {
+        namespaces.putIfAbsent(pattern.substring(0, pattern.length() - 2), category);
+      } else if (pattern.startsWith("*")) {
+        suffixes.putIfAbsent(pattern.substring(1), category);
+      } else if (pattern.endsWith("*")) {
+        prefixes.putIfAbsent(pattern.substring(0, pattern.length() - 1), category);
+      } else {
+        exactIdentifiers.putIfAbsent(pattern, category);
+      }
+    }
+    prefixLengths = distinctLengths(prefixes.keySet());
+    suffixLengths = distinctLengths(suffixes.keySet());
+  }
+
+  /**
+   * Add aliases for repository names.
+   *
+   * @param aliases the aliases mapped to the repository names they stand for.
+   */
+  public void addAliases(Map<String, String> aliases) {
+    aliases.forEach(
+        (alias, identifier) ->
+            this.aliases.put(
+                alias.trim().toLowerCase(Locale.ROOT), identifier.trim().toLowerCase(Locale.ROOT)));
+  }
+
+  /**
+   * Look up the category of an image repository.
+   *
+   * @param repositoryPath the path of the image repository without registry, tag and digest.
+   * @return the category or an empty Optional if no pattern matches.
+   */
+  public Optional<ImageCategory> lookup(String repositoryPath) {
+    String path = repositoryPath.toLowerCase(Locale.ROOT);
+    String name = path.substring(path.lastIndexOf('/') + 1);
+    ImageCategory category = exactIdentifiers.get(path);
+    if (category == null) {
+      category = exactIdentifiers.get(name);
+    }
+    if (category == null && aliases.containsKey(name)) {
+      category = exactIdentifiers.get(aliases.get(name));
+    }
+    if (category == null) {
+      category = lookupNamespace(path);
+    }
+    if (category == null) {
+      category = lookupPrefix(name);
+    }
+    if (category == null) {
+      category = lookupSuffix(name);
+    }
+    return Optional.ofNullable(category);
+  }
+
+  private ImageCategory lookupNamespace(String path) {
+    if (namespaces.isEmpty()) {
+      return null;
+    }
+    int separator = path.lastIndexOf('/');
+    while (separator > 0) {
+      ImageCategory category = namespaces.get(path.substring(0, separator));
+      if (category != null) {
+        return category;
+      }
+      separator = path.lastIndexOf('/', separator - 1);
+    }
+    return null;
+  }
+
+  private ImageCategory lookupPrefix(String name) {
+    for (int length : prefixLengths) {
+      if (length <= name.length()) {
+        ImageCategory category = prefixes.get(name.substring(0, length));
+        if (category != null) {
+          return category;
+        }
+      }
+    }
+    return null;
+  }
+
+  private ImageCategory lookupSuffix(String name) {
+    for (int length : suffixLengths) {
+      if (length <= name.length()) {
+        ImageCategory category = suffixes.get(name.substring(name.length() - length));
+        if (category != null) {
+          return category;
+        }
+      }
+    }
+    return null;
+  }
+
+  /** Distinct lengths of the given keys, longest first, so that the most specific match wins. */
+  private static int[] distinctLengths(Set<String> keys) {
+    return keys.stream()
+        .mapToInt(String::length)
+        .distinct()
+        .boxed()
+        .sorted(Comparator.reverseOrder())
+        .mapToInt(Integer::intValue)
+        .toArray();
+  }
+}
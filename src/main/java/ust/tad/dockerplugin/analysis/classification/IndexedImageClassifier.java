@@ -0,0 +1,59 @@
+package ust.tad.dockerplugin.analysis.classification;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Image classifier backed by an ImageIdentifierIndex that is built once from the image identifiers
+ * configured per category.
+ */
+@Service
+public class IndexedImageClassifier implements ImageClassifier {
+
+  @Value("#{${image-identifiers.database}}")
+  private List<String> databaseImageIdentifiers;
+
+  @Value("#{${image-identifiers.message-broker}}")
+  private List<String> messageBrokerImageIdentifiers;
+
+  @Value("#{${image-identifiers.cache}}")
+  private List<String> cacheImageIdentifiers;
+
+  @Value("#{${image-identifiers.web-server}}")
+  private List<String> webServerImageIdentifiers;
+
+  @Value("#{${image-identifiers.search-engine}}")
+  private List<String> searchEngineImageIdentifiers;
+
+  @Value("#{${image-identifiers.proxy}}")
+  private List<String> proxyImageIdentifiers;
+
+  @Value("#{${image-identifiers.monitoring}}")
+  private List<String> monitoringImageIdentifiers;
+
+  @Value("#{${image-identifiers.aliases}}")
+  private Map<String, String> imageIdentifierAliases;
+
+  private final ImageIdentifierIndex index = new ImageIdentifierIndex();
+
+  @PostConstruct
+  private void buildIndex() {
+    index.addPatterns(ImageCategory.DATABASE_SYSTEM, databaseImageIdentifiers);
+    index.addPatterns(ImageCategory.MESSAGE_BROKER, messageBrokerImageIdentifiers);
+    index.addPatterns(ImageCategory.CACHE, cacheImageIdentifiers);
+    index.addPatterns(ImageCategory.WEB_SERVER, webServerImageIdentifiers);
+    index.addPatterns(ImageCategory.SEARCH_ENGINE, searchEngineImageIdentifiers);
+    index.addPatterns(ImageCategory.PROXY, proxyImageIdentifiers);
+    index.addPatterns(ImageCategory.MONITORING, monitoringImageIdentifiers);
+    index.addAliases(imageIdentifierAliases);
+  }
+
+  @Override
+  public Optional<ImageCategory> classify(String repositoryPath) {
+    return index.lookup(repositoryPath);
+  }
+}
@@ -0,0 +1,188 @@
+package ust.tad.dockerplugin.analysis.image;
+
+import java.util.Objects;
+
+/**
+ * A parsed reference to a Docker or OCI image, structured as
+ * [registry/][namespace path/]repository[:tag][@digest], e.g.
+ * 'registry.example.com:5000/team/backend/orders:1.4@sha256:4a1c...'. The grammar is defined here:
+ * <a href="https://github.com/distribution/reference/blob/main/reference.go">...</a>
+ *
+ * <p>The first path component is only a registry if it contains a '.' or a ':', or is 'localhost'.
+ * Otherwise, Docker defaults to the Docker Hub registry and the component is part of the namespace
+ * path.
+ */
+public final class ImageReference {
+
+  public static final String DOCKER_HUB_REGISTRY = "docker.io";
+
+  public static final String DOCKER_HUB_OFFICIAL_NAMESPACE = "library";
+
+  private final String name;
+
+  private final String registry;
+
+  private final String namespacePath;
+
+  private final String repository;
+
+  private final String tag;
+
+  private final String digest;
+
+  private ImageReference(
+      String name,
+      String registry,
+      String namespacePath,
+      String repository,
+      String tag,
+      String digest) {
+    this.name = name;
+    this.registry = registry;
+    this.namespacePath = namespacePath;
+    this.repository = repository;
+    this.tag = tag;
+    this.digest = digest;
+  }
+
+  /**
+   * Parse an image name into an image reference. Parsing is lenient: names that do not follow the
+   * grammar, e.g. with a leading '/', still yield the best matching reference.
+   *
+   * @param name the image name.
+   * @return the image reference.
+   */
+  public static ImageReference parse(String name) {
+    int end = name.length();
+    String digest = null;
+    int digestSeparator = name.indexOf('@');
+    if (digestSeparator >= 0) {
+      digest = name.substring(digestSeparator + 1);
+      end = digestSeparator;
+    }
+
+    int start = 0;
+    while (start < end && name.charAt(start) == '/') {
+      start++;
+    }
+    String registry = null;
+    int firstSeparator = name.indexOf('/', start);
+    if (firstSeparator >= 0 && firstSeparator < end && isRegistry(name, start, firstSeparator)) {
+      registry = name.substring(start, firstSeparator);
+      start = firstSeparator + 1;
+    }
+
+    int lastSeparator = name.lastIndexOf('/', end - 1);
+    String tag = null;
+    int tagSeparator = name.lastIndexOf(':', end - 1);
+    if (tagSeparator >= start && tagSeparator > lastSeparator) {
+      tag = name.substring(tagSeparator + 1, end);
+      end = tagSeparator;
+    }
+
+    String namespacePath = "";
+    int repositoryStart = start;
+    if (lastSeparator >= start) {
+      namespacePath = name.substring(start, lastSeparator);
+      repositoryStart = lastSeparator + 1;
+    }
+    return new ImageReference(
+        name, registry, namespacePath, name.substring(repositoryStart, end), tag, digest);
+  }
+
+  private static boolean isRegistry(String name, int start, int end) {
+    for (int i = start; i < end; i++) {
+      char c = name.charAt(i);
+      if (c == '.' || c == ':') {
+        return true;
+      }
+    }
+    return name.startsWith("localhost", start) && end - start == "localhost".length();
+  }
+
+  /** The image name this reference was parsed from. */
+  public String getName() {
+    return name;
+  }
+
+  /** The registry, e.g. 'ghcr.io' or 'localhost:5000', or null if none is given. */
+  public String getRegistry() {
+    return registry;
+  }
+
+  /** The path of namespaces of the repository, e.g. 'bitnami', or an empty String if none. */
+  public String getNamespacePath() {
+    return namespacePath;
+  }
+
+  /** The name of the repository, i.e., the last path component, e.g. 'postgresql'. */
+  public String getRepository() {
+    return repository;
+  }
+
+  /** The tag, e.g. '16.2.0', or null if none is given. */
+  public String getTag() {
+    return tag;
+  }
+
+  /** The digest, e.g. 'sha256:4a1c...', or null if none is given. */
+  public String getDigest() {
+    return digest;
+  }
+
+  /** The path of the repository without registry, tag and digest, e.g. 'bitnami/postgresql'. */
+  public String getRepositoryPath() {
+    return namespacePath.isEmpty() ? repository : namespacePath + "/" + repository;
+  }
+
+  /**
+   * Whether the image is hosted on Docker Hub, either because no registry or 'docker.io' is given.
+   */
+  public boolean isDockerHubImage() {
+    return registry == null || registry.equals(DOCKER_HUB_REGISTRY);
+  }
+
+  /** Whether the image is an official Docker Hub image, e.g. 'postgres' or 'library/postgres'. */
+  public boolean isDockerHubOfficialImage() {
+    return isDockerHubImage()
+        && (namespacePath.isEmpty() || namespacePath.equals(DOCKER_HUB_OFFICIAL_NAMESPACE));
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    ImageReference that = (ImageReference) o;
+    return Objects.equals(registry, that.registry)
+        && Objects.equals(namespacePath, that.namespacePath)
+        && Objects.equals(repository, that.repository)
+        && Objects.equals(tag, that.tag)
+        && Objects.equals(digest, that.digest);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(registry, namespacePath, repository, tag, digest);
+  }
+
+  @Override
+  public String toString() {
+    return "ImageReference{"
+        + "registry='"
+        + registry
+        + '\''
+        + ", namespacePath='"
+        + namespacePath
+        + '\''
+        + ", repository='"
+        + repository
+        + '\''
+        + ", tag='"
+        + tag
+        + '\''
+        + ", digest='"
+        + digest
+        + '\''
+        + '}';
+  }
+}
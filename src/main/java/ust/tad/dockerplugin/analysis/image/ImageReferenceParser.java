@@ -0,0 +1,52 @@
+package ust.tad.dockerplugin.analysis.image;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Parses image names into image references and caches the results, as the same few images are
+ * usually referenced by many components. The cache evicts the least recently used references when
+ * it exceeds the configured size.
+ */
+@Component
+public class ImageReferenceParser {
+
+  @Value("${analysis.image-reference.cache-size}")
+  private int cacheSize;
+
+  private Map<String, ImageReference> cache;
+
+  @PostConstruct
+  private void createCache() {
+    cache =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, ImageReference> eldest) {
+            return size() > cacheSize;
+          }
+        };
+  }
+
+  /**
+   * Parse an image name into an image reference.
+   *
+   * @param name the image name.
+   * @return the image reference.
+   */
+  public ImageReference parse(String name) {
+    synchronized (cache) {
+      ImageReference imageReference = cache.get(name);
+      if (imageReference != null) {
+        return imageReference;
+      }
+    }
+    ImageReference imageReference = ImageReference.parse(name);
+    synchronized (cache) {
+      cache.put(name, imageReference);
+    }
+    return imageReference;
+  }
+}
@@ -0,0 +1,221 @@
+package ust.tad.dockerplugin.analysis.inspection;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarFile;
+
+/**
+ * A local image archive: a tar file as written by 'docker save' or 'skopeo copy ... oci-archive:',
+ * or an OCI image layout directory. Opening a tar file only reads the headers of its entries and
+ * remembers where their contents are, skipping the contents themselves. Single entries are read by
+ * mapping their range of the file into memory, or streamed from their range of the file, e.g.
+ * layers to scan. Thus, the memory needed does not depend on the size of the image.
+ */
+final class ImageArchive {
+
+  private final Path path;
+
+  /** The entries of a tar file by name, or null if the archive is a directory. */
+  private final Map<String, Entry> tarEntries;
+
+  private ImageArchive(Path path, Map<String, Entry> tarEntries) {
+    this.path = path;
+    this.tarEntries = tarEntries;
+  }
+
+  /**
+   * Open an image archive.
+   *
+   * @param path the path of a tar file or an OCI image layout directory.
+   * @return the image archive.
+   * @throws IOException if the headers of the tar file cannot be read.
+   */
+  static ImageArchive open(Path path) throws IOException {
+    if (Files.isDirectory(path)) {
+      return new ImageArchive(path, null);
+    }
+    Map<String, Entry> tarEntries = new HashMap<>();
+    try (TarFile tarFile = new TarFile(path)) {
+      for (TarArchiveEntry tarEntry : tarFile.getEntries()) {
+        if (tarEntry.isFile() && !tarEntry.isSparse()) {
+          tarEntries.put(
+              normalizeName(tarEntry.getName()),
+              new Entry(tarEntry.getDataOffset(), tarEntry.getSize()));
+        }
+      }
+    }
+    return new ImageArchive(path, tarEntries);
+  }
+
+  Path getPath() {
+    return path;
+  }
+
+  /**
+   * Whether the archive contains an entry.
+   *
+   * @param name the name of the entry relative to the root of the archive, e.g. 'index.json'.
+   * @return true if the entry exists.
+   */
+  boolean contains(String name) {
+    if (tarEntries == null) {
+      return Files.isRegularFile(path.resolve(name));
+    }
+    return tarEntries.containsKey(normalizeName(name));
+  }
+
+  /**
+   * Read an entry of the archive.
+   *
+   * @param name the name of the entry relative to the root of the archive, e.g. 'index.json'.
+   * @param maxSize the maximum size of the entry in bytes.
+   * @return the content of the entry mapped into memory, or an empty Optional if there is no such
+   *     entry.
+   * @throws IOException if the entry is larger than the maximum size or cannot be read.
+   */
+  Optional<ByteBuffer> read(String name, long maxSize) throws IOException {
+    Path file = path;
+    long offset = 0;
+    long size;
+    if (tarEntries == null) {
+      file = path.resolve(name).normalize();
+      if (!file.startsWith(path) || !Files.isRegularFile(file)) {
+        return Optional.empty();
+      }
+      size = Files.size(file);
+    } else {
+      Entry entry = tarEntries.get(normalizeName(name));
+      if (entry == null) {
+        return Optional.empty();
+      }
+      offset = entry.offset;
+      size = entry.size;
+    }
+    if (size > maxSize) {
+      throw new IOException(
+          String.format("Entry %s of %s exceeds the maximum size of %d bytes", name, path, maxSize));
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return Optional.of(channel.map(FileChannel.MapMode.READ_ONLY, offset, size));
+    }
+  }
+
+  /**
+   * Open an entry of the archive as a stream, e.g. to scan a layer without mapping it into memory.
+   *
+   * @param name the name of the entry relative to the root of the archive.
+   * @return the stream of the content of the entry, to be closed by the caller.
+   * @throws IOException if there is no such entry or it cannot be opened.
+   */
+  InputStream openStream(String name) throws IOException {
+    if (tarEntries == null) {
+      Path file = path.resolve(name).normalize();
+      if (!file.startsWith(path) || !Files.isRegularFile(file)) {
+        throw new NoSuchFileException(name, null, "No such entry in " + path);
+      }
+      return Files.newInputStream(file);
+    }
+    Entry entry = tarEntries.get(normalizeName(name));
+    if (entry == null) {
+      throw new NoSuchFileException(name, null, "No such entry in " + path);
+    }
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      channel.position(entry.offset);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    return new EntryInputStream(Channels.newInputStream(channel), entry.size);
+  }
+
+  private static String normalizeName(String name) {
+    int start = 0;
+    while (name.startsWith("./", start) || name.startsWith("/", start)) {
+      start += name.charAt(start) == '.' ? 2 : 1;
+    }
+    return name.substring(start);
+  }
+
+  @Override
+  public String toString() {
+    return path.toString();
+  }
+
+  /** The position of the content of a tar entry in the tar file. */
+  private static final class Entry {
+
+    private final long offset;
+
+    private final long size;
+
+    private Entry(long offset, long size) {
+      this.offset = offset;
+      this.size = size;
+    }
+  }
+
+  /** The stream of the content of a tar entry, ending at the end of the entry. */
+  private static final class EntryInputStream extends FilterInputStream {
+
+    private long remaining;
+
+    private EntryInputStream(InputStream in, long size) {
+      super(in);
+      this.remaining = size;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int b = in.read();
+      if (b >= 0) {
+        remaining--;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int read = in.read(b, off, (int) Math.min(len, remaining));
+      if (read > 0) {
+        remaining -= read;
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = in.skip(Math.min(n, remaining));
+      remaining -= skipped;
+      return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return (int) Math.min(in.available(), remaining);
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+  }
+}
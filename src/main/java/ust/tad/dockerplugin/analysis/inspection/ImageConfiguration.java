@@ -0,0 +1,193 @@
+package ust.tad.dockerplugin.analysis.inspection;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import ust.tad.dockerplugin.analysis.image.ImageReference;
+
+/**
+ * The runtime configuration of an image, read from the 'config' object of its Docker or OCI image
+ * configuration: <a
+ * href="https://github.com/opencontainers/image-spec/blob/main/config.md">...</a>
+ */
+public final class ImageConfiguration {
+
+  /** The label naming the image the image was built from. */
+  public static final String BASE_NAME_LABEL = "org.opencontainers.image.base.name";
+
+  /** The label with the human-readable title of the image. */
+  public static final String TITLE_LABEL = "org.opencontainers.image.title";
+
+  private static final List<String> VERSION_VARIABLE_SUFFIXES = List.of("_VERSION", "_MAJOR");
+
+  private final List<String> exposedPorts;
+
+  private final List<String> entrypoint;
+
+  private final List<String> command;
+
+  private final Map<String, String> environment;
+
+  private final Map<String, String> labels;
+
+  @JsonCreator
+  ImageConfiguration(
+      @JsonProperty("exposedPorts") List<String> exposedPorts,
+      @JsonProperty("entrypoint") List<String> entrypoint,
+      @JsonProperty("command") List<String> command,
+      @JsonProperty("environment") Map<String, String> environment,
+      @JsonProperty("labels") Map<String, String> labels) {
+    this.exposedPorts = Collections.unmodifiableList(exposedPorts);
+    this.entrypoint = Collections.unmodifiableList(entrypoint);
+    this.command = Collections.unmodifiableList(command);
+    this.environment = Collections.unmodifiableMap(environment);
+    this.labels = Collections.unmodifiableMap(labels);
+  }
+
+  /**
+   * Create the configuration from an image configuration document.
+   *
+   * @param imageConfig the image configuration document.
+   * @return the configuration, empty if the document has no 'config' object.
+   */
+  static ImageConfiguration fromImageConfig(JsonNode imageConfig) {
+    JsonNode config = imageConfig.path("config");
+    List<String> exposedPorts = new ArrayList<>();
+    config.path("ExposedPorts").fieldNames().forEachRemaining(exposedPorts::add);
+    Map<String, String> environment = new LinkedHashMap<>();
+    for (JsonNode variable : config.path("Env")) {
+      String text = variable.asText();
+      int separator = text.indexOf('=');
+      if (separator > 0) {
+        environment.put(text.substring(0, separator), text.substring(separator + 1));
+      } else if (separator < 0) {
+        environment.put(text, "");
+      }
+    }
+    Map<String, String> labels = new LinkedHashMap<>();
+    Iterator<Map.Entry<String, JsonNode>> labelFields = config.path("Labels").fields();
+    while (labelFields.hasNext()) {
+      Map.Entry<String, JsonNode> label = labelFields.next();
+      labels.put(label.getKey(), label.getValue().asText());
+    }
+    return new ImageConfiguration(
+        exposedPorts,
+        textValues(config.path("Entrypoint")),
+        textValues(config.path("Cmd")),
+        environment,
+        labels);
+  }
+
+  private static List<String> textValues(JsonNode array) {
+    List<String> values = new ArrayList<>();
+    for (JsonNode value : array) {
+      values.add(value.asText());
+    }
+    return values;
+  }
+
+  /** The exposed ports with their protocol, e.g. '5432/tcp'. */
+  public List<String> getExposedPorts() {
+    return exposedPorts;
+  }
+
+  /** The entrypoint, empty if the image does not define one. */
+  public List<String> getEntrypoint() {
+    return entrypoint;
+  }
+
+  /** The default arguments of the entrypoint, empty if the image does not define them. */
+  public List<String> getCommand() {
+    return command;
+  }
+
+  /** The environment variables by name, in the order they are defined in the image. */
+  public Map<String, String> getEnvironment() {
+    return environment;
+  }
+
+  /** The labels by key. */
+  public Map<String, String> getLabels() {
+    return labels;
+  }
+
+  /**
+   * Repository paths the image is presumably derived from, to classify images whose own name is
+   * not known, in the order of their reliability: the repository path of the base image label, the
+   * title label, and the lower-case prefixes of version variables, e.g. 'nginx' for
+   * 'NGINX_VERSION', as set by many official images.
+   *
+   * @return the repository paths.
+   */
+  @JsonIgnore
+  public Set<String> getRepositoryPathHints() {
+    Set<String> hints = new LinkedHashSet<>();
+    String baseName = labels.get(BASE_NAME_LABEL);
+    if (baseName != null && !baseName.isBlank()) {
+      hints.add(ImageReference.parse(baseName.trim()).getRepositoryPath());
+    }
+    String title = labels.get(TITLE_LABEL);
+    if (title != null && !title.isBlank()) {
+      hints.add(title.trim().toLowerCase());
+    }
+    for (String variable : environment.keySet()) {
+      for (String suffix : VERSION_VARIABLE_SUFFIXES) {
+        if (variable.length() > suffix.length() && variable.endsWith(suffix)) {
+          String prefix = variable.substring(0, variable.length() - suffix.length());
+          hints.add(prefix.toLowerCase().replace('_', '-'));
+        }
+      }
+    }
+    return hints;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) return true;
+    if (!(o instanceof ImageConfiguration)) {
+      return false;
+    }
+    ImageConfiguration that = (ImageConfiguration) o;
+    return exposedPorts.equals(that.exposedPorts)
+        && entrypoint.equals(that.entrypoint)
+        && command.equals(that.command)
+        && environment.equals(that.environment)
+        && labels.equals(that.labels);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(exposedPorts, entrypoint, command, environment, labels);
+  }
+
+  @Override
+  public String toString() {
+    return "{"
+        + " exposedPorts='"
+        + exposedPorts
+        + "'"
+        + ", entrypoint='"
+        + entrypoint
+        + "'"
+        + ", command='"
+        + command
+        + "'"
+        + ", environment='"
+        + environment.keySet()
+        + "'"
+        + ", labels='"
+        + labels
+        + "'"
+        + "}";
+  }
+}
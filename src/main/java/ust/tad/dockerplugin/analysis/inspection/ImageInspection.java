@@ -0,0 +1,88 @@
+package ust.tad.dockerplugin.analysis.inspection;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The result of inspecting an image: its configuration and what the scans of its layers found in
+ * the file system of the image, i.e., well-known binaries and the packages installed according to
+ * its package databases.
+ */
+public final class ImageInspection {
+
+  private final ImageConfiguration configuration;
+
+  private final SortedMap<String, String> binaries;
+
+  private final SortedMap<String, String> packages;
+
+  @JsonCreator
+  ImageInspection(
+      @JsonProperty("configuration") ImageConfiguration configuration,
+      @JsonProperty("binaries") Map<String, String> binaries,
+      @JsonProperty("packages") Map<String, String> packages) {
+    this.configuration = configuration;
+    this.binaries = Collections.unmodifiableSortedMap(new TreeMap<>(binaries));
+    this.packages = Collections.unmodifiableSortedMap(new TreeMap<>(packages));
+  }
+
+  public ImageConfiguration getConfiguration() {
+    return configuration;
+  }
+
+  /** The well-known binaries in the file system of the image by their path. */
+  public SortedMap<String, String> getBinaries() {
+    return binaries;
+  }
+
+  /** The names of the well-known binaries in the file system of the image. */
+  @JsonIgnore
+  public SortedSet<String> getBinaryNames() {
+    return new TreeSet<>(binaries.values());
+  }
+
+  /** The versions of the packages installed in the image by their name. */
+  public SortedMap<String, String> getPackages() {
+    return packages;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) return true;
+    if (!(o instanceof ImageInspection)) {
+      return false;
+    }
+    ImageInspection that = (ImageInspection) o;
+    return configuration.equals(that.configuration)
+        && binaries.equals(that.binaries)
+        && packages.equals(that.packages);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(configuration, binaries, packages);
+  }
+
+  @Override
+  public String toString() {
+    return "{"
+        + " configuration='"
+        + configuration
+        + "'"
+        + ", binaries='"
+        + binaries
+        + "'"
+        + ", packages='"
+        + packages
+        + "'"
+        + "}";
+  }
+}
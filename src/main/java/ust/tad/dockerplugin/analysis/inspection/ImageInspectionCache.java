@@ -0,0 +1,200 @@
+package ust.tad.dockerplugin.analysis.inspection;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Persistent cache of image inspection results in the configured directory. As an image or layer
+ * with a given digest never changes, the results are content-addressed: each result is a file
+ * named by its digest, e.g. '[namespace]/sha256/4a1c...', and valid forever. Namespaces separate
+ * kinds of results and their format versions. Files are replaced atomically, so that several
+ * instances of the plugin can share the directory, and results stored by other instances are used
+ * as well.
+ *
+ * <p>The cache evicts the least recently used results when it exceeds the configured size. The
+ * recency survives restarts as the modification time of the files, which is updated on use.
+ */
+@Component
+public class ImageInspectionCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ImageInspectionCache.class);
+
+  private static final Pattern DIGEST = Pattern.compile("([a-z0-9]+):([a-zA-Z0-9=_-]+)");
+
+  private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+  @Value("${analysis.image-inspection.cache.directory}")
+  private String directory;
+
+  @Value("${analysis.image-inspection.cache.max-size}")
+  private long maxSize;
+
+  /** The sizes of the cached files by path, in the order they were used. */
+  private final Map<Path, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+
+  private long size;
+
+  private Path root;
+
+  @PostConstruct
+  private void loadFiles() {
+    if (!isEnabled()) {
+      return;
+    }
+    root = Path.of(directory).toAbsolutePath().normalize();
+    List<Map.Entry<Path, BasicFileAttributes>> existingFiles = new ArrayList<>();
+    try {
+      Files.createDirectories(root);
+      try (Stream<Path> paths = Files.walk(root)) {
+        for (Path path : (Iterable<Path>) paths::iterator) {
+          BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+          if (!attributes.isRegularFile()) {
+            continue;
+          }
+          if (path.getFileName().toString().endsWith(TEMPORARY_FILE_SUFFIX)) {
+            Files.deleteIfExists(path);
+          } else {
+            existingFiles.add(Map.entry(path, attributes));
+          }
+        }
+      }
+    } catch (IOException | UncheckedIOException e) {
+      LOG.warn("Could not load the image inspection cache in {}, disabling it", root, e);
+      root = null;
+      return;
+    }
+    existingFiles.sort(Comparator.comparing(file -> file.getValue().lastModifiedTime()));
+    synchronized (this) {
+      for (Map.Entry<Path, BasicFileAttributes> file : existingFiles) {
+        files.put(file.getKey(), file.getValue().size());
+        size += file.getValue().size();
+      }
+      evict();
+    }
+    LOG.info("Loaded {} image inspection results with {} bytes from {}", files.size(), size, root);
+  }
+
+  public boolean isEnabled() {
+    return directory != null && !directory.isBlank() && maxSize > 0;
+  }
+
+  /**
+   * Get a cached result.
+   *
+   * @param namespace the namespace of the result, e.g. 'images-v1'.
+   * @param digest the digest of the image or layer, e.g. 'sha256:4a1c...'.
+   * @return the result or an empty Optional if it is not cached.
+   */
+  public Optional<byte[]> get(String namespace, String digest) {
+    Path file = resolve(namespace, digest);
+    if (file == null) {
+      return Optional.empty();
+    }
+    synchronized (this) {
+      try {
+        byte[] content = Files.readAllBytes(file);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        Long previousSize = files.put(file, (long) content.length);
+        size += content.length - (previousSize == null ? 0 : previousSize);
+        return Optional.of(content);
+      } catch (NoSuchFileException e) {
+        Long previousSize = files.remove(file);
+        size -= previousSize == null ? 0 : previousSize;
+      } catch (IOException e) {
+        LOG.warn("Could not read the image inspection result {}", file, e);
+      }
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Store a result, replacing a previous result with the same digest. Results larger than the
+   * maximum size of the cache are not stored.
+   *
+   * @param namespace the namespace of the result, e.g. 'images-v1'.
+   * @param digest the digest of the image or layer, e.g. 'sha256:4a1c...'.
+   * @param content the result.
+   */
+  public void put(String namespace, String digest, byte[] content) {
+    Path file = resolve(namespace, digest);
+    if (file == null || content.length > maxSize) {
+      return;
+    }
+    synchronized (this) {
+      try {
+        Files.createDirectories(file.getParent());
+        Path temporaryFile =
+            Files.createTempFile(
+                file.getParent(), file.getFileName().toString(), TEMPORARY_FILE_SUFFIX);
+        try {
+          Files.write(temporaryFile, content);
+          moveAtomically(temporaryFile, file);
+        } finally {
+          Files.deleteIfExists(temporaryFile);
+        }
+      } catch (IOException e) {
+        LOG.warn("Could not write the image inspection result {}", file, e);
+        return;
+      }
+      Long previousSize = files.put(file, (long) content.length);
+      size += content.length - (previousSize == null ? 0 : previousSize);
+      evict();
+    }
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<Path, Long>> eldest = files.entrySet().iterator();
+    while (size > maxSize && eldest.hasNext()) {
+      Map.Entry<Path, Long> file = eldest.next();
+      try {
+        Files.deleteIfExists(file.getKey());
+      } catch (IOException e) {
+        LOG.warn("Could not delete the image inspection result {}", file.getKey(), e);
+      }
+      size -= file.getValue();
+      eldest.remove();
+    }
+  }
+
+  private static void moveAtomically(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /** The file of a result, or null if the cache is disabled or the digest is malformed. */
+  private Path resolve(String namespace, String digest) {
+    if (root == null || digest == null) {
+      return null;
+    }
+    Matcher matcher = DIGEST.matcher(digest);
+    if (!matcher.matches()) {
+      return null;
+    }
+    return root.resolve(namespace).resolve(matcher.group(1)).resolve(matcher.group(2));
+  }
+}
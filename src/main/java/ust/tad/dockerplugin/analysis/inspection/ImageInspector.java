@@ -0,0 +1,675 @@
+package ust.tad.dockerplugin.analysis.inspection;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ust.tad.dockerplugin.analysis.classification.ImageCategory;
+import ust.tad.dockerplugin.analysis.image.ImageReference;
+
+/**
+ * Inspects images available as local image archives, i.e., 'docker save' tar files, OCI image
+ * layouts, and tar files of OCI image layouts, in the configured directory. The archives are
+ * indexed by the names of the images they contain when the first image is inspected, and indexed
+ * again when archives are added, removed or modified, which is checked at most once per refresh
+ * interval. The manifests and image configurations are read, see {@link ImageArchive}, and the
+ * layers are scanned for well-known binaries and package databases, see {@link LayerIndex}. The
+ * results of the most recently inspected images are kept in memory for reuse.
+ *
+ * <p>The inspection results are also stored in the {@link ImageInspectionCache} by the digest of
+ * the image configuration, i.e., the image ID, and the digest of the OCI manifest or index, and
+ * used instead of reading the image again, also after a restart. An image referenced by digest,
+ * e.g. 'postgres@sha256:4a1c...', whose results are cached is not even looked up in the archives.
+ */
+@Service
+public class ImageInspector {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ImageInspector.class);
+
+  private static final String DOCKER_MANIFEST = "manifest.json";
+
+  private static final String OCI_INDEX = "index.json";
+
+  private static final String OCI_LAYOUT = "oci-layout";
+
+  private static final String CONTAINERD_IMAGE_NAME_ANNOTATION = "io.containerd.image.name";
+
+  private static final String REF_NAME_ANNOTATION = "org.opencontainers.image.ref.name";
+
+  private static final Pattern DIGEST = Pattern.compile("[a-z0-9]+:[a-zA-Z0-9=_-]+");
+
+  private static final Pattern BLOB_NAME = Pattern.compile("blobs/([a-z0-9]+)/([a-zA-Z0-9=_-]+)");
+
+  private static final Pattern DOCKER_CONFIG_NAME = Pattern.compile("([a-f0-9]{64})\\.json");
+
+  private static final int MAX_INDEX_DEPTH = 4;
+
+  /** The namespace of the results in the cache, to be changed when their format changes. */
+  private static final String CACHE_NAMESPACE = "images-v5";
+
+  /** The namespace of the results of layer scans stopped at the package database in the cache. */
+  private static final String PARTIAL_CACHE_NAMESPACE = "images-v5-partial";
+
+  /** The namespace of the results without findings in the layers in the cache. */
+  private static final String UNSCANNED_CACHE_NAMESPACE = "images-v4-unscanned";
+
+  @Value("${analysis.image-inspection.directory}")
+  private String directory;
+
+  @Value("${analysis.image-inspection.platform}")
+  private String platform;
+
+  @Value("${analysis.image-inspection.max-metadata-size}")
+  private long maxMetadataSize;
+
+  @Value("#{${analysis.image-inspection.exposed-port-categories}}")
+  private Map<String, String> exposedPortCategoryNames;
+
+  @Value("${analysis.image-inspection.scan-layers}")
+  private boolean scanLayers;
+
+  @Value("${analysis.image-inspection.refresh-interval}")
+  private long refreshInterval;
+
+  @Value("${analysis.image-inspection.max-entries}")
+  private int maxEntries;
+
+  @Autowired private ImageInspectionCache imageInspectionCache;
+
+  @Autowired private LayerIndex layerIndex;
+
+  @Autowired private LayerScanner layerScanner;
+
+  @Autowired private ForkJoinPool layerScanPool;
+
+  /** The ObjectMapper configured by Spring Boot, shared to build its caches only once. */
+  @Autowired private ObjectMapper objectMapper;
+
+  private final Map<String, ImageCategory> exposedPortCategories = new HashMap<>();
+
+  private final Map<ImageLocation, Optional<ImageInspection>> inspections =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  private final Map<String, ImageInspection> cachedInspections =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  private volatile ImageIndex images;
+
+  @PostConstruct
+  private void parseExposedPortCategories() {
+    exposedPortCategoryNames.forEach(
+        (port, category) ->
+            exposedPortCategories.put(normalizePort(port), ImageCategory.valueOf(category)));
+  }
+
+  public boolean isEnabled() {
+    return directory != null && !directory.isBlank();
+  }
+
+  /**
+   * Inspect an image from the local image archives.
+   *
+   * @param imageReference the reference of the image.
+   * @return the inspection result or an empty Optional if the image is not available locally or
+   *     inspection is disabled.
+   */
+  public Optional<ImageInspection> inspect(ImageReference imageReference) {
+    if (!isEnabled()) {
+      return Optional.empty();
+    }
+    String digest = imageReference.getDigest();
+    if (digest != null) {
+      Optional<ImageInspection> cachedInspection = getRemembered(cachedInspections, digest);
+      if (cachedInspection.isEmpty()) {
+        cachedInspection = getCachedInspection(digest);
+        if (cachedInspection.isPresent()) {
+          remember(cachedInspections, digest, cachedInspection.get());
+        }
+      }
+      if (cachedInspection.isPresent()) {
+        return cachedInspection;
+      }
+    }
+    Map<String, ImageLocation> localImages = getImages();
+    ImageLocation location = null;
+    if (digest != null) {
+      location = localImages.get("@" + digest);
+    }
+    if (location == null) {
+      location = localImages.get(key(imageReference));
+    }
+    if (location == null) {
+      return Optional.empty();
+    }
+    Optional<Optional<ImageInspection>> knownInspection = getRemembered(inspections, location);
+    if (knownInspection.isPresent()) {
+      return knownInspection.get();
+    }
+    InspectionResult result = readInspection(location);
+    if (!result.complete) {
+      return result.inspection;
+    }
+    return remember(inspections, location, result.inspection);
+  }
+
+  /**
+   * Classify an image by the well-known binaries found in its layers, e.g. 'postgres' for
+   * database systems.
+   *
+   * @param inspection the inspection result of the image.
+   * @return the category of the binaries, see {@link LayerScanner#classifyBinaries}, or an empty
+   *     Optional.
+   */
+  public Optional<ImageCategory> classifyBinaries(ImageInspection inspection) {
+    return layerScanner.classifyBinaries(inspection.getBinaryNames());
+  }
+
+  /**
+   * Classify an image by the packages installed in it, e.g. 'postgresql-16' for database systems.
+   *
+   * @param inspection the inspection result of the image.
+   * @return the category of the packages, see {@link LayerScanner#classifyPackages}, or an empty
+   *     Optional.
+   */
+  public Optional<ImageCategory> classifyPackages(ImageInspection inspection) {
+    return layerScanner.classifyPackages(inspection.getPackages().keySet());
+  }
+
+  /**
+   * Get the well-known packages installed in an image, i.e., those matching a configured pattern.
+   *
+   * @param inspection the inspection result of the image.
+   * @return the versions of the well-known packages by their name.
+   */
+  public SortedMap<String, String> getWellKnownPackages(ImageInspection inspection) {
+    return layerScanner.selectWellKnownPackages(inspection.getPackages());
+  }
+
+  /**
+   * Classify an image by the well-known ports it exposes, e.g. '5432/tcp' for database systems.
+   *
+   * @param configuration the configuration of the image.
+   * @return the category of the first exposed port with a category, or an empty Optional.
+   */
+  public Optional<ImageCategory> classifyExposedPorts(ImageConfiguration configuration) {
+    for (String port : configuration.getExposedPorts()) {
+      ImageCategory category = exposedPortCategories.get(normalizePort(port));
+      if (category != null) {
+        return Optional.of(category);
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Get the index of the image archives, indexing them again if the directory, one of the archives
+   * or the index of one of the OCI image layouts was modified since they were indexed. Whether they
+   * were modified is only checked once the refresh interval has passed.
+   */
+  private Map<String, ImageLocation> getImages() {
+    ImageIndex index = images;
+    if (index != null && !index.isDue(refreshInterval)) {
+      return index.locations;
+    }
+    synchronized (this) {
+      index = images;
+      if (index != null && !index.isDue(refreshInterval)) {
+        return index.locations;
+      }
+      Path directoryPath = Path.of(directory);
+      List<Path> archivePaths = listArchives(directoryPath);
+      Map<Path, FileTime> modificationTimes = getModificationTimes(directoryPath, archivePaths);
+      if (index == null || !index.modificationTimes.equals(modificationTimes)) {
+        if (index != null) {
+          LOG.info("The image archives in {} changed, indexing them again", directoryPath);
+          synchronized (inspections) {
+            inspections.clear();
+          }
+        }
+        index = new ImageIndex(indexArchives(archivePaths), modificationTimes);
+      } else {
+        index = new ImageIndex(index.locations, modificationTimes);
+      }
+      images = index;
+      return index.locations;
+    }
+  }
+
+  private List<Path> listArchives(Path directoryPath) {
+    List<Path> archivePaths = new ArrayList<>();
+    if (Files.isRegularFile(directoryPath.resolve(OCI_LAYOUT))) {
+      archivePaths.add(directoryPath);
+    }
+    try (Stream<Path> paths = Files.list(directoryPath)) {
+      archivePaths.addAll(
+          paths
+              .filter(
+                  path ->
+                      Files.isDirectory(path)
+                          ? Files.isRegularFile(path.resolve(OCI_LAYOUT))
+                          : path.getFileName().toString().endsWith(".tar"))
+              .sorted()
+              .collect(Collectors.toList()));
+    } catch (IOException e) {
+      LOG.warn("Could not list the image archives in {}", directoryPath, e);
+    }
+    return archivePaths;
+  }
+
+  /**
+   * The modification times of the directory, which changes when archives are added or removed, of
+   * the tar files, and of the indexes of the OCI image layouts, which change when images are added
+   * to or removed from a layout.
+   */
+  private static Map<Path, FileTime> getModificationTimes(
+      Path directoryPath, List<Path> archivePaths) {
+    Map<Path, FileTime> modificationTimes = new HashMap<>();
+    List<Path> paths = new ArrayList<>();
+    paths.add(directoryPath);
+    for (Path archivePath : archivePaths) {
+      paths.add(Files.isDirectory(archivePath) ? archivePath.resolve(OCI_INDEX) : archivePath);
+    }
+    for (Path path : paths) {
+      try {
+        modificationTimes.put(path, Files.getLastModifiedTime(path));
+      } catch (IOException e) {
+        modificationTimes.put(path, FileTime.fromMillis(0));
+      }
+    }
+    return modificationTimes;
+  }
+
+  private Map<String, ImageLocation> indexArchives(List<Path> archivePaths) {
+    Map<String, ImageLocation> localImages = new HashMap<>();
+    for (Path archivePath : archivePaths) {
+      try {
+        indexArchive(ImageArchive.open(archivePath), localImages);
+      } catch (IOException | RuntimeException e) {
+        LOG.warn("Could not read the image archive {}", archivePath, e);
+      }
+    }
+    LOG.info("Found {} image names in {} image archives", localImages.size(), archivePaths.size());
+    return localImages;
+  }
+
+  private void indexArchive(ImageArchive archive, Map<String, ImageLocation> localImages)
+      throws IOException {
+    Optional<JsonNode> dockerManifest = readJson(archive, DOCKER_MANIFEST);
+    if (dockerManifest.isPresent()) {
+      for (JsonNode image : dockerManifest.get()) {
+        String config = image.path("Config").asText(null);
+        if (config != null) {
+          List<String> layers = new ArrayList<>();
+          image.path("Layers").forEach(layer -> layers.add(layer.asText()));
+          ImageLocation location = new ImageLocation(archive, config, layers, null);
+          for (JsonNode repoTag : image.path("RepoTags")) {
+            localImages.putIfAbsent(key(ImageReference.parse(repoTag.asText())), location);
+          }
+        }
+      }
+    }
+    Optional<JsonNode> ociIndex = readJson(archive, OCI_INDEX);
+    if (ociIndex.isPresent()) {
+      for (JsonNode descriptor : ociIndex.get().path("manifests")) {
+        ImageLocation location = new ImageLocation(archive, null, null, descriptor);
+        JsonNode annotations = descriptor.path("annotations");
+        String name = annotations.path(CONTAINERD_IMAGE_NAME_ANNOTATION).asText(null);
+        String refName = annotations.path(REF_NAME_ANNOTATION).asText("");
+        if (name == null && (refName.contains("/") || refName.contains(":"))) {
+          name = refName;
+        }
+        if (name != null) {
+          localImages.putIfAbsent(key(ImageReference.parse(name)), location);
+        }
+        localImages.putIfAbsent("@" + descriptor.path("digest").asText(), location);
+      }
+    }
+  }
+
+  /**
+   * Read the inspection result of an image from its archive, or from the cache by the digest of its
+   * configuration.
+   *
+   * @return the inspection result, which is incomplete if a layer could not be scanned or the
+   *     archive could not be read.
+   */
+  private InspectionResult readInspection(ImageLocation location) {
+    try {
+      String config = location.config;
+      List<String> layers = location.layers;
+      String manifestDigest = null;
+      if (config == null) {
+        Optional<JsonNode> manifest = resolveManifest(location.archive, location.descriptor);
+        if (manifest.isEmpty()) {
+          return InspectionResult.complete(Optional.empty());
+        }
+        config = blobName(manifest.get().path("config").path("digest").asText());
+        if (config == null) {
+          return InspectionResult.complete(Optional.empty());
+        }
+        layers = new ArrayList<>();
+        for (JsonNode layer : manifest.get().path("layers")) {
+          String layerBlob = blobName(layer.path("digest").asText());
+          if (layerBlob != null) {
+            layers.add(layerBlob);
+          }
+        }
+        manifestDigest = location.descriptor.path("digest").asText();
+      }
+      String configDigest = digestOf(config);
+      Optional<ImageInspection> inspection = getCachedInspection(configDigest);
+      if (inspection.isEmpty()) {
+        Optional<JsonNode> imageConfig = readJson(location.archive, config);
+        if (imageConfig.isEmpty()) {
+          return InspectionResult.complete(Optional.empty());
+        }
+        SortedMap<String, String> binaries = new TreeMap<>();
+        SortedMap<String, SortedMap<String, String>> packageDatabases = new TreeMap<>();
+        boolean complete =
+            !scanLayers
+                || scanLayers(
+                    location.archive, layers, imageConfig.get(), binaries, packageDatabases);
+        Map<String, String> packages = new TreeMap<>();
+        packageDatabases.values().forEach(packages::putAll);
+        inspection =
+            Optional.of(
+                new ImageInspection(
+                    ImageConfiguration.fromImageConfig(imageConfig.get()), binaries, packages));
+        if (!complete) {
+          return new InspectionResult(inspection, false);
+        }
+        putCachedInspection(configDigest, inspection.get());
+      }
+      if (manifestDigest != null) {
+        putCachedInspection(manifestDigest, inspection.get());
+      }
+      return InspectionResult.complete(inspection);
+    } catch (IOException | UncheckedIOException e) {
+      LOG.warn("Could not read the image configuration from {}", location.archive, e);
+      return new InspectionResult(Optional.empty(), false);
+    }
+  }
+
+  /**
+   * Scan the layers of an image in parallel on the layer scan pool and merge their findings from
+   * the lowest to the uppermost layer, so that upper layers delete the binaries and package
+   * databases of lower ones according to their whiteouts, and replace their package databases.
+   * Layers are identified by their uncompressed digests listed in the image configuration, which
+   * are the same in all kinds of archives, so the findings of a layer are shared by all images
+   * containing it.
+   *
+   * @return true if all layers were scanned.
+   */
+  private boolean scanLayers(
+      ImageArchive archive,
+      List<String> layers,
+      JsonNode imageConfig,
+      SortedMap<String, String> binaries,
+      SortedMap<String, SortedMap<String, String>> packageDatabases) {
+    JsonNode diffIds = imageConfig.path("rootfs").path("diff_ids");
+    List<ForkJoinTask<LayerFindings>> scans = new ArrayList<>();
+    for (int i = 0; i < layers.size(); i++) {
+      String layer = layers.get(i);
+      String diffId = diffIds.path(i).asText(null);
+      String digest =
+          diffId != null && DIGEST.matcher(diffId).matches() ? diffId : digestOf(layer);
+      scans.add(
+          layerScanPool.submit(
+              () -> layerIndex.getFindings(digest, () -> archive.openStream(layer))));
+    }
+    boolean complete = true;
+    for (int i = 0; i < scans.size(); i++) {
+      try {
+        scans.get(i).get().applyTo(binaries, packageDatabases);
+      } catch (ExecutionException e) {
+        LOG.warn("Could not scan the layer {} of {}", layers.get(i), archive, e.getCause());
+        complete = false;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        scans.forEach(scan -> scan.cancel(true));
+        return false;
+      }
+    }
+    return complete;
+  }
+
+  private static <K, V> Optional<V> getRemembered(Map<K, V> remembered, K key) {
+    synchronized (remembered) {
+      return Optional.ofNullable(remembered.get(key));
+    }
+  }
+
+  /**
+   * Remember a value unless another thread remembered one for the key meanwhile, and forget the
+   * least recently used values above the maximum number of entries.
+   *
+   * @return the value remembered for the key.
+   */
+  private <K, V> V remember(Map<K, V> remembered, K key, V value) {
+    synchronized (remembered) {
+      V previous = remembered.putIfAbsent(key, value);
+      Iterator<V> eldest = remembered.values().iterator();
+      while (remembered.size() > maxEntries && eldest.hasNext()) {
+        eldest.next();
+        eldest.remove();
+      }
+      return previous == null ? value : previous;
+    }
+  }
+
+  private Optional<ImageInspection> getCachedInspection(String digest) {
+    if (digest == null) {
+      return Optional.empty();
+    }
+    Optional<byte[]> content = imageInspectionCache.get(cacheNamespace(), digest);
+    if (content.isPresent()) {
+      try {
+        return Optional.of(objectMapper.readValue(content.get(), ImageInspection.class));
+      } catch (IOException e) {
+        LOG.warn("Could not read the cached inspection result of {}", digest, e);
+      }
+    }
+    return Optional.empty();
+  }
+
+  private void putCachedInspection(String digest, ImageInspection inspection) throws IOException {
+    if (digest != null && imageInspectionCache.isEnabled()) {
+      imageInspectionCache.put(
+          cacheNamespace(), digest, objectMapper.writeValueAsBytes(inspection));
+    }
+  }
+
+  private String cacheNamespace() {
+    if (!scanLayers) {
+      return UNSCANNED_CACHE_NAMESPACE;
+    }
+    return layerScanner.isStoppingAtPackageDatabase() ? PARTIAL_CACHE_NAMESPACE : CACHE_NAMESPACE;
+  }
+
+  /** Follow a descriptor through image indexes, e.g. of multi-platform images, to a manifest. */
+  private Optional<JsonNode> resolveManifest(ImageArchive archive, JsonNode descriptor)
+      throws IOException {
+    for (int depth = 0; depth < MAX_INDEX_DEPTH && descriptor != null; depth++) {
+      String blob = blobName(descriptor.path("digest").asText());
+      Optional<JsonNode> document = blob == null ? Optional.empty() : readJson(archive, blob);
+      if (document.isEmpty() || !document.get().path("manifests").isArray()) {
+        return document;
+      }
+      descriptor = selectPlatformManifest(archive, document.get().path("manifests"));
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Select the manifest for the configured platform from an image index, or the first manifest
+   * available in the archive, as archives often only contain the layers of one platform.
+   */
+  private JsonNode selectPlatformManifest(ImageArchive archive, JsonNode manifests) {
+    JsonNode firstAvailable = null;
+    for (JsonNode descriptor : manifests) {
+      String blob = blobName(descriptor.path("digest").asText());
+      JsonNode descriptorPlatform = descriptor.path("platform");
+      String os = descriptorPlatform.path("os").asText("");
+      if (blob == null || !archive.contains(blob) || os.equals("unknown")) {
+        continue;
+      }
+      if ((os + "/" + descriptorPlatform.path("architecture").asText("")).equals(platform)) {
+        return descriptor;
+      }
+      if (firstAvailable == null) {
+        firstAvailable = descriptor;
+      }
+    }
+    return firstAvailable;
+  }
+
+  private Optional<JsonNode> readJson(ImageArchive archive, String name) throws IOException {
+    Optional<ByteBuffer> content = archive.read(name, maxMetadataSize);
+    if (content.isEmpty()) {
+      return Optional.empty();
+    }
+    try (InputStream inputStream = new ByteBufferBackedInputStream(content.get())) {
+      return Optional.of(objectMapper.readTree(inputStream));
+    }
+  }
+
+  /** The name of the blob with a digest in an OCI image layout, or null if it is malformed. */
+  private static String blobName(String digest) {
+    if (!DIGEST.matcher(digest).matches()) {
+      return null;
+    }
+    return "blobs/" + digest.replace(':', '/');
+  }
+
+  /**
+   * The digest of an image configuration or layer from the name of its entry, either a blob of an
+   * OCI image layout or an entry named by the hex digest in a 'docker save' archive, or null if the
+   * name does not contain it.
+   */
+  private static String digestOf(String name) {
+    Matcher blobName = BLOB_NAME.matcher(name);
+    if (blobName.matches()) {
+      return blobName.group(1) + ":" + blobName.group(2);
+    }
+    Matcher dockerConfigName = DOCKER_CONFIG_NAME.matcher(name);
+    if (dockerConfigName.matches()) {
+      return "sha256:" + dockerConfigName.group(1);
+    }
+    return null;
+  }
+
+  /**
+   * The key of an image name in the index, with Docker Hub registry and official namespace omitted
+   * and the default tag added, e.g. 'postgres:latest' for 'docker.io/library/postgres'.
+   */
+  private static String key(ImageReference imageReference) {
+    StringBuilder key = new StringBuilder();
+    if (!imageReference.isDockerHubImage()) {
+      key.append(imageReference.getRegistry()).append('/');
+    }
+    key.append(
+        imageReference.isDockerHubOfficialImage()
+            ? imageReference.getRepository()
+            : imageReference.getRepositoryPath());
+    key.append(':').append(imageReference.getTag() == null ? "latest" : imageReference.getTag());
+    return key.toString();
+  }
+
+  private static String normalizePort(String port) {
+    return port.contains("/") ? port.toLowerCase() : port + "/tcp";
+  }
+
+  /**
+   * The result of reading an image, which is only kept if it is complete, so that the image is
+   * read again after a layer could not be scanned or the archive could not be read.
+   */
+  private static final class InspectionResult {
+
+    private final Optional<ImageInspection> inspection;
+
+    private final boolean complete;
+
+    private InspectionResult(Optional<ImageInspection> inspection, boolean complete) {
+      this.inspection = inspection;
+      this.complete = complete;
+    }
+
+    private static InspectionResult complete(Optional<ImageInspection> inspection) {
+      return new InspectionResult(inspection, true);
+    }
+  }
+
+  /** The locations of the images by name and digest, and when the archives were modified. */
+  private static final class ImageIndex {
+
+    private final Map<String, ImageLocation> locations;
+
+    private final Map<Path, FileTime> modificationTimes;
+
+    private final long checkedAt = System.nanoTime();
+
+    private ImageIndex(
+        Map<String, ImageLocation> locations, Map<Path, FileTime> modificationTimes) {
+      this.locations = locations;
+      this.modificationTimes = modificationTimes;
+    }
+
+    /** Whether the archives are to be checked for modifications again. */
+    private boolean isDue(long refreshInterval) {
+      return System.nanoTime() - checkedAt >= TimeUnit.MILLISECONDS.toNanos(refreshInterval);
+    }
+  }
+
+  /**
+   * Where the configuration and layers of an image are: either entries of the archive as listed in
+   * a 'docker save' manifest, or the descriptor of an image manifest or index in an OCI image
+   * layout.
+   */
+  private static final class ImageLocation {
+
+    private final ImageArchive archive;
+
+    private final String config;
+
+    private final List<String> layers;
+
+    private final JsonNode descriptor;
+
+    private ImageLocation(
+        ImageArchive archive, String config, List<String> layers, JsonNode descriptor) {
+      this.archive = archive;
+      this.config = config;
+      this.layers = layers;
+      this.descriptor = descriptor;
+    }
+  }
+}
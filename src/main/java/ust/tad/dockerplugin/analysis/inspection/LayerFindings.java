@@ -0,0 +1,134 @@
+package ust.tad.dockerplugin.analysis.inspection;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** What the scan of an image layer found in its files. */
+public final class LayerFindings {
+
+  private final SortedMap<String, String> binaries;
+
+  private final SortedSet<String> whiteouts;
+
+  private final SortedSet<String> opaqueDirectories;
+
+  private final SortedMap<String, SortedMap<String, String>> packageDatabases;
+
+  @JsonCreator
+  LayerFindings(
+      @JsonProperty("binaries") Map<String, String> binaries,
+      @JsonProperty("packageDatabases") Map<String, Map<String, String>> packageDatabases,
+      @JsonProperty("whiteouts") Collection<String> whiteouts,
+      @JsonProperty("opaqueDirectories") Collection<String> opaqueDirectories) {
+    this.binaries = Collections.unmodifiableSortedMap(new TreeMap<>(binaries));
+    SortedMap<String, SortedMap<String, String>> databases = new TreeMap<>();
+    packageDatabases.forEach(
+        (path, packages) ->
+            databases.put(path, Collections.unmodifiableSortedMap(new TreeMap<>(packages))));
+    this.packageDatabases = Collections.unmodifiableSortedMap(databases);
+    this.whiteouts = Collections.unmodifiableSortedSet(new TreeSet<>(whiteouts));
+    this.opaqueDirectories = Collections.unmodifiableSortedSet(new TreeSet<>(opaqueDirectories));
+  }
+
+  /**
+   * The well-known binaries in the layer by their path, e.g. 'postgres' for
+   * 'usr/lib/postgresql/16/bin/postgres'.
+   */
+  public SortedMap<String, String> getBinaries() {
+    return binaries;
+  }
+
+  /**
+   * The package databases in the layer by their path, each with the versions of the installed
+   * packages by their name, e.g. '16.2-1.pgdg120+1' for 'postgresql-16' in 'var/lib/dpkg/status'.
+   */
+  public SortedMap<String, SortedMap<String, String>> getPackageDatabases() {
+    return packageDatabases;
+  }
+
+  /** The paths of the files and directories of lower layers deleted in this layer. */
+  public SortedSet<String> getWhiteouts() {
+    return whiteouts;
+  }
+
+  /** The directories whose contents of lower layers are hidden by this layer. */
+  public SortedSet<String> getOpaqueDirectories() {
+    return opaqueDirectories;
+  }
+
+  /**
+   * Apply this layer on top of the findings in the layers below it: the files deleted by whiteouts
+   * or hidden by opaque directories are removed, then the files of this layer added, replacing
+   * package databases of lower layers with the same path.
+   *
+   * @param lowerBinaries the binaries of the layers below by their path, modified in place.
+   * @param lowerPackageDatabases the package databases of the layers below by their path, modified
+   *     in place.
+   */
+  void applyTo(
+      SortedMap<String, String> lowerBinaries,
+      SortedMap<String, SortedMap<String, String>> lowerPackageDatabases) {
+    removeDeletedFiles(lowerBinaries);
+    removeDeletedFiles(lowerPackageDatabases);
+    lowerBinaries.putAll(binaries);
+    lowerPackageDatabases.putAll(packageDatabases);
+  }
+
+  private void removeDeletedFiles(SortedMap<String, ?> lowerFiles) {
+    for (String whiteout : whiteouts) {
+      lowerFiles.remove(whiteout);
+      lowerFiles.subMap(whiteout + "/", whiteout + "0").clear();
+    }
+    for (String opaqueDirectory : opaqueDirectories) {
+      if (opaqueDirectory.isEmpty()) {
+        lowerFiles.clear();
+      } else {
+        lowerFiles.subMap(opaqueDirectory + "/", opaqueDirectory + "0").clear();
+      }
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) return true;
+    if (!(o instanceof LayerFindings)) {
+      return false;
+    }
+    LayerFindings that = (LayerFindings) o;
+    return binaries.equals(that.binaries)
+        && packageDatabases.equals(that.packageDatabases)
+        && whiteouts.equals(that.whiteouts)
+        && opaqueDirectories.equals(that.opaqueDirectories);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(binaries, packageDatabases, whiteouts, opaqueDirectories);
+  }
+
+  @Override
+  public String toString() {
+    return "{"
+        + " binaries='"
+        + binaries
+        + "'"
+        + ", packageDatabases='"
+        + packageDatabases
+        + "'"
+        + ", whiteouts='"
+        + whiteouts
+        + "'"
+        + ", opaqueDirectories='"
+        + opaqueDirectories
+        + "'"
+        + "}";
+  }
+}
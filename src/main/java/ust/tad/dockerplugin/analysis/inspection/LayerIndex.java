@@ -0,0 +1,161 @@
+package ust.tad.dockerplugin.analysis.inspection;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Index of the findings of image layers by layer digest. Images often share their base layers,
+ * e.g. of 'debian' or 'eclipse-temurin', so each layer is only scanned when it is seen for the
+ * first time, and its findings are reused for all images and analysis tasks containing it. Images
+ * inspected concurrently wait for the running scan of a shared layer instead of scanning it again.
+ * The findings of the most recently used layers are kept in memory, and all findings in the {@link
+ * ImageInspectionCache}.
+ */
+@Component
+public class LayerIndex {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LayerIndex.class);
+
+  /** The namespace of the findings in the cache, to be changed when their format changes. */
+  private static final String CACHE_NAMESPACE = "layers-v4";
+
+  /** The namespace of the findings of scans stopped at the package database in the cache. */
+  private static final String PARTIAL_CACHE_NAMESPACE = "layers-v4-partial";
+
+  /** Opens the tar stream of a layer to scan. */
+  @FunctionalInterface
+  public interface LayerSource {
+    InputStream open() throws IOException;
+  }
+
+  @Autowired private LayerScanner layerScanner;
+
+  @Autowired private ImageInspectionCache imageInspectionCache;
+
+  @Value("${analysis.image-inspection.layer-index.max-entries}")
+  private int maxEntries;
+
+  /** The ObjectMapper configured by Spring Boot, shared to build its caches only once. */
+  @Autowired private ObjectMapper objectMapper;
+
+  private final Map<String, LayerFindings> findings = new LinkedHashMap<>(16, 0.75f, true);
+
+  /** The running scans by layer digest. */
+  private final Map<String, CompletableFuture<LayerFindings>> scans = new ConcurrentHashMap<>();
+
+  /**
+   * Get the findings of a layer, scanning it if it was not seen before.
+   *
+   * @param digest the digest of the layer, e.g. 'sha256:4a1c...'.
+   * @param layerSource the source of the layer to scan if needed.
+   * @return the findings of the layer.
+   * @throws IOException if the layer needs to be scanned and cannot be read.
+   */
+  public LayerFindings getFindings(String digest, LayerSource layerSource) throws IOException {
+    Optional<LayerFindings> knownFindings = getKnownFindings(digest);
+    if (knownFindings.isPresent()) {
+      return knownFindings.get();
+    }
+    if (digest == null) {
+      return scan(null, layerSource);
+    }
+    CompletableFuture<LayerFindings> scan = new CompletableFuture<>();
+    CompletableFuture<LayerFindings> runningScan = scans.putIfAbsent(digest, scan);
+    if (runningScan != null) {
+      return awaitScan(digest, runningScan);
+    }
+    try {
+      // another scan of the layer may have finished since it was looked up
+      knownFindings = getKnownFindings(digest);
+      LayerFindings layerFindings =
+          knownFindings.isPresent() ? knownFindings.get() : scan(digest, layerSource);
+      scan.complete(layerFindings);
+      return layerFindings;
+    } catch (IOException | RuntimeException e) {
+      scan.completeExceptionally(e);
+      throw e;
+    } finally {
+      scans.remove(digest, scan);
+    }
+  }
+
+  private LayerFindings awaitScan(String digest, CompletableFuture<LayerFindings> runningScan)
+      throws IOException {
+    try {
+      return runningScan.get();
+    } catch (ExecutionException e) {
+      throw new IOException("The scan of layer " + digest + " failed", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the scan of " + digest);
+    }
+  }
+
+  private LayerFindings scan(String digest, LayerSource layerSource) throws IOException {
+    LayerFindings layerFindings;
+    try (InputStream layer = layerSource.open()) {
+      layerFindings = layerScanner.scan(layer);
+    }
+    LOG.debug("Scanned layer {}: {}", digest, layerFindings);
+    if (digest != null) {
+      remember(digest, layerFindings);
+      if (imageInspectionCache.isEnabled()) {
+        imageInspectionCache.put(
+            cacheNamespace(), digest, objectMapper.writeValueAsBytes(layerFindings));
+      }
+    }
+    return layerFindings;
+  }
+
+  private Optional<LayerFindings> getKnownFindings(String digest) {
+    if (digest == null) {
+      return Optional.empty();
+    }
+    synchronized (findings) {
+      LayerFindings layerFindings = findings.get(digest);
+      if (layerFindings != null) {
+        return Optional.of(layerFindings);
+      }
+    }
+    Optional<byte[]> content = imageInspectionCache.get(cacheNamespace(), digest);
+    if (content.isPresent()) {
+      try {
+        LayerFindings layerFindings = objectMapper.readValue(content.get(), LayerFindings.class);
+        remember(digest, layerFindings);
+        return Optional.of(layerFindings);
+      } catch (IOException e) {
+        LOG.warn("Could not read the cached findings of layer {}", digest, e);
+      }
+    }
+    return Optional.empty();
+  }
+
+  private String cacheNamespace() {
+    return layerScanner.isStoppingAtPackageDatabase() ? PARTIAL_CACHE_NAMESPACE : CACHE_NAMESPACE;
+  }
+
+  private void remember(String digest, LayerFindings layerFindings) {
+    synchronized (findings) {
+      findings.put(digest, layerFindings);
+      Iterator<LayerFindings> eldest = findings.values().iterator();
+      while (findings.size() > maxEntries && eldest.hasNext()) {
+        eldest.next();
+        eldest.remove();
+      }
+    }
+  }
+}
@@ -0,0 +1,256 @@
+package ust.tad.dockerplugin.analysis.inspection;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import javax.annotation.PostConstruct;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ust.tad.dockerplugin.analysis.classification.ImageCategory;
+
+/**
+ * Scans the tar stream of an image layer, uncompressed or gzip-compressed, for well-known
+ * binaries, e.g. 'postgres' or 'redis-server', in 'bin' and 'sbin' directories, for package
+ * databases, see {@link PackageDatabases}, and for the whiteouts deleting files of lower layers.
+ * Apart from the package databases, only the entry headers are evaluated, the contents of the files
+ * are skipped. Optionally, the scan stops as soon as a package database listing all installed
+ * packages was read, so the rest of the layer is neither read nor decompressed, at the cost of
+ * missing the binaries and whiteouts after the package database in the layer.
+ */
+@Component
+public class LayerScanner {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LayerScanner.class);
+
+  private static final byte[] GZIP_MAGIC = {0x1f, (byte) 0x8b};
+
+  private static final byte[] ZSTD_MAGIC = {0x28, (byte) 0xb5, 0x2f, (byte) 0xfd};
+
+  private static final String WHITEOUT_PREFIX = ".wh.";
+
+  private static final String OPAQUE_WHITEOUT = ".wh..wh..opq";
+
+  @Value("#{${analysis.image-inspection.binaries}}")
+  private Map<String, String> binaryCategoryNames;
+
+  @Value("#{${analysis.image-inspection.packages}}")
+  private Map<String, String> packageCategoryNames;
+
+  @Value("${analysis.image-inspection.max-metadata-size}")
+  private long maxPackageDatabaseSize;
+
+  @Value("${analysis.image-inspection.layer-scan.stop-at-package-database}")
+  private boolean stopAtPackageDatabase;
+
+  /** The category of each well-known binary, empty for binaries not indicating a category. */
+  private final Map<String, Optional<ImageCategory>> binaryCategories = new HashMap<>();
+
+  /** The category of the packages matching each pattern, empty if they indicate no category. */
+  private final Map<Pattern, Optional<ImageCategory>> packageCategories = new LinkedHashMap<>();
+
+  @PostConstruct
+  private void parseBinaryCategories() {
+    binaryCategoryNames.forEach(
+        (binary, category) -> binaryCategories.put(binary, parseCategory(category)));
+  }
+
+  @PostConstruct
+  private void parsePackageCategories() {
+    packageCategoryNames.forEach(
+        (packagePattern, category) ->
+            packageCategories.put(Pattern.compile(packagePattern), parseCategory(category)));
+  }
+
+  /**
+   * Scan a layer.
+   *
+   * @param layer the tar stream of the layer, closed by the caller.
+   * @return the findings.
+   * @throws IOException if the layer cannot be read or is compressed with an unsupported format.
+   */
+  public LayerFindings scan(InputStream layer) throws IOException {
+    TarArchiveInputStream tar = new TarArchiveInputStream(decompress(layer));
+    Map<String, String> binaries = new TreeMap<>();
+    Map<String, Map<String, String>> packageDatabases = new TreeMap<>();
+    List<String> whiteouts = new ArrayList<>();
+    List<String> opaqueDirectories = new ArrayList<>();
+    TarArchiveEntry entry;
+    while ((entry = tar.getNextEntry()) != null) {
+      if (entry.isDirectory()) {
+        continue;
+      }
+      String path = normalizePath(entry.getName());
+      if (PackageDatabases.isPackageDatabase(path)) {
+        if (entry.getSize() > maxPackageDatabaseSize) {
+          LOG.warn(
+              "Skipped the package database {} of {} bytes, which exceeds the maximum size of {}"
+                  + " bytes, see analysis.image-inspection.max-metadata-size",
+              path,
+              entry.getSize(),
+              maxPackageDatabaseSize);
+          continue;
+        }
+        packageDatabases.put(path, PackageDatabases.read(path, tar));
+        if (stopAtPackageDatabase && PackageDatabases.isCompletePackageDatabase(path)) {
+          break;
+        }
+        continue;
+      }
+      int nameSeparator = path.lastIndexOf('/');
+      String directory = nameSeparator < 0 ? "" : path.substring(0, nameSeparator);
+      String name = path.substring(nameSeparator + 1);
+      if (name.equals(OPAQUE_WHITEOUT)) {
+        opaqueDirectories.add(directory);
+      } else if (name.startsWith(WHITEOUT_PREFIX)) {
+        String deletedName = name.substring(WHITEOUT_PREFIX.length());
+        whiteouts.add(directory.isEmpty() ? deletedName : directory + "/" + deletedName);
+      } else {
+        String binary = getWellKnownBinary(path);
+        if (binary != null) {
+          binaries.put(path, binary);
+        }
+      }
+    }
+    return new LayerFindings(binaries, packageDatabases, whiteouts, opaqueDirectories);
+  }
+
+  /** Whether scans stop at the package database, so their findings may miss binaries. */
+  public boolean isStoppingAtPackageDatabase() {
+    return stopAtPackageDatabase;
+  }
+
+  /**
+   * Classify an image by the well-known binaries it contains.
+   *
+   * @param binaries the names of the binaries.
+   * @return the first category, in the order of the categories, of the binaries, or an empty
+   *     Optional if none of them indicates a category.
+   */
+  public Optional<ImageCategory> classifyBinaries(Collection<String> binaries) {
+    Optional<ImageCategory> imageCategory = Optional.empty();
+    for (String binary : binaries) {
+      Optional<ImageCategory> binaryCategory =
+          binaryCategories.getOrDefault(binary, Optional.empty());
+      if (binaryCategory.isPresent()
+          && (imageCategory.isEmpty()
+              || binaryCategory.get().compareTo(imageCategory.get()) < 0)) {
+        imageCategory = binaryCategory;
+      }
+    }
+    return imageCategory;
+  }
+
+  /**
+   * Select the well-known packages, i.e., those matching a configured pattern, from the installed
+   * packages of an image.
+   *
+   * @param packages the versions of the installed packages by their name.
+   * @return the versions of the well-known packages by their name.
+   */
+  public SortedMap<String, String> selectWellKnownPackages(Map<String, String> packages) {
+    SortedMap<String, String> wellKnownPackages = new TreeMap<>();
+    packages.forEach(
+        (name, version) -> {
+          if (findPackagePattern(name).isPresent()) {
+            wellKnownPackages.put(name, version);
+          }
+        });
+    return wellKnownPackages;
+  }
+
+  /**
+   * Classify an image by the packages installed in it.
+   *
+   * @param packages the names of the packages.
+   * @return the first category, in the order of the categories, of the packages, or an empty
+   *     Optional if none of them indicates a category.
+   */
+  public Optional<ImageCategory> classifyPackages(Collection<String> packages) {
+    Optional<ImageCategory> imageCategory = Optional.empty();
+    for (String name : packages) {
+      Optional<ImageCategory> packageCategory =
+          findPackagePattern(name).flatMap(packageCategories::get);
+      if (packageCategory.isPresent()
+          && (imageCategory.isEmpty()
+              || packageCategory.get().compareTo(imageCategory.get()) < 0)) {
+        imageCategory = packageCategory;
+      }
+    }
+    return imageCategory;
+  }
+
+  /** The first configured pattern matching the name of a package, if any. */
+  private Optional<Pattern> findPackagePattern(String name) {
+    for (Pattern packagePattern : packageCategories.keySet()) {
+      if (packagePattern.matcher(name).matches()) {
+        return Optional.of(packagePattern);
+      }
+    }
+    return Optional.empty();
+  }
+
+  private String getWellKnownBinary(String path) {
+    int nameSeparator = path.lastIndexOf('/');
+    if (nameSeparator < 0) {
+      return null;
+    }
+    String name = path.substring(nameSeparator + 1);
+    if (!binaryCategories.containsKey(name)) {
+      return null;
+    }
+    int directorySeparator = path.lastIndexOf('/', nameSeparator - 1);
+    String directory = path.substring(directorySeparator + 1, nameSeparator);
+    return directory.equals("bin") || directory.equals("sbin") ? name : null;
+  }
+
+  private static Optional<ImageCategory> parseCategory(String category) {
+    return category.isBlank() ? Optional.empty() : Optional.of(ImageCategory.valueOf(category));
+  }
+
+  static String normalizePath(String name) {
+    int start = 0;
+    while (name.startsWith("./", start) || name.startsWith("/", start)) {
+      start += name.charAt(start) == '.' ? 2 : 1;
+    }
+    int end = name.length();
+    while (end > start && name.charAt(end - 1) == '/') {
+      end--;
+    }
+    return name.substring(start, end);
+  }
+
+  private static InputStream decompress(InputStream layer) throws IOException {
+    BufferedInputStream bufferedLayer = new BufferedInputStream(layer, 64 * 1024);
+    bufferedLayer.mark(4);
+    byte[] magic = bufferedLayer.readNBytes(4);
+    bufferedLayer.reset();
+    if (startsWith(magic, GZIP_MAGIC)) {
+      return new GZIPInputStream(bufferedLayer, 64 * 1024);
+    }
+    if (startsWith(magic, ZSTD_MAGIC)) {
+      throw new IOException("Layers compressed with zstd are not supported");
+    }
+    return bufferedLayer;
+  }
+
+  private static boolean startsWith(byte[] bytes, byte[] prefix) {
+    return bytes.length >= prefix.length
+        && Arrays.equals(bytes, 0, prefix.length, prefix, 0, prefix.length);
+  }
+}
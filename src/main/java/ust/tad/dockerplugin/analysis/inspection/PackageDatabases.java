@@ -0,0 +1,133 @@
+package ust.tad.dockerplugin.analysis.inspection;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the databases of installed packages of Debian-based images, i.e., 'var/lib/dpkg/status'
+ * and the files in 'var/lib/dpkg/status.d' of distroless images, and of Alpine-based images, i.e.,
+ * 'lib/apk/db/installed'. Both are text files of paragraphs with one package each, separated by
+ * empty lines. Of rpm-based images, the SQLite rpm database 'rpmdb.sqlite' is read, see {@link
+ * RpmDatabase}, and the 'rpm -qa'-style manifest of distroless Azure Linux images, a text file with
+ * the tab-separated name and version of one package per line.
+ */
+final class PackageDatabases {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PackageDatabases.class);
+
+  private static final String DPKG_STATUS = "var/lib/dpkg/status";
+
+  private static final String DPKG_STATUS_DIRECTORY = "var/lib/dpkg/status.d/";
+
+  private static final String APK_INSTALLED = "lib/apk/db/installed";
+
+  private static final String RPM_SQLITE = "var/lib/rpm/rpmdb.sqlite";
+
+  private static final String SYSIMAGE_RPM_SQLITE = "usr/lib/sysimage/rpm/rpmdb.sqlite";
+
+  private static final String RPM_MANIFEST = "var/lib/rpmmanifest/container-manifest-2";
+
+  private PackageDatabases() {}
+
+  /**
+   * Whether a file is a package database.
+   *
+   * @param path the normalized path of the file, e.g. 'var/lib/dpkg/status'.
+   * @return true if the file can be read with read(path, content).
+   */
+  static boolean isPackageDatabase(String path) {
+    return isCompletePackageDatabase(path)
+        || (path.startsWith(DPKG_STATUS_DIRECTORY)
+            && path.indexOf('/', DPKG_STATUS_DIRECTORY.length()) < 0
+            && !path.endsWith(".md5sums"));
+  }
+
+  /**
+   * Whether a file is a package database listing all packages installed in the file system, unlike
+   * the files in 'var/lib/dpkg/status.d' listing one package each.
+   *
+   * @param path the normalized path of the file.
+   * @return true if the file is a package database listing all installed packages.
+   */
+  static boolean isCompletePackageDatabase(String path) {
+    return path.equals(DPKG_STATUS)
+        || path.equals(APK_INSTALLED)
+        || path.equals(RPM_SQLITE)
+        || path.equals(SYSIMAGE_RPM_SQLITE)
+        || path.equals(RPM_MANIFEST);
+  }
+
+  /**
+   * Read the installed packages from a package database.
+   *
+   * @param path the normalized path of the package database.
+   * @param content the content of the package database, not closed.
+   * @return the versions of the installed packages by their name.
+   * @throws IOException if the content cannot be read.
+   */
+  static Map<String, String> read(String path, InputStream content) throws IOException {
+    if (path.equals(RPM_SQLITE) || path.equals(SYSIMAGE_RPM_SQLITE)) {
+      byte[] database = content.readAllBytes();
+      try {
+        return RpmDatabase.read(database);
+      } catch (IOException e) {
+        LOG.warn("Could not read the rpm database {}", path, e);
+        return Map.of();
+      }
+    }
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(content, StandardCharsets.UTF_8));
+    if (path.equals(RPM_MANIFEST)) {
+      return readRpmManifest(reader);
+    }
+    boolean apk = path.equals(APK_INSTALLED);
+    Map<String, String> packages = new TreeMap<>();
+    String name = null;
+    String version = null;
+    boolean installed = true;
+    String line;
+    do {
+      line = reader.readLine();
+      if (line == null || line.isEmpty()) {
+        if (name != null && version != null && installed) {
+          packages.put(name, version);
+        }
+        name = null;
+        version = null;
+        installed = true;
+      } else if (apk) {
+        if (line.startsWith("P:")) {
+          name = line.substring(2);
+        } else if (line.startsWith("V:")) {
+          version = line.substring(2);
+        }
+      } else if (line.startsWith("Package:")) {
+        name = line.substring("Package:".length()).trim();
+      } else if (line.startsWith("Version:")) {
+        version = line.substring("Version:".length()).trim();
+      } else if (line.startsWith("Status:")) {
+        installed = line.trim().endsWith(" installed");
+      }
+    } while (line != null);
+    return packages;
+  }
+
+  private static Map<String, String> readRpmManifest(BufferedReader reader) throws IOException {
+    Map<String, String> packages = new TreeMap<>();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      String[] fields = line.split("\t", 3);
+      if (fields.length >= 2 && !fields[0].isBlank() && !fields[1].isBlank()) {
+        packages.put(fields[0].trim(), fields[1].trim());
+      }
+    }
+    return packages;
+  }
+}
@@ -0,0 +1,314 @@
+package ust.tad.dockerplugin.analysis.inspection;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Reads the installed packages from the SQLite rpm database, 'rpmdb.sqlite', of Fedora, RHEL 9
+ * and other rpm-based images, without an SQLite driver. The database is read from memory: the
+ * 'Packages' table is looked up in the schema table and its rows, the rpm headers of the installed
+ * packages, are collected by walking its table b-tree, following overflow pages. Only the name,
+ * epoch, version and release are read from the headers.
+ *
+ * <p>The Berkeley DB and ndb rpm databases of older and SUSE-based images are not supported.
+ */
+final class RpmDatabase {
+
+  private static final byte[] SQLITE_MAGIC =
+      "SQLite format 3\0".getBytes(StandardCharsets.US_ASCII);
+
+  private static final String PACKAGES_TABLE = "Packages";
+
+  private static final int LEAF_TABLE_PAGE = 0x0d;
+
+  private static final int INTERIOR_TABLE_PAGE = 0x05;
+
+  private static final int MAX_TREE_DEPTH = 16;
+
+  private static final int NAME_TAG = 1000;
+
+  private static final int VERSION_TAG = 1001;
+
+  private static final int RELEASE_TAG = 1002;
+
+  private static final int EPOCH_TAG = 1003;
+
+  private static final int INT32_TYPE = 4;
+
+  private static final int STRING_TYPE = 6;
+
+  private final ByteBuffer database;
+
+  private final int pageSize;
+
+  private final int usableSize;
+
+  private RpmDatabase(byte[] content) throws IOException {
+    if (content.length < 100 || !Arrays.equals(content, 0, 16, SQLITE_MAGIC, 0, 16)) {
+      throw new IOException("Not an SQLite database");
+    }
+    database = ByteBuffer.wrap(content);
+    int storedPageSize = Short.toUnsignedInt(database.getShort(16));
+    pageSize = storedPageSize == 1 ? 65536 : storedPageSize;
+    usableSize = pageSize - Byte.toUnsignedInt(database.get(20));
+    if (pageSize < 512 || usableSize < 480) {
+      throw new IOException("Malformed SQLite database header");
+    }
+  }
+
+  /**
+   * Read the installed packages from an rpm database.
+   *
+   * @param content the content of the 'rpmdb.sqlite' file.
+   * @return the versions, i.e., '[epoch:]version-release', of the installed packages by their
+   *     name.
+   * @throws IOException if the content is not a well-formed SQLite rpm database.
+   */
+  static Map<String, String> read(byte[] content) throws IOException {
+    RpmDatabase rpmDatabase = new RpmDatabase(content);
+    Map<String, String> packages = new TreeMap<>();
+    try {
+      int packagesRootPage = rpmDatabase.findTableRootPage(PACKAGES_TABLE);
+      rpmDatabase.readPackages(packagesRootPage, packages);
+    } catch (RuntimeException e) {
+      throw new IOException("Malformed SQLite rpm database", e);
+    }
+    return packages;
+  }
+
+  /** Look up the root page of a table in the schema table, whose root is the first page. */
+  private int findTableRootPage(String tableName) throws IOException {
+    Map<Long, Object[]> schema = new TreeMap<>();
+    walkTable(1, 0, new HashSet<>(), (rowId, record) -> schema.put(rowId, parseRecord(record)));
+    for (Object[] columns : schema.values()) {
+      if (columns.length >= 4
+          && "table".equals(columns[0])
+          && tableName.equals(columns[1])
+          && columns[3] instanceof Long) {
+        return Math.toIntExact((Long) columns[3]);
+      }
+    }
+    throw new IOException("The rpm database has no " + tableName + " table");
+  }
+
+  /** Read the rpm headers in the 'blob' column of the rows of the 'Packages' table. */
+  private void readPackages(int rootPage, Map<String, String> packages) throws IOException {
+    walkTable(
+        rootPage,
+        0,
+        new HashSet<>(),
+        (rowId, record) -> {
+          Object[] columns = parseRecord(record);
+          if (columns.length >= 2 && columns[1] instanceof byte[]) {
+            readHeader((byte[]) columns[1], packages);
+          }
+        });
+  }
+
+  @FunctionalInterface
+  private interface RowConsumer {
+    void accept(long rowId, byte[] record) throws IOException;
+  }
+
+  /**
+   * Walk a table b-tree from the given page, passing the rows of its leaf pages to the consumer.
+   * Each page is visited at most once and the depth is limited, so that pages referring to each
+   * other in a malformed database lead neither to an endless walk nor to a stack overflow.
+   */
+  private void walkTable(int page, int depth, Set<Integer> visitedPages, RowConsumer rowConsumer)
+      throws IOException {
+    if (depth > MAX_TREE_DEPTH) {
+      throw new IOException("The SQLite table b-tree is too deep");
+    }
+    if (!visitedPages.add(page)) {
+      throw new IOException("The SQLite page " + page + " is referenced more than once");
+    }
+    int pageStart = (page - 1) * pageSize;
+    int headerStart = page == 1 ? 100 : pageStart;
+    int pageType = Byte.toUnsignedInt(database.get(headerStart));
+    int cellCount = Short.toUnsignedInt(database.getShort(headerStart + 3));
+    if (pageType == INTERIOR_TABLE_PAGE) {
+      for (int i = 0; i < cellCount; i++) {
+        int cell = pageStart + Short.toUnsignedInt(database.getShort(headerStart + 12 + 2 * i));
+        walkTable(database.getInt(cell), depth + 1, visitedPages, rowConsumer);
+      }
+      walkTable(database.getInt(headerStart + 8), depth + 1, visitedPages, rowConsumer);
+    } else if (pageType == LEAF_TABLE_PAGE) {
+      for (int i = 0; i < cellCount; i++) {
+        int cell = pageStart + Short.toUnsignedInt(database.getShort(headerStart + 8 + 2 * i));
+        long[] payloadSize = readVarint(cell);
+        long[] rowId = readVarint(cell + (int) payloadSize[1]);
+        int payloadStart = cell + (int) payloadSize[1] + (int) rowId[1];
+        rowConsumer.accept(rowId[0], readPayload(payloadStart, payloadSize[0]));
+      }
+    } else {
+      throw new IOException("Unexpected SQLite page type " + pageType);
+    }
+  }
+
+  /** Read the payload of a table leaf cell, of which all but the first bytes may overflow. */
+  private byte[] readPayload(int payloadStart, long payloadSize) throws IOException {
+    if (payloadSize > database.capacity()) {
+      throw new IOException("Malformed SQLite cell");
+    }
+    int size = (int) payloadSize;
+    int maxLocal = usableSize - 35;
+    if (size <= maxLocal) {
+      ByteBuffer payload = database.slice(payloadStart, size);
+      byte[] content = new byte[size];
+      payload.get(content);
+      return content;
+    }
+    int minLocal = (usableSize - 12) * 32 / 255 - 23;
+    int local = minLocal + (size - minLocal) % (usableSize - 4);
+    if (local > maxLocal) {
+      local = minLocal;
+    }
+    ByteArrayOutputStream payload = new ByteArrayOutputStream(size);
+    payload.write(database.array(), payloadStart, local);
+    int overflowPage = database.getInt(payloadStart + local);
+    while (payload.size() < size) {
+      if (overflowPage <= 0) {
+        throw new IOException("Missing SQLite overflow page");
+      }
+      int overflowStart = (overflowPage - 1) * pageSize;
+      int length = Math.min(size - payload.size(), usableSize - 4);
+      payload.write(database.array(), overflowStart + 4, length);
+      overflowPage = database.getInt(overflowStart);
+    }
+    return payload.toByteArray();
+  }
+
+  /** Parse an SQLite record into its column values: null, Long, Double, String, or byte[]. */
+  private static Object[] parseRecord(byte[] record) {
+    ByteBuffer buffer = ByteBuffer.wrap(record);
+    long[] headerSize = readVarint(buffer, 0);
+    int typeOffset = (int) headerSize[1];
+    int valueOffset = (int) headerSize[0];
+    int columnCount = 0;
+    Object[] columns = new Object[8];
+    while (typeOffset < headerSize[0]) {
+      long[] serialType = readVarint(buffer, typeOffset);
+      typeOffset += (int) serialType[1];
+      int type = (int) serialType[0];
+      int size = serialTypeSize(type);
+      Object value;
+      if (type == 0) {
+        value = null;
+      } else if (type <= 6) {
+        long integer = record[valueOffset];
+        for (int i = 1; i < size; i++) {
+          integer = (integer << 8) | Byte.toUnsignedInt(record[valueOffset + i]);
+        }
+        value = integer;
+      } else if (type == 7) {
+        value = buffer.getDouble(valueOffset);
+      } else if (type == 8 || type == 9) {
+        value = (long) (type - 8);
+      } else if (type % 2 == 0) {
+        value = Arrays.copyOfRange(record, valueOffset, valueOffset + size);
+      } else {
+        value = new String(record, valueOffset, size, StandardCharsets.UTF_8);
+      }
+      if (columnCount == columns.length) {
+        columns = Arrays.copyOf(columns, columnCount * 2);
+      }
+      columns[columnCount++] = value;
+      valueOffset += size;
+    }
+    return Arrays.copyOf(columns, columnCount);
+  }
+
+  private static int serialTypeSize(int type) {
+    switch (type) {
+      case 0:
+      case 8:
+      case 9:
+        return 0;
+      case 5:
+        return 6;
+      case 6:
+      case 7:
+        return 8;
+      default:
+        return type < 5 ? type : (type - 12 - type % 2) / 2;
+    }
+  }
+
+  /**
+   * Read an rpm header as stored in the database, i.e., without lead and header magic: the number
+   * of index entries and the size of the data, the index entries of tag, type, offset into the
+   * data and count, and the data.
+   */
+  private static void readHeader(byte[] header, Map<String, String> packages) {
+    ByteBuffer buffer = ByteBuffer.wrap(header);
+    int indexCount = buffer.getInt(0);
+    int dataStart = 8 + 16 * indexCount;
+    if (indexCount < 0 || dataStart > header.length) {
+      return;
+    }
+    String name = null;
+    String version = null;
+    String release = null;
+    Integer epoch = null;
+    for (int i = 0; i < indexCount; i++) {
+      int entry = 8 + 16 * i;
+      int tag = buffer.getInt(entry);
+      int type = buffer.getInt(entry + 4);
+      int offset = dataStart + buffer.getInt(entry + 8);
+      if (offset < dataStart || offset >= header.length) {
+        continue;
+      }
+      if (type == STRING_TYPE) {
+        if (tag == NAME_TAG) {
+          name = readString(header, offset);
+        } else if (tag == VERSION_TAG) {
+          version = readString(header, offset);
+        } else if (tag == RELEASE_TAG) {
+          release = readString(header, offset);
+        }
+      } else if (type == INT32_TYPE && tag == EPOCH_TAG && offset + 4 <= header.length) {
+        epoch = buffer.getInt(offset);
+      }
+    }
+    if (name != null && version != null) {
+      packages.put(
+          name,
+          (epoch == null || epoch == 0 ? "" : epoch + ":")
+              + version
+              + (release == null ? "" : "-" + release));
+    }
+  }
+
+  private static String readString(byte[] data, int offset) {
+    int end = offset;
+    while (end < data.length && data[end] != 0) {
+      end++;
+    }
+    return new String(data, offset, end - offset, StandardCharsets.UTF_8);
+  }
+
+  private long[] readVarint(int offset) {
+    return readVarint(database, offset);
+  }
+
+  /** Read an SQLite varint, returning its value and its length in bytes. */
+  private static long[] readVarint(ByteBuffer buffer, int offset) {
+    long value = 0;
+    for (int i = 0; i < 8; i++) {
+      int b = Byte.toUnsignedInt(buffer.get(offset + i));
+      value = (value << 7) | (b & 0x7f);
+      if ((b & 0x80) == 0) {
+        return new long[] {value, i + 1};
+      }
+    }
+    return new long[] {(value << 8) | Byte.toUnsignedInt(buffer.get(offset + 8)), 9};
+  }
+}
@@ -0,0 +1,98 @@
+package ust.tad.dockerplugin.analysis.util;
+
+import ust.tad.dockerplugin.models.tadm.ComponentType;
+import ust.tad.dockerplugin.models.tadm.TechnologyAgnosticDeploymentModel;
+
+import java.util.*;
+
+/**
+ * Resolves component types by name during one analysis run of a tadm, e.g. the
+ * 'SoftwareApplication' type, the types of image categories, and the
+ * [image identifier]-[category] types shared by components with the same image.
+ * Resolved types are kept until they are renamed or removed through this cache, so that repeated
+ * resolutions do not go through the tadm.
+ * Component types that became unused are collected and removed from the tadm in a single pass
+ * when the run is completed.
+ */
+public class ComponentTypeCache {
+
+    private final TechnologyAgnosticDeploymentModel tadm;
+
+    private final Map<String, ComponentType> componentTypesByName = new HashMap<>();
+
+    private final Set<ComponentType> componentTypesToRemoveIfUnused =
+            Collections.newSetFromMap(new IdentityHashMap<>());
+
+    public ComponentTypeCache(TechnologyAgnosticDeploymentModel tadm) {
+        this.tadm = tadm;
+    }
+
+    public TechnologyAgnosticDeploymentModel getTechnologyAgnosticDeploymentModel() {
+        return tadm;
+    }
+
+    /**
+     * Get a component type of the tadm by its name.
+     *
+     * @param name the name of the component type.
+     * @return the component type or an empty Optional if the tadm does not contain it.
+     */
+    public Optional<ComponentType> getComponentTypeByName(String name) {
+        ComponentType componentType = componentTypesByName.get(name);
+        if (componentType != null && name.equals(componentType.getName())) {
+            return Optional.of(componentType);
+        }
+        Optional<ComponentType> componentTypeOpt = tadm.getComponentTypeByName(name);
+        if (componentTypeOpt.isPresent()) {
+            componentTypesByName.put(name, componentTypeOpt.get());
+        } else {
+            componentTypesByName.remove(name);
+        }
+        return componentTypeOpt;
+    }
+
+    /**
+     * Add a new component type to the tadm.
+     *
+     * @param componentType the component type to add.
+     */
+    public void addComponentType(ComponentType componentType) {
+        tadm.addComponentTypes(List.of(componentType));
+        componentTypesByName.remove(componentType.getName());
+    }
+
+    /**
+     * Rename a component type of the tadm.
+     *
+     * @param componentType the component type to rename.
+     * @param name          the new name of the component type.
+     */
+    public void setNameOfComponentType(ComponentType componentType, String name) {
+        componentTypesByName.remove(componentType.getName(), componentType);
+        tadm.setNameOfComponentType(componentType, name);
+        componentTypesByName.remove(name);
+    }
+
+    /**
+     * Mark a component type to be removed from the tadm when the run is completed, if it is
+     * unused by then.
+     *
+     * @param componentType the component type to remove.
+     */
+    public void removeComponentTypeIfUnused(ComponentType componentType) {
+        componentTypesToRemoveIfUnused.add(componentType);
+    }
+
+    /**
+     * Complete the run by removing the marked component types that are still unused from the
+     * tadm.
+     */
+    public void removeUnusedComponentTypes() {
+        if (componentTypesToRemoveIfUnused.isEmpty()) {
+            return;
+        }
+        tadm.removeComponentTypesIfUnused(componentTypesToRemoveIfUnused);
+        componentTypesToRemoveIfUnused.clear();
+        componentTypesByName.clear();
+    }
+}
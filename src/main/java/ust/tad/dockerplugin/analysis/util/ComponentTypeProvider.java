@@ -1,6 +1,7 @@
 package ust.tad.dockerplugin.analysis.util;
 
 import org.springframework.stereotype.Service;
+import ust.tad.dockerplugin.analysis.classification.ImageCategory;
 import ust.tad.dockerplugin.models.tadm.ComponentType;
 
 @Service
@@ -26,4 +27,11 @@ public class ComponentTypeProvider {
         messageBrokerType.setName("MessageBroker");
         return messageBrokerType;
     }
+
+    public ComponentType createCategoryType(ImageCategory category, ComponentType parentType) {
+        ComponentType categoryType = new ComponentType();
+        categoryType.setParentType(parentType);
+        categoryType.setName(category.getComponentTypeName());
+        return categoryType;
+    }
 }
@@ -0,0 +1,168 @@
+package ust.tad.dockerplugin.analysistask;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import ust.tad.dockerplugin.analysis.AnalysisService;
+import ust.tad.dockerplugin.metrics.AnalysisMetrics;
+
+/**
+ * Coalesces analysis tasks of the same transformation process that arrive within a short window
+ * into one batch. A batch retrieves and updates the technology-agnostic deployment model once for
+ * all of its tasks instead of once per task, while each task still gets its own response. Closed
+ * batches are handed to the AnalysisTaskScheduler, which decides when they start.
+ */
+@Service
+public class AnalysisTaskBatcher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AnalysisTaskBatcher.class);
+
+  @Value("${analysis.batch.window}")
+  private long batchWindow;
+
+  @Value("${analysis.batch.max-size}")
+  private int batchMaxSize;
+
+  @Autowired private AnalysisService analysisService;
+
+  @Autowired private AnalysisTaskScheduler analysisTaskScheduler;
+
+  @Autowired private AnalysisMetrics analysisMetrics;
+
+  private final Map<UUID, Batch> openBatches = new HashMap<>();
+
+  /**
+   * Add an analysis task to the open batch of its transformation process or open a new batch. A
+   * batch is started when its window has passed or it reached its maximum size.
+   *
+   * @param analysisTask the analysis task.
+   * @param receivedAtNanos the value of System.nanoTime() when the task was received, to record
+   *     its queue latency when the analysis of its batch starts.
+   * @return a Mono completing when the batch containing the task has finished.
+   */
+  public Mono<Void> submit(AnalysisTaskStartRequest analysisTask, long receivedAtNanos) {
+    return analysisMetrics.trackTask(
+        Mono.defer(
+            () -> {
+              Sinks.Empty<Void> completion = Sinks.empty();
+              Batch batchToStart = null;
+              synchronized (openBatches) {
+                UUID transformationProcessId = analysisTask.getTransformationProcessId();
+                Batch batch = openBatches.get(transformationProcessId);
+                if (batch == null) {
+                  batch = new Batch(transformationProcessId);
+                  if (batchWindow > 0 && batchMaxSize > 1) {
+                    openBatches.put(transformationProcessId, batch);
+                    Batch batchToClose = batch;
+                    Mono.delay(Duration.ofMillis(batchWindow))
+                        .subscribe(tick -> closeBatch(batchToClose));
+                  }
+                }
+                batch.add(analysisTask, receivedAtNanos, completion);
+                if (batch.size() >= batchMaxSize || batchWindow <= 0) {
+                  openBatches.remove(transformationProcessId, batch);
+                  batch.close();
+                  batchToStart = batch;
+                }
+              }
+              if (batchToStart != null) {
+                start(batchToStart);
+              }
+              return completion.asMono();
+            }));
+  }
+
+  /**
+   * Close a batch after its window has passed and start it, unless it was already started because
+   * it reached its maximum size.
+   */
+  private void closeBatch(Batch batch) {
+    synchronized (openBatches) {
+      if (batch.isClosed()) {
+        return;
+      }
+      openBatches.remove(batch.transformationProcessId, batch);
+      batch.close();
+    }
+    start(batch);
+  }
+
+  private void start(Batch batch) {
+    if (batch.size() > 1) {
+      LOG.info(
+          "Analyzing {} tasks of transformation process {} as one batch",
+          batch.size(),
+          batch.transformationProcessId);
+    }
+    analysisTaskScheduler
+        .schedule(
+            batch.transformationProcessId,
+            countEntitiesToAnalyze(batch.tasks),
+            () -> {
+              batch.receivedAtNanos.forEach(analysisMetrics::recordQueueLatency);
+              return analysisService.startAnalysis(batch.transformationProcessId, batch.tasks);
+            })
+        .doFinally(signalType -> batch.completions.forEach(Sinks.Empty::tryEmitEmpty))
+        .subscribe();
+  }
+
+  /** The number of TADM entities to analyze by the given tasks, to estimate their duration. */
+  private static int countEntitiesToAnalyze(List<AnalysisTaskStartRequest> tasks) {
+    int count = 0;
+    for (AnalysisTaskStartRequest task : tasks) {
+      if (task.getTadmEntities() != null) {
+        for (TADMEntities tadmEntities : task.getTadmEntities()) {
+          count += tadmEntities.getTadmEntityIds().size();
+        }
+      }
+    }
+    return count;
+  }
+
+  /** Analysis tasks of one transformation process and the sinks completing their processing. */
+  private static class Batch {
+
+    private final UUID transformationProcessId;
+
+    private final List<AnalysisTaskStartRequest> tasks = new ArrayList<>();
+
+    private final List<Long> receivedAtNanos = new ArrayList<>();
+
+    private final List<Sinks.Empty<Void>> completions = new ArrayList<>();
+
+    private boolean closed;
+
+    private Batch(UUID transformationProcessId) {
+      this.transformationProcessId = transformationProcessId;
+    }
+
+    private void add(
+        AnalysisTaskStartRequest task, long receivedAt, Sinks.Empty<Void> completion) {
+      tasks.add(task);
+      receivedAtNanos.add(receivedAt);
+      completions.add(completion);
+    }
+
+    private int size() {
+      return tasks.size();
+    }
+
+    private void close() {
+      closed = true;
+    }
+
+    private boolean isClosed() {
+      return closed;
+    }
+  }
+}
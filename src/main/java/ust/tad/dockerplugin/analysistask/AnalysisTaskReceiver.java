@@ -1,62 +1,114 @@
 package ust.tad.dockerplugin.analysistask;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.rabbitmq.client.Channel;
+import java.io.IOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.Message;
-import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import ust.tad.dockerplugin.analysis.AnalysisService;
+import reactor.core.publisher.Mono;
 
 @Service
 public class AnalysisTaskReceiver {
-  @Autowired private MessageConverter jsonMessageConverter;
+
+  private static final Logger LOG = LoggerFactory.getLogger(AnalysisTaskReceiver.class);
+
+  @Autowired private ObjectReader analysisTaskStartRequestReader;
 
   @Autowired private AnalysisTaskResponseSender analysisTaskResponseSender;
 
-  @Autowired private AnalysisService analysisService;
+  @Autowired private AnalysisTaskBatcher analysisTaskBatcher;
+
+  @Autowired private AnalysisTaskScheduler analysisTaskScheduler;
 
   /**
    * Receives a message from the analysis task request queue. Based on the type of the message given
-   * by the formatIndicator header, it calls a respective function.
+   * by the formatIndicator header, it calls a respective function. The message is acknowledged on
+   * the given channel once its processing has completed and the broker confirmed the responses,
+   * which may be after this method returned. While the AnalysisTaskScheduler is saturated, this
+   * method blocks before processing the message, so that the consumer pauses. The time blocked
+   * counts towards the queue latency of the analysis task, as it is taken on receipt.
    *
    * @param message
-   * @throws JsonProcessingException
+   * @param channel the channel the message was received on.
    */
-  public void receive(Message message) {
+  public void receive(Message message, Channel channel) {
+    long receivedAtNanos = System.nanoTime();
+    analysisTaskScheduler.admit();
+    long deliveryTag = message.getMessageProperties().getDeliveryTag();
+    Mono<Void> processing;
     if (message.getMessageProperties().getHeader("formatIndicator") != null) {
       switch (message.getMessageProperties().getHeader("formatIndicator").toString()) {
         case "AnalysisTaskStartRequest":
-          receiveAnalysisTaskStartRequest(message);
+          processing = receiveAnalysisTaskStartRequest(message, receivedAtNanos);
           break;
         default:
-          respondWithErrorMessage("Could not process message: Unknown format of request message.");
+          processing =
+              respondWithErrorMessage(
+                  "Could not process message: Unknown format of request message.");
           break;
       }
     } else {
-      respondWithErrorMessage("Could not process message: Header with formatIndicator missing.");
+      processing =
+          respondWithErrorMessage("Could not process message: Header with formatIndicator missing.");
     }
+    processing
+        .onErrorResume(
+            e -> {
+              LOG.error("Could not process message", e);
+              return Mono.empty();
+            })
+        .doFinally(
+            signalType -> {
+              acknowledge(channel, deliveryTag);
+              analysisTaskScheduler.release();
+            })
+        .subscribe();
   }
 
   /**
    * Receives a message of type AnalysisTaskStartRequest. Transforms the message into an entity of
-   * type AnalysisTaskStartRequest. Starts the analysis process of the plugin.
+   * type AnalysisTaskStartRequest by binding the message body directly to it. Submits the task to
+   * be analyzed together with other tasks of the same transformation process.
    *
    * @param message
+   * @param receivedAtNanos the value of System.nanoTime() when the message was received.
+   * @return a Mono completing when the analysis task has finished.
    */
-  private void receiveAnalysisTaskStartRequest(Message message) {
-    ObjectMapper mapper = new ObjectMapper();
-    AnalysisTaskStartRequest analysisTaskStartRequest =
-        mapper.convertValue(
-            jsonMessageConverter.fromMessage(message), AnalysisTaskStartRequest.class);
-    analysisService.startAnalysis(
-        analysisTaskStartRequest.getTaskId(),
-        analysisTaskStartRequest.getTransformationProcessId(),
-        analysisTaskStartRequest.getTadmEntities());
+  private Mono<Void> receiveAnalysisTaskStartRequest(Message message, long receivedAtNanos) {
+    return Mono.fromCallable(
+            () ->
+                analysisTaskStartRequestReader.<AnalysisTaskStartRequest>readValue(
+                    message.getBody()))
+        .flatMap(
+            analysisTaskStartRequest ->
+                analysisTaskBatcher.submit(analysisTaskStartRequest, receivedAtNanos))
+        .onErrorResume(
+            IOException.class,
+            e ->
+                respondWithErrorMessage(
+                    "Could not process message: Invalid AnalysisTaskStartRequest: "
+                        + e.getMessage()));
+  }
+
+  /**
+   * Acknowledge a message, so that the broker can deliver the next one within the prefetch limit.
+   *
+   * @param channel the channel the message was received on.
+   * @param deliveryTag the delivery tag of the message.
+   */
+  private void acknowledge(Channel channel, long deliveryTag) {
+    try {
+      channel.basicAck(deliveryTag, false);
+    } catch (IOException e) {
+      LOG.error("Could not acknowledge message " + deliveryTag, e);
+    }
   }
 
   /** Creates and sends an AnalysisTaskResponse containing an error message. */
-  private void respondWithErrorMessage(String errorMessage) {
-    analysisTaskResponseSender.sendFailureResponse(null, errorMessage);
+  private Mono<Void> respondWithErrorMessage(String errorMessage) {
+    return analysisTaskResponseSender.sendFailureResponse(null, errorMessage);
   }
 }
@@ -1,25 +1,38 @@
 package ust.tad.dockerplugin.analysistask;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import javax.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageBuilder;
 import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 import ust.tad.dockerplugin.models.tsdm.DeploymentModelContent;
 import ust.tad.dockerplugin.models.tsdm.Line;
 import ust.tad.dockerplugin.models.tsdm.TechnologySpecificDeploymentModel;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+/**
+ * Sends analysis task responses and embedded deployment model analysis requests. Messages are
+ * published with correlated publisher confirms: the returned Monos complete once the broker has
+ * confirmed the message, without blocking while waiting for the confirmation. Thus, many messages
+ * can be in flight at once, and the broker confirms them in batches under load. Messages the
+ * broker rejects or does not confirm in time are published again with exponential backoff.
+ */
 @Service
 public class AnalysisTaskResponseSender {
 
@@ -27,38 +40,69 @@ public class AnalysisTaskResponseSender {
 
   @Autowired private RabbitTemplate template;
 
+  @Autowired private ObjectWriter analysisTaskResponseWriter;
+
+  @Autowired private ObjectWriter embeddedDeploymentModelAnalysisRequestWriter;
+
   @Value("${messaging.analysistask.response.exchange.name}")
   private String responseExchangeName;
 
+  @Value("${messaging.analysistask.response.confirm-timeout}")
+  private long confirmTimeout;
+
+  @Value("${messaging.analysistask.response.max-retries}")
+  private int maxRetries;
+
+  @Value("${messaging.analysistask.response.retry-backoff}")
+  private long retryBackoff;
+
+  private boolean publisherConfirms;
+
+  @PostConstruct
+  private void checkPublisherConfirms() {
+    publisherConfirms = template.getConnectionFactory().isPublisherConfirms();
+    if (!publisherConfirms) {
+      LOG.warn(
+          "Publisher confirms are disabled, messages are considered sent once they were published");
+    }
+  }
+
   /**
    * Send a success response as an Analysis Task Response.
    *
    * @param taskId the ID of the current analysis task.
+   * @return a Mono completing when the broker confirmed the response.
    */
-  public void sendSuccessResponse(UUID taskId) {
-    LOG.info("Transformation completed successfully, sending success response");
-    AnalysisTaskResponse analysisTaskResponse = new AnalysisTaskResponse();
-    analysisTaskResponse.setTaskId(taskId);
-    analysisTaskResponse.setSuccess(true);
-    sendAnalysisTaskResponse(analysisTaskResponse);
+  public Mono<Void> sendSuccessResponse(UUID taskId) {
+    return Mono.defer(
+        () -> {
+          LOG.info("Transformation completed successfully, sending success response");
+          AnalysisTaskResponse analysisTaskResponse = new AnalysisTaskResponse();
+          analysisTaskResponse.setTaskId(taskId);
+          analysisTaskResponse.setSuccess(true);
+          return sendAnalysisTaskResponse(analysisTaskResponse);
+        });
   }
 
-
   /**
    * Send a failure response as an Analysis Task Response containing the error message.
    *
    * @param taskId the ID of the current analysis task.
    * @param errorMessage the reason for the failed task.
+   * @return a Mono completing when the broker confirmed the response.
    */
-  public void sendFailureResponse(UUID taskId, String errorMessage) {
-    LOG.info("Sending failure response: " + errorMessage);
-    AnalysisTaskResponse analysisTaskResponse = new AnalysisTaskResponse();
-    if (taskId != null) {
-      analysisTaskResponse.setTaskId(taskId);
-    }
-    analysisTaskResponse.setSuccess(false);
-    analysisTaskResponse.setErrorMessage(errorMessage);
-    sendAnalysisTaskResponse(analysisTaskResponse);
+  public Mono<Void> sendFailureResponse(UUID taskId, String errorMessage) {
+    return Mono.defer(
+        () -> {
+          LOG.info("Sending failure response: " + errorMessage);
+          AnalysisTaskResponse analysisTaskResponse = new AnalysisTaskResponse();
+          if (taskId != null) {
+            analysisTaskResponse.setTaskId(taskId);
+          }
+          analysisTaskResponse.setSuccess(false);
+          analysisTaskResponse.setErrorMessage(errorMessage);
+          return sendAnalysisTaskResponse(analysisTaskResponse);
+        });
   }
 
   /**
@@ -67,43 +111,93 @@ public class AnalysisTaskResponseSender {
    * The format indicator field in the header is used to identify the type of response.
    *
    * @param analysisTaskResponse the Analysis Task Response to send.
+   * @return a Mono completing when the broker confirmed the response.
    */
-  private void sendAnalysisTaskResponse(AnalysisTaskResponse analysisTaskResponse) {
-    ObjectMapper objectMapper = new ObjectMapper();
+  private Mono<Void> sendAnalysisTaskResponse(AnalysisTaskResponse analysisTaskResponse) {
+    byte[] body;
     try {
-      Message message =
-              MessageBuilder.withBody(objectMapper.writeValueAsString(analysisTaskResponse).getBytes())
-                      .setContentType(MessageProperties.CONTENT_TYPE_JSON)
-                      .setHeader("formatIndicator", "AnalysisTaskResponse")
-                      .build();
-      template.convertAndSend(responseExchangeName, "", message);
+      body = analysisTaskResponseWriter.writeValueAsBytes(analysisTaskResponse);
     } catch (JsonProcessingException e) {
-      e.printStackTrace();
+      LOG.error("Could not serialize AnalysisTaskResponse " + analysisTaskResponse, e);
+      return Mono.error(e);
     }
+    Message message =
+            MessageBuilder.withBody(body)
+                    .setContentType(MessageProperties.CONTENT_TYPE_JSON)
+                    .setHeader("formatIndicator", "AnalysisTaskResponse")
+                    .build();
+    return send(message, "AnalysisTaskResponse for task " + analysisTaskResponse.getTaskId());
   }
 
-
   /**
    * Send the Embedded Deployment Model Analysis Task Request.
    * The request is added as a JSON in the message body.
    * The format indicator field in the header is used to identify the type of response.
    *
    * @param request the Embedded Deployment Model Analysis Task Request.
+   * @return a Mono completing when the broker confirmed the request.
    */
-  public void sendEmbeddedDeploymentModelAnalysisRequest(
+  public Mono<Void> sendEmbeddedDeploymentModelAnalysisRequest(
       EmbeddedDeploymentModelAnalysisRequest request) {
-    LOG.info("Sending EmbeddedDeploymentModelAnalysisRequest: " + request.toString());
-    ObjectMapper objectMapper = new ObjectMapper();
-    try {
-      Message message =
-          MessageBuilder.withBody(objectMapper.writeValueAsString(request).getBytes())
-              .setContentType(MessageProperties.CONTENT_TYPE_JSON)
-              .setHeader("formatIndicator", "EmbeddedDeploymentModelAnalysisRequest")
-              .build();
-      template.convertAndSend(responseExchangeName, "", message);
-    } catch (JsonProcessingException e) {
-      e.printStackTrace();
-    }
+    return Mono.defer(
+        () -> {
+          LOG.info("Sending EmbeddedDeploymentModelAnalysisRequest: " + request.toString());
+          byte[] body;
+          try {
+            body = embeddedDeploymentModelAnalysisRequestWriter.writeValueAsBytes(request);
+          } catch (JsonProcessingException e) {
+            LOG.error("Could not serialize EmbeddedDeploymentModelAnalysisRequest", e);
+            return Mono.error(e);
+          }
+          Message message =
+              MessageBuilder.withBody(body)
+                  .setContentType(MessageProperties.CONTENT_TYPE_JSON)
+                  .setHeader("formatIndicator", "EmbeddedDeploymentModelAnalysisRequest")
+                  .build();
+          return send(
+              message,
+              "EmbeddedDeploymentModelAnalysisRequest of task " + request.getParentTaskId());
+        });
+  }
+
+  /**
+   * Publish a message to the response exchange. Each attempt waits for the publisher confirm of
+   * the broker up to the confirm timeout. If the broker rejects the message, does not confirm it
+   * in time, or it cannot be published at all, it is published again after a backoff, so that the
+   * broker may receive it more than once.
+   *
+   * @param message the message to send.
+   * @param description the description of the message for logging.
+   * @return a Mono completing when the broker confirmed the message.
+   */
+  private Mono<Void> send(Message message, String description) {
+    return Mono.defer(
+            () -> {
+              CorrelationData correlationData = new CorrelationData();
+              template.send(responseExchangeName, "", message, correlationData);
+              if (!publisherConfirms) {
+                return Mono.<Void>empty();
+              }
+              return Mono.fromFuture(correlationData.getFuture().completable())
+                  .timeout(Duration.ofMillis(confirmTimeout))
+                  .flatMap(
+                      confirm ->
+                          confirm.isAck()
+                              ? Mono.<Void>empty()
+                              : Mono.error(
+                                  new AmqpException(
+                                      "Broker rejected message: " + confirm.getReason())));
+            })
+        .retryWhen(
+            Retry.backoff(maxRetries, Duration.ofMillis(retryBackoff))
+                .doBeforeRetry(
+                    retrySignal ->
+                        LOG.warn(
+                            "Sending "
+                                + description
+                                + " failed, retrying: "
+                                + retrySignal.failure().toString())))
+        .doOnError(e -> LOG.error("Could not send " + description, e));
   }
 
   /**
@@ -112,8 +206,9 @@ public class AnalysisTaskResponseSender {
    *
    * @param embeddedDeploymentModel the embedded deployment model to further analyze.
    * @param parentTaskId the ID of the current analysis task.
+   * @return a Mono completing when the broker confirmed the request.
    */
-  public void sendEmbeddedDeploymentModelAnalysisRequestFromModel(
+  public Mono<Void> sendEmbeddedDeploymentModelAnalysisRequestFromModel(
       TechnologySpecificDeploymentModel embeddedDeploymentModel, UUID parentTaskId) {
     EmbeddedDeploymentModelAnalysisRequest request = new EmbeddedDeploymentModelAnalysisRequest();
     request.setParentTaskId(parentTaskId);
@@ -138,7 +233,7 @@ public class AnalysisTaskResponseSender {
       locations.add(location);
     }
     request.setLocations(locations);
-    sendEmbeddedDeploymentModelAnalysisRequest(request);
+    return sendEmbeddedDeploymentModelAnalysisRequest(request);
   }
 
   /**
@@ -149,8 +244,9 @@ public class AnalysisTaskResponseSender {
    * @param parentTaskId the ID of the current analysis task.
    * @param transformationProcessId the ID of the current transformation process.
    * @param technology the deployment technology of the embedded deployment model.
+   * @return a Mono completing when the broker confirmed the request.
    */
-  public void sendEmbeddedDeploymentModelAnalysisRequestFromTADMEntities(
+  public Mono<Void> sendEmbeddedDeploymentModelAnalysisRequestFromTADMEntities(
           Map<String, List<String>> tadmEntities, UUID parentTaskId, UUID transformationProcessId
           , String technology) {
     EmbeddedDeploymentModelAnalysisRequest request = new EmbeddedDeploymentModelAnalysisRequest();
@@ -158,6 +254,6 @@ public class AnalysisTaskResponseSender {
     request.setTransformationProcessId(transformationProcessId);
     request.setTechnology(technology);
     request.setTadmEntities(tadmEntities);
-    sendEmbeddedDeploymentModelAnalysisRequest(request);
+    return sendEmbeddedDeploymentModelAnalysisRequest(request);
   }
 }
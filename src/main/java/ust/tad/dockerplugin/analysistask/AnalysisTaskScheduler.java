@@ -0,0 +1,218 @@
+package ust.tad.dockerplugin.analysistask;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Decides when the analyses of received analysis tasks start. At most the configured number of
+ * analyses run at once, and at most one per transformation process, so that one transformation
+ * process with many tasks cannot occupy all slots, and analyses of the same model do not overwrite
+ * each other's updates.
+ *
+ * <p>Waiting analyses are queued per transformation process. When a slot is free, the first
+ * waiting analyses of all transformation processes compete for it, and the one with the earliest
+ * deadline starts. The deadline is the time the analysis was queued, delayed by the configured
+ * time per component to analyze. Thus, small analyses overtake large ones, but a large analysis
+ * is not overtaken by analyses queued after its deadline, so it does not starve.
+ *
+ * <p>The scheduler also applies backpressure to the listeners of the request queue: once the
+ * number of received but unfinished analysis tasks reaches the high watermark, the listener
+ * threads are paused in admit until it dropped to the low watermark. The broker then stops
+ * delivering messages to them as soon as their prefetch is exhausted.
+ */
+@Service
+public class AnalysisTaskScheduler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AnalysisTaskScheduler.class);
+
+  @Value("${analysis.scheduler.max-concurrent}")
+  private int maxConcurrent;
+
+  @Value("${analysis.scheduler.delay-per-component}")
+  private long delayPerComponent;
+
+  @Value("${analysis.scheduler.high-watermark}")
+  private int highWatermark;
+
+  @Value("${analysis.scheduler.low-watermark}")
+  private int lowWatermark;
+
+  private final Map<UUID, Deque<Analysis>> waitingAnalyses = new LinkedHashMap<>();
+
+  private final Set<UUID> runningTransformationProcesses = new HashSet<>();
+
+  private final AtomicInteger startRequests = new AtomicInteger();
+
+  private final ReentrantLock admissionLock = new ReentrantLock();
+
+  private final Condition resumed = admissionLock.newCondition();
+
+  private int admittedTasks;
+
+  private boolean paused;
+
+  @PostConstruct
+  private void resolveMaxConcurrent() {
+    if (maxConcurrent <= 0) {
+      maxConcurrent = Runtime.getRuntime().availableProcessors();
+    }
+  }
+
+  /**
+   * Admit a received analysis task. Blocks the calling listener thread while the scheduler is
+   * saturated. Every admitted task must be released once its processing has finished. A lock is
+   * used instead of a monitor, so that waiting virtual threads do not pin their carrier thread.
+   */
+  public void admit() {
+    admissionLock.lock();
+    try {
+      if (!paused && admittedTasks >= highWatermark) {
+        paused = true;
+        LOG.info("{} analysis tasks in progress, pausing consumers", admittedTasks);
+      }
+      while (paused) {
+        resumed.await();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      admittedTasks++;
+      admissionLock.unlock();
+    }
+  }
+
+  /** Release an admitted analysis task after its processing has finished. */
+  public void release() {
+    admissionLock.lock();
+    try {
+      admittedTasks--;
+      if (paused && admittedTasks <= lowWatermark) {
+        paused = false;
+        LOG.info("{} analysis tasks in progress, resuming consumers", admittedTasks);
+        resumed.signalAll();
+      }
+    } finally {
+      admissionLock.unlock();
+    }
+  }
+
+  /**
+   * Queue an analysis of a transformation process and start it once it is its turn.
+   *
+   * @param transformationProcessId the id of the transformation process.
+   * @param numberOfComponents the number of components to analyze, to estimate its duration.
+   * @param analysis the analysis, subscribed to when it starts.
+   * @return a Mono completing when the analysis has finished.
+   */
+  public Mono<Void> schedule(
+      UUID transformationProcessId, int numberOfComponents, Supplier<Mono<Void>> analysis) {
+    return Mono.defer(
+        () -> {
+          Analysis waitingAnalysis =
+              new Analysis(
+                  transformationProcessId,
+                  System.nanoTime() + numberOfComponents * delayPerComponent * 1_000_000L,
+                  analysis);
+          synchronized (waitingAnalyses) {
+            waitingAnalyses
+                .computeIfAbsent(transformationProcessId, id -> new ArrayDeque<>())
+                .add(waitingAnalysis);
+          }
+          startWaitingAnalyses();
+          return waitingAnalysis.completion.asMono();
+        });
+  }
+
+  /**
+   * Start the waiting analyses with the earliest deadlines while slots are free. Only one thread
+   * starts analyses at a time; calls during that are handled by it in another round, so that
+   * analyses finishing right away do not start the next ones recursively.
+   */
+  private void startWaitingAnalyses() {
+    if (startRequests.getAndIncrement() != 0) {
+      return;
+    }
+    do {
+      Analysis next;
+      while ((next = takeNext()) != null) {
+        start(next);
+      }
+    } while (startRequests.decrementAndGet() != 0);
+  }
+
+  private void start(Analysis analysis) {
+    Mono.defer(analysis.analysis)
+        .doOnError(
+            e -> LOG.error("Analysis of " + analysis.transformationProcessId + " failed", e))
+        .onErrorResume(e -> Mono.empty())
+        .doFinally(
+            signalType -> {
+              synchronized (waitingAnalyses) {
+                runningTransformationProcesses.remove(analysis.transformationProcessId);
+              }
+              analysis.completion.tryEmitEmpty();
+              startWaitingAnalyses();
+            })
+        .subscribe();
+  }
+
+  private Analysis takeNext() {
+    synchronized (waitingAnalyses) {
+      if (runningTransformationProcesses.size() >= maxConcurrent) {
+        return null;
+      }
+      Deque<Analysis> nextQueue = null;
+      for (Map.Entry<UUID, Deque<Analysis>> entry : waitingAnalyses.entrySet()) {
+        if (!runningTransformationProcesses.contains(entry.getKey())
+            && (nextQueue == null
+                || entry.getValue().peek().deadlineNanos - nextQueue.peek().deadlineNanos < 0)) {
+          nextQueue = entry.getValue();
+        }
+      }
+      if (nextQueue == null) {
+        return null;
+      }
+      Analysis next = nextQueue.poll();
+      if (nextQueue.isEmpty()) {
+        waitingAnalyses.remove(next.transformationProcessId);
+      }
+      runningTransformationProcesses.add(next.transformationProcessId);
+      return next;
+    }
+  }
+
+  /** A queued analysis and the sink completing when it has finished. */
+  private static class Analysis {
+
+    private final UUID transformationProcessId;
+
+    private final long deadlineNanos;
+
+    private final Supplier<Mono<Void>> analysis;
+
+    private final Sinks.Empty<Void> completion = Sinks.empty();
+
+    private Analysis(
+        UUID transformationProcessId, long deadlineNanos, Supplier<Mono<Void>> analysis) {
+      this.transformationProcessId = transformationProcessId;
+      this.deadlineNanos = deadlineNanos;
+      this.analysis = analysis;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package ust.tad.dockerplugin.config;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Configuration
+public class AnalysisConfig {
+
+  @Value("${analysis.parallelism}")
+  private int parallelism;
+
+  @Value("${analysis.queue-capacity}")
+  private int queueCapacity;
+
+  @Value("${analysis.scheduler.max-concurrent}")
+  private int maxConcurrent;
+
+  @Value("${analysis.virtual-threads}")
+  private boolean virtualThreads;
+
+  @Value("${analysis.image-inspection.layer-scan.parallelism}")
+  private int layerScanParallelism;
+
+  /**
+   * Bounded worker pool on which analysis tasks are executed. Tasks are rejected when the pool and
+   * its queue are saturated, instead of running on the submitting thread, which may be an event
+   * loop of the HTTP client. Rejection does not happen in practice: the AnalysisTaskScheduler runs
+   * at most analysis.scheduler.max-concurrent analyses at once, each with at most one step queued
+   * here, and its watermarks pause the request queue consumers, so the queue capacity only has to
+   * cover max-concurrent. This is checked on startup, as a smaller queue would fail analyses.
+   *
+   * @throws IllegalStateException if analysis.queue-capacity is less than
+   *     analysis.scheduler.max-concurrent.
+   */
+  @Bean
+  public ThreadPoolTaskExecutor analysisTaskExecutor() {
+    int resolvedMaxConcurrent =
+        maxConcurrent > 0 ? maxConcurrent : Runtime.getRuntime().availableProcessors();
+    if (queueCapacity < resolvedMaxConcurrent) {
+      throw new IllegalStateException(
+          "analysis.queue-capacity ("
+              + queueCapacity
+              + ") must be at least analysis.scheduler.max-concurrent ("
+              + resolvedMaxConcurrent
+              + "), otherwise analysis steps are rejected");
+    }
+    int poolSize = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(poolSize);
+    executor.setMaxPoolSize(poolSize);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setThreadNamePrefix("analysis-");
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    executor.initialize();
+    return executor;
+  }
+
+  /**
+   * Scheduler running the CPU-bound steps of the reactive analysis pipeline on the analysis task
+   * executor, so that they neither block the HTTP client event loop nor the AMQP listener threads.
+   * In the virtual thread mode, each step runs on a new virtual thread instead, so that the number
+   * of concurrent analyses is not limited by a pool of platform threads.
+   */
+  @Bean
+  public Scheduler analysisScheduler(ThreadPoolTaskExecutor analysisTaskExecutor) {
+    if (virtualThreads) {
+      return Schedulers.fromExecutor(VirtualThreads.taskExecutor("analysis-"));
+    }
+    return Schedulers.fromExecutor(analysisTaskExecutor);
+  }
+
+  /**
+   * Bounded fork-join pool on which the layers of inspected images are scanned in parallel. It is
+   * separate from the analysis task executor and the AMQP listener threads, so that scanning large
+   * images neither occupies the threads of other analyses nor delays receiving analysis tasks.
+   */
+  @Bean(destroyMethod = "shutdownNow")
+  public ForkJoinPool layerScanPool() {
+    int poolSize =
+        layerScanParallelism > 0
+            ? layerScanParallelism
+            : Runtime.getRuntime().availableProcessors();
+    AtomicInteger threadNumber = new AtomicInteger();
+    return new ForkJoinPool(
+        poolSize,
+        pool -> {
+          ForkJoinWorkerThread thread =
+              ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+          thread.setName("layer-scan-" + threadNumber.incrementAndGet());
+          return thread;
+        },
+        null,
+        false);
+  }
+}
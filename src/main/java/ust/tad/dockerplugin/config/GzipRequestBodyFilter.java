@@ -0,0 +1,91 @@
+package ust.tad.dockerplugin.config;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.http.client.reactive.ClientHttpRequestDecorator;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+/**
+ * Compresses request bodies with gzip and marks them with the Content-Encoding header. Bodies
+ * smaller than the minimum size are sent uncompressed, as compressing them does not pay off.
+ */
+public class GzipRequestBodyFilter implements ExchangeFilterFunction {
+
+  private final int minSize;
+
+  /** @param minSize the minimum size of request bodies to compress in bytes. */
+  public GzipRequestBodyFilter(int minSize) {
+    this.minSize = minSize;
+  }
+
+  @Override
+  public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+    ClientRequest compressingRequest =
+        ClientRequest.from(request)
+            .body(
+                (outputMessage, context) ->
+                    request.body().insert(new GzipRequestDecorator(outputMessage), context))
+            .build();
+    return next.exchange(compressingRequest);
+  }
+
+  private class GzipRequestDecorator extends ClientHttpRequestDecorator {
+
+    private GzipRequestDecorator(ClientHttpRequest delegate) {
+      super(delegate);
+    }
+
+    @Override
+    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+      return DataBufferUtils.join(body)
+          .map(Optional::of)
+          .defaultIfEmpty(Optional.empty())
+          .flatMap(
+              joinedBody -> super.writeWith(Mono.justOrEmpty(joinedBody.map(this::compress))));
+    }
+
+    /**
+     * Compress a body, unless it is smaller than the minimum size, and set the headers
+     * accordingly. This must happen before the request is committed by writeWith.
+     */
+    private DataBuffer compress(DataBuffer buffer) {
+      if (buffer.readableByteCount() < minSize) {
+        return buffer;
+      }
+      DataBuffer compressed = bufferFactory().allocateBuffer(buffer.readableByteCount() / 4);
+      try (OutputStream outputStream = new GZIPOutputStream(compressed.asOutputStream())) {
+        copy(buffer, outputStream);
+      } catch (IOException e) {
+        DataBufferUtils.release(compressed);
+        throw new UncheckedIOException(e);
+      } finally {
+        DataBufferUtils.release(buffer);
+      }
+      HttpHeaders headers = getHeaders();
+      headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+      headers.setContentLength(compressed.readableByteCount());
+      return compressed;
+    }
+  }
+
+  private static void copy(DataBuffer buffer, OutputStream outputStream) throws IOException {
+    byte[] chunk = new byte[8192];
+    while (buffer.readableByteCount() > 0) {
+      int length = Math.min(chunk.length, buffer.readableByteCount());
+      buffer.read(chunk, 0, length);
+      outputStream.write(chunk, 0, length);
+    }
+  }
+}
@@ -1,5 +1,8 @@
 package ust.tad.dockerplugin.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
@@ -7,12 +10,22 @@ import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import ust.tad.dockerplugin.analysistask.AnalysisTaskResponse;
+import ust.tad.dockerplugin.analysistask.AnalysisTaskStartRequest;
+import ust.tad.dockerplugin.analysistask.EmbeddedDeploymentModelAnalysisRequest;
 
 @Configuration
 public class MessagingConfig {
 
   @Autowired private ConnectionFactory connectionFactory;
 
+  /**
+   * The ObjectMapper configured by Spring Boot through the spring.jackson properties. It is shared
+   * by all message (de)serialization, so that its serializer and deserializer caches are only built
+   * once.
+   */
+  @Autowired private ObjectMapper objectMapper;
+
   /** Used to add AMQP entities at runtime. */
   @Bean
   public RabbitAdmin rabbitAdmin() {
@@ -22,6 +35,24 @@ public class MessagingConfig {
   /** Required to automatically transform messages with JSON body to Java objects. */
   @Bean
   public MessageConverter jsonMessageConverter() {
-    return new Jackson2JsonMessageConverter();
+    return new Jackson2JsonMessageConverter(objectMapper);
+  }
+
+  /** Binds the body of a request message directly to an AnalysisTaskStartRequest. */
+  @Bean
+  public ObjectReader analysisTaskStartRequestReader() {
+    return objectMapper.readerFor(AnalysisTaskStartRequest.class);
+  }
+
+  /** Writes the body of an AnalysisTaskResponse message. */
+  @Bean
+  public ObjectWriter analysisTaskResponseWriter() {
+    return objectMapper.writerFor(AnalysisTaskResponse.class);
+  }
+
+  /** Writes the body of an EmbeddedDeploymentModelAnalysisRequest message. */
+  @Bean
+  public ObjectWriter embeddedDeploymentModelAnalysisRequestWriter() {
+    return objectMapper.writerFor(EmbeddedDeploymentModelAnalysisRequest.class);
   }
 }
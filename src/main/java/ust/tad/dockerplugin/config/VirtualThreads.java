@@ -0,0 +1,52 @@
+package ust.tad.dockerplugin.config;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ThreadFactory;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+/**
+ * Creates virtual threads, if the runtime supports them. The plugin is compiled for Java 17, so
+ * the virtual thread API of Java 21 is accessed reflectively.
+ */
+public final class VirtualThreads {
+
+  private VirtualThreads() {}
+
+  /**
+   * Create a task executor running each task on a new virtual thread.
+   *
+   * @param threadNamePrefix the prefix of the names of the threads, followed by a counter.
+   * @return the task executor.
+   * @throws IllegalStateException if the runtime does not support virtual threads.
+   */
+  public static SimpleAsyncTaskExecutor taskExecutor(String threadNamePrefix) {
+    SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor();
+    executor.setThreadFactory(threadFactory(threadNamePrefix));
+    return executor;
+  }
+
+  /**
+   * Create a factory for virtual threads, equivalent to
+   * Thread.ofVirtual().name(threadNamePrefix, 0).factory().
+   *
+   * @param threadNamePrefix the prefix of the names of the threads, followed by a counter.
+   * @return the thread factory.
+   * @throws IllegalStateException if the runtime does not support virtual threads.
+   */
+  public static ThreadFactory threadFactory(String threadNamePrefix) {
+    try {
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      builder =
+          builderClass
+              .getMethod("name", String.class, long.class)
+              .invoke(builder, threadNamePrefix, 0L);
+      return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    } catch (ClassNotFoundException | NoSuchMethodException e) {
+      throw new IllegalStateException(
+          "Virtual threads require Java 21 or later, running on " + Runtime.version(), e);
+    } catch (IllegalAccessException | InvocationTargetException e) {
+      throw new IllegalStateException("Could not create virtual thread factory", e);
+    }
+  }
+}
@@ -1,14 +1,35 @@
 package ust.tad.dockerplugin.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
 import org.springframework.web.reactive.function.client.ExchangeStrategies;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import ust.tad.dockerplugin.metrics.AnalysisMetrics;
+import ust.tad.dockerplugin.models.BinaryModelFormat;
+import ust.tad.dockerplugin.models.tadm.TechnologyAgnosticDeploymentModel;
+import ust.tad.dockerplugin.models.tsdm.TechnologySpecificDeploymentModel;
 
 @Configuration
 public class WebClientConfig {
 
+  @Autowired private AnalysisMetrics analysisMetrics;
+
+  @Autowired private ObjectMapper objectMapper;
+
   @Value("${analysis-manager.plugin-registration.url}")
   private String pluginRegistrationURI;
 
@@ -20,14 +41,131 @@ public class WebClientConfig {
   @Value("${models-service.url}")
   private String modelsServiceURL;
 
+  @Value("${models-service.compression.response}")
+  private boolean compressResponses;
+
+  @Value("${models-service.compression.request}")
+  private boolean compressRequests;
+
+  @Value("${models-service.compression.request-min-size}")
+  private int compressRequestsMinSize;
+
+  @Value("${models-service.connection-pool.max-connections}")
+  private int maxConnections;
+
+  @Value("${models-service.connection-pool.pending-acquire-max-count}")
+  private int pendingAcquireMaxCount;
+
+  @Value("${models-service.connection-pool.pending-acquire-timeout}")
+  private long pendingAcquireTimeout;
+
+  @Value("${models-service.connection-pool.max-idle-time}")
+  private long maxIdleTime;
+
+  @Value("${models-service.connection-pool.max-life-time}")
+  private long maxLifeTime;
+
+  @Value("${models-service.connection-pool.eviction-interval}")
+  private long evictionInterval;
+
+  @Value("${models-service.timeout.connect}")
+  private int connectTimeout;
+
+  @Value("${models-service.timeout.response}")
+  private long responseTimeout;
+
+  @Value("${models-service.timeout.read}")
+  private long readTimeout;
+
+  @Value("${models-service.h2c}")
+  private boolean h2c;
+
+  @Autowired private BinaryModelFormat binaryModelFormat;
+
+  /**
+   * Pool of the connections to the models service. Requests wait for a free connection up to the
+   * pending acquire timeout, and fail right away once too many requests are waiting. Idle
+   * connections are closed by a background eviction before the models service or a proxy in
+   * between closes them.
+   */
+  @Bean(destroyMethod = "dispose")
+  public ConnectionProvider modelsServiceConnectionProvider() {
+    ConnectionProvider.Builder builder =
+        ConnectionProvider.builder("models-service")
+            .maxConnections(maxConnections)
+            .pendingAcquireMaxCount(pendingAcquireMaxCount)
+            .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeout))
+            .maxIdleTime(Duration.ofMillis(maxIdleTime))
+            .maxLifeTime(Duration.ofMillis(maxLifeTime));
+    if (evictionInterval > 0) {
+      builder.evictInBackground(Duration.ofMillis(evictionInterval));
+    }
+    return builder.build();
+  }
+
+  /**
+   * WebClient for the models service. It asks for gzip or deflate compressed responses, and
+   * optionally compresses request bodies. Models are (de)serialized with the shared ObjectMapper,
+   * or in the configured binary model format. Response bodies are not aggregated by the codecs, but
+   * bound while they arrive, see ModelsService, so the in-memory size of the codecs is not raised.
+   *
+   * <p>The connect timeout limits establishing a connection, the response timeout the wait for the
+   * response headers after the request was sent, and the read timeout the gaps between two reads
+   * of the response body. With h2c, HTTP/2 is negotiated by an upgrade from HTTP/1.1, which the
+   * models service may decline.
+   */
   @Bean
   public WebClient modelsServiceApiClient() {
-    return WebClient.builder()
-        .baseUrl(modelsServiceURL)
+    HttpClient httpClient =
+        HttpClient.create(modelsServiceConnectionProvider())
+            .compress(compressResponses)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout)
+            .responseTimeout(Duration.ofMillis(responseTimeout))
+            .doOnResponse(
+                (response, connection) ->
+                    connection.addHandlerLast(
+                        new ReadTimeoutHandler(readTimeout, TimeUnit.MILLISECONDS)));
+    if (h2c) {
+      httpClient = httpClient.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+    }
+    WebClient.Builder builder =
+        WebClient.builder()
+            .baseUrl(modelsServiceURL)
+            .clientConnector(new ReactorClientHttpConnector(httpClient));
+    if (compressRequests) {
+      builder.filter(new GzipRequestBodyFilter(compressRequestsMinSize));
+    }
+    return builder
+        .filter(analysisMetrics.modelsServiceRequestsFilter())
         .exchangeStrategies(
             ExchangeStrategies.builder()
-                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+                .codecs(
+                    configurer -> {
+                      configurer.defaultCodecs().jackson2JsonEncoder(
+                          new Jackson2JsonEncoder(objectMapper));
+                      configurer.defaultCodecs().jackson2JsonDecoder(
+                          new Jackson2JsonDecoder(objectMapper));
+                      binaryModelFormat.registerCodecs(configurer);
+                    })
                 .build())
         .build();
   }
+
+  /**
+   * Binds a technology-agnostic deployment model while its response body is read, see
+   * ModelsService.
+   */
+  @Bean
+  public ObjectReader technologyAgnosticDeploymentModelReader() {
+    return objectMapper.readerFor(TechnologyAgnosticDeploymentModel.class);
+  }
+
+  /**
+   * Binds a technology-specific deployment model while its response body is read, see
+   * ModelsService.
+   */
+  @Bean
+  public ObjectReader technologySpecificDeploymentModelReader() {
+    return objectMapper.readerFor(TechnologySpecificDeploymentModel.class);
+  }
 }
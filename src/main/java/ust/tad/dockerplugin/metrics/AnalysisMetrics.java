@@ -0,0 +1,212 @@
+package ust.tad.dockerplugin.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.client.reactive.ClientHttpRequestDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Meters for the lifecycle of analysis tasks, exposed through the Actuator endpoints:
+ *
+ * <ul>
+ *   <li>analysis.task.queue.latency: time from receiving a request until its analysis starts
+ *   <li>analysis.tasks: duration and result of analysis tasks
+ *   <li>analysis.tasks.in.flight: number of analysis tasks currently in progress
+ *   <li>analysis.component.classification: duration and result of classifying a component
+ *   <li>models.service.requests: latency of requests to the models service
+ *   <li>models.service.payload.size: size of request and response bodies of the models service
+ * </ul>
+ */
+@Component
+public class AnalysisMetrics {
+
+  private static final String NO_EXCEPTION = "none";
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  private final AtomicInteger tasksInFlight = new AtomicInteger();
+
+  private Timer queueLatency;
+
+  @PostConstruct
+  private void registerMeters() {
+    queueLatency =
+        Timer.builder("analysis.task.queue.latency")
+            .description("Time from receiving an analysis task until its analysis starts")
+            .register(meterRegistry);
+    Gauge.builder("analysis.tasks.in.flight", tasksInFlight, AtomicInteger::get)
+        .description("Analysis tasks currently in progress")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Record the time an analysis task waited between being received and the start of its analysis.
+   *
+   * @param receivedAtNanos the value of System.nanoTime() when the task was received.
+   */
+  public void recordQueueLatency(long receivedAtNanos) {
+    queueLatency.record(System.nanoTime() - receivedAtNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Count the given analysis task as in flight while it is subscribed to and record its duration.
+   *
+   * @param task the analysis task.
+   * @return the analysis task with metrics.
+   */
+  public Mono<Void> trackTask(Mono<Void> task) {
+    return Mono.defer(
+        () -> {
+          tasksInFlight.incrementAndGet();
+          long start = System.nanoTime();
+          return task.doFinally(
+              signalType -> {
+                tasksInFlight.decrementAndGet();
+                Timer.builder("analysis.tasks")
+                    .description("Duration of analysis tasks")
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+              });
+        });
+  }
+
+  /**
+   * Count the result of an analysis task.
+   *
+   * @param exception the exception the task failed with or null if it succeeded.
+   */
+  public void countTaskResult(Throwable exception) {
+    Counter.builder("analysis.task.results")
+        .description("Results of analysis tasks")
+        .tag("result", exception == null ? "success" : "failure")
+        .tag("exception", exceptionName(exception))
+        .register(meterRegistry)
+        .increment();
+  }
+
+  /**
+   * Record the duration and result of classifying a single component.
+   *
+   * @param startNanos the value of System.nanoTime() when the classification started.
+   * @param exception the exception the classification failed with or null if it succeeded.
+   */
+  public void recordComponentClassification(long startNanos, Throwable exception) {
+    classificationTimer(exception).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+  }
+
+  private Timer classificationTimer(Throwable exception) {
+    return Timer.builder("analysis.component.classification")
+        .description("Duration of classifying the Docker image of a component")
+        .tag("result", exception == null ? "success" : "failure")
+        .tag("exception", exceptionName(exception))
+        .register(meterRegistry);
+  }
+
+  /**
+   * Create a filter for the models service WebClient that records the latency of each request
+   * until its response body was read, and the sizes of request and response bodies. Requests are
+   * tagged with the HTTP method, the kind of model requested, and the response status.
+   *
+   * @return the filter function.
+   */
+  public ExchangeFilterFunction modelsServiceRequestsFilter() {
+    return (request, next) -> {
+      String method = request.method().name();
+      String model = modelOf(request.url().getPath());
+      AtomicLong requestBytes = new AtomicLong();
+      ClientRequest countingRequest =
+          ClientRequest.from(request)
+              .body(
+                  (outputMessage, context) ->
+                      request
+                          .body()
+                          .insert(
+                              new ClientHttpRequestDecorator(outputMessage) {
+                                @Override
+                                public Mono<Void> writeWith(
+                                    Publisher<? extends DataBuffer> body) {
+                                  return super.writeWith(
+                                      Flux.from(body)
+                                          .doOnNext(
+                                              buffer ->
+                                                  requestBytes.addAndGet(
+                                                      buffer.readableByteCount())));
+                                }
+                              },
+                              context))
+              .build();
+      long start = System.nanoTime();
+      return next.exchange(countingRequest)
+          .doOnError(e -> recordModelsServiceRequest(method, model, "IO_ERROR", start))
+          .map(
+              response -> {
+                String status = String.valueOf(response.rawStatusCode());
+                if (requestBytes.get() > 0) {
+                  recordPayloadSize(method, model, "request", requestBytes.get());
+                }
+                AtomicLong responseBytes = new AtomicLong();
+                return response
+                    .mutate()
+                    .body(
+                        body ->
+                            body.doOnNext(
+                                    buffer -> responseBytes.addAndGet(buffer.readableByteCount()))
+                                .doFinally(
+                                    signalType -> {
+                                      recordModelsServiceRequest(method, model, status, start);
+                                      recordPayloadSize(
+                                          method, model, "response", responseBytes.get());
+                                    }))
+                    .build();
+              });
+    };
+  }
+
+  private void recordModelsServiceRequest(String method, String model, String status, long start) {
+    Timer.builder("models.service.requests")
+        .description("Latency of requests to the models service")
+        .tag("method", method)
+        .tag("model", model)
+        .tag("status", status)
+        .register(meterRegistry)
+        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+  }
+
+  private void recordPayloadSize(String method, String model, String direction, long bytes) {
+    DistributionSummary.builder("models.service.payload.size")
+        .description("Size of request and response bodies exchanged with the models service")
+        .baseUnit("bytes")
+        .tag("method", method)
+        .tag("model", model)
+        .tag("direction", direction)
+        .register(meterRegistry)
+        .record(bytes);
+  }
+
+  private static String modelOf(String path) {
+    if (path.contains("technology-agnostic")) {
+      return "technology-agnostic";
+    } else if (path.contains("technology-specific")) {
+      return "technology-specific";
+    }
+    return "other";
+  }
+
+  private static String exceptionName(Throwable exception) {
+    return exception == null ? NO_EXCEPTION : exception.getClass().getSimpleName();
+  }
+}
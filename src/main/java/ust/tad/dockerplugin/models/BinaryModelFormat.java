@@ -0,0 +1,113 @@
+package ust.tad.dockerplugin.models;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ClientCodecConfigurer;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+/**
+ * The binary format in which deployment models are exchanged with the models service instead of
+ * JSON, if one is configured. Models service responses are decoded according to their content
+ * type, so only requests depend on the models service accepting the binary format. Once it rejects
+ * a request in this format, models are sent as JSON from then on.
+ */
+@Component
+public class BinaryModelFormat {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BinaryModelFormat.class);
+
+  public static final MediaType APPLICATION_SMILE =
+      MediaType.valueOf("application/x-jackson-smile");
+
+  public static final MediaType APPLICATION_CBOR = MediaType.valueOf("application/cbor");
+
+  @Value("${models-service.binary-format}")
+  private String format;
+
+  @Autowired private ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder;
+
+  private MediaType mediaType;
+
+  private ObjectMapper objectMapper;
+
+  private final AtomicBoolean rejected = new AtomicBoolean();
+
+  @PostConstruct
+  private void createObjectMapper() {
+    switch (format.trim().toLowerCase()) {
+      case "smile":
+        mediaType = APPLICATION_SMILE;
+        objectMapper = objectMapperBuilder.getObject().factory(new SmileFactory()).build();
+        break;
+      case "cbor":
+        mediaType = APPLICATION_CBOR;
+        objectMapper = objectMapperBuilder.getObject().factory(new CBORFactory()).build();
+        break;
+      case "none":
+        break;
+      default:
+        throw new IllegalArgumentException(
+            "Unknown binary format for the models service: "
+                + format
+                + ", use none, smile or cbor");
+    }
+  }
+
+  /** Whether a binary format is configured, regardless of whether the models service accepts it. */
+  public boolean isConfigured() {
+    return mediaType != null;
+  }
+
+  /** Whether requests to the models service are sent in the binary format. */
+  public boolean isEnabled() {
+    return mediaType != null && !rejected.get();
+  }
+
+  /** The media type of the binary format or null if none is configured. */
+  public MediaType getMediaType() {
+    return mediaType;
+  }
+
+  /** The ObjectMapper for the binary format or null if none is configured. */
+  public ObjectMapper getObjectMapper() {
+    return objectMapper;
+  }
+
+  /** Send models as JSON, as the models service does not accept the binary format. */
+  public void reject() {
+    if (rejected.compareAndSet(false, true)) {
+      LOG.warn("Models service does not accept {}, falling back to JSON", mediaType);
+    }
+  }
+
+  /**
+   * Register the encoder and decoder for the binary format. Their media types are given
+   * explicitly, as the codecs otherwise claim the JSON media types when created with an
+   * ObjectMapper.
+   *
+   * @param configurer the codec configurer of the models service WebClient.
+   */
+  public void registerCodecs(ClientCodecConfigurer configurer) {
+    if (APPLICATION_SMILE.equals(mediaType)) {
+      configurer.customCodecs().register(new Jackson2SmileEncoder(objectMapper, mediaType));
+      configurer.customCodecs().register(new Jackson2SmileDecoder(objectMapper, mediaType));
+    } else if (APPLICATION_CBOR.equals(mediaType)) {
+      configurer.customCodecs().register(new Jackson2CborEncoder(objectMapper, mediaType));
+      configurer.customCodecs().register(new Jackson2CborDecoder(objectMapper, mediaType));
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package ust.tad.dockerplugin.models;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+/**
+ * InputStream over a stream of DataBuffers, e.g. a response body, so that a blocking parser can
+ * consume the body while it arrives. Only a few buffers are requested ahead of the reader and each
+ * buffer is released once it was read, so the memory held by the stream does not depend on the
+ * size of the body. The publisher is never blocked: the reader blocks instead while it waits for
+ * the next buffer, so the stream must be read on a thread that may block.
+ */
+final class DataBufferInputStream extends InputStream implements Subscriber<DataBuffer> {
+
+  private static final DataBuffer END_OF_STREAM =
+      DefaultDataBufferFactory.sharedInstance.allocateBuffer(0);
+
+  private final BlockingQueue<DataBuffer> buffers = new LinkedBlockingQueue<>();
+
+  private final int prefetch;
+
+  private volatile Subscription subscription;
+
+  private volatile Throwable failure;
+
+  private volatile boolean closed;
+
+  private DataBuffer current;
+
+  /**
+   * Create the stream and subscribe to the given buffers.
+   *
+   * @param body the buffers to read.
+   * @param prefetch the number of buffers requested ahead of the reader.
+   */
+  DataBufferInputStream(Publisher<DataBuffer> body, int prefetch) {
+    this.prefetch = prefetch;
+    body.subscribe(this);
+  }
+
+  /** The error the stream of buffers terminated with, or null if there was none (yet). */
+  Throwable getFailure() {
+    return failure;
+  }
+
+  @Override
+  public void onSubscribe(Subscription subscription) {
+    this.subscription = subscription;
+    subscription.request(prefetch);
+  }
+
+  @Override
+  public void onNext(DataBuffer buffer) {
+    buffers.add(buffer);
+    if (closed) {
+      releaseQueuedBuffers();
+    }
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    failure = throwable;
+    buffers.add(END_OF_STREAM);
+  }
+
+  @Override
+  public void onComplete() {
+    buffers.add(END_OF_STREAM);
+  }
+
+  @Override
+  public int read() throws IOException {
+    DataBuffer buffer = nextReadableBuffer();
+    return buffer == null ? -1 : buffer.read() & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    DataBuffer buffer = nextReadableBuffer();
+    if (buffer == null) {
+      return -1;
+    }
+    int count = Math.min(length, buffer.readableByteCount());
+    buffer.read(bytes, offset, count);
+    return count;
+  }
+
+  @Override
+  public int available() {
+    return current == null ? 0 : current.readableByteCount();
+  }
+
+  private DataBuffer nextReadableBuffer() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    while (current == null || current.readableByteCount() == 0) {
+      if (current == END_OF_STREAM) {
+        if (failure != null) {
+          throw new IOException("Reading the response body failed", failure);
+        }
+        return null;
+      }
+      if (current != null) {
+        DataBufferUtils.release(current);
+        current = null;
+        subscription.request(1);
+      }
+      try {
+        current = buffers.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for the response body");
+      }
+    }
+    return current;
+  }
+
+  /** Cancel the subscription and release all buffers that were received but not read. */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    Subscription subscription = this.subscription;
+    if (subscription != null) {
+      subscription.cancel();
+    }
+    if (current != null && current != END_OF_STREAM) {
+      DataBufferUtils.release(current);
+    }
+    current = END_OF_STREAM;
+    releaseQueuedBuffers();
+  }
+
+  private void releaseQueuedBuffers() {
+    DataBuffer buffer;
+    while ((buffer = buffers.poll()) != null) {
+      DataBufferUtils.release(buffer);
+    }
+  }
+}
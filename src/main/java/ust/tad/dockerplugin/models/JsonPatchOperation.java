@@ -0,0 +1,83 @@
+package ust.tad.dockerplugin.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import ust.tad.dockerplugin.models.tadm.ModelChanges;
+
+/** An operation of a JSON Patch document as defined in RFC 6902. */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class JsonPatchOperation {
+
+  @JsonProperty("op")
+  private String op;
+
+  @JsonProperty("path")
+  private String path;
+
+  @JsonProperty("value")
+  private Object value;
+
+  public JsonPatchOperation() {}
+
+  public JsonPatchOperation(String op, String path, Object value) {
+    this.op = op;
+    this.path = path;
+    this.value = value;
+  }
+
+  public String getOp() {
+    return op;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public Object getValue() {
+    return value;
+  }
+
+  /**
+   * Create the JSON Patch document for the changes of the components and component types of a
+   * technology-agnostic deployment model.
+   *
+   * @param changes the changes of the model.
+   * @return the operations of the JSON Patch document.
+   */
+  public static List<JsonPatchOperation> fromModelChanges(ModelChanges changes) {
+    List<JsonPatchOperation> operations = new ArrayList<>();
+    addOperations(
+        operations,
+        "/componentTypes/",
+        changes.getRemovedComponentTypeIndexes(),
+        changes.getReplacedComponentTypes(),
+        changes.getAddedComponentTypes());
+    addOperations(
+        operations,
+        "/components/",
+        changes.getRemovedComponentIndexes(),
+        changes.getReplacedComponents(),
+        changes.getAddedComponents());
+    return operations;
+  }
+
+  private static void addOperations(
+      List<JsonPatchOperation> operations,
+      String pathPrefix,
+      List<Integer> removedIndexes,
+      Map<Integer, ?> replacedElements,
+      List<?> addedElements) {
+    for (Integer removedIndex : removedIndexes) {
+      operations.add(new JsonPatchOperation("remove", pathPrefix + removedIndex, null));
+    }
+    replacedElements.forEach(
+        (index, element) ->
+            operations.add(new JsonPatchOperation("replace", pathPrefix + index, element)));
+    for (Object addedElement : addedElements) {
+      operations.add(new JsonPatchOperation("add", pathPrefix + "-", addedElement));
+    }
+  }
+}
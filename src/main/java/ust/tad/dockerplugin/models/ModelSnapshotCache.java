@@ -0,0 +1,122 @@
+package ust.tad.dockerplugin.models;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the serialized technology-agnostic deployment model last sent to the models service per
+ * transformation process, so that a following analysis task can use it instead of downloading the
+ * model again. A snapshot is used without asking the models service during the trust window after
+ * it was sent. Afterwards, it is only used if the models service returned an ETag for it and
+ * confirms with 304 Not Modified that the model is unchanged. The cache evicts the least recently
+ * used snapshots when it exceeds the configured number of entries or total size.
+ */
+@Component
+public class ModelSnapshotCache {
+
+  /** A serialized model with the ETag the models service returned for it, if any. */
+  public static final class Snapshot {
+
+    private final byte[] content;
+
+    private final String eTag;
+
+    private final long createdAtNanos;
+
+    private Snapshot(byte[] content, String eTag) {
+      this.content = content;
+      this.eTag = eTag;
+      this.createdAtNanos = System.nanoTime();
+    }
+
+    public byte[] getContent() {
+      return content;
+    }
+
+    /** The ETag of the model or null if the models service did not return one. */
+    public String getETag() {
+      return eTag;
+    }
+
+    private boolean isYoungerThan(long millis) {
+      return System.nanoTime() - createdAtNanos < millis * 1_000_000L;
+    }
+  }
+
+  @Value("${models-service.model-cache.max-entries}")
+  private int maxEntries;
+
+  @Value("${models-service.model-cache.max-size}")
+  private long maxSize;
+
+  @Value("${models-service.model-cache.trust-window}")
+  private long trustWindow;
+
+  private final Map<UUID, Snapshot> snapshots = new LinkedHashMap<>(16, 0.75f, true);
+
+  private long size;
+
+  public boolean isEnabled() {
+    return maxEntries > 0;
+  }
+
+  /**
+   * Get the snapshot of the model of a transformation process.
+   *
+   * @param transformationProcessId the id of the transformation process.
+   * @return the snapshot or an empty Optional if there is none.
+   */
+  public synchronized Optional<Snapshot> get(UUID transformationProcessId) {
+    return Optional.ofNullable(snapshots.get(transformationProcessId));
+  }
+
+  /**
+   * Whether a snapshot may be used without validating it with the models service.
+   *
+   * @param snapshot the snapshot.
+   * @return true if the snapshot was created within the trust window.
+   */
+  public boolean isTrusted(Snapshot snapshot) {
+    return trustWindow > 0 && snapshot.isYoungerThan(trustWindow);
+  }
+
+  /**
+   * Store the snapshot of the model of a transformation process, replacing the previous one.
+   * Snapshots larger than the maximum size of the cache are not stored.
+   *
+   * @param transformationProcessId the id of the transformation process.
+   * @param content the serialized model.
+   * @param eTag the ETag the models service returned for the model or null.
+   */
+  public synchronized void put(UUID transformationProcessId, byte[] content, String eTag) {
+    invalidate(transformationProcessId);
+    if (!isEnabled() || content.length > maxSize) {
+      return;
+    }
+    snapshots.put(transformationProcessId, new Snapshot(content, eTag));
+    size += content.length;
+    Iterator<Snapshot> eldest = snapshots.values().iterator();
+    while (snapshots.size() > maxEntries || size > maxSize) {
+      size -= eldest.next().content.length;
+      eldest.remove();
+    }
+  }
+
+  /**
+   * Remove the snapshot of the model of a transformation process, e.g. because the model was
+   * changed by someone else.
+   *
+   * @param transformationProcessId the id of the transformation process.
+   */
+  public synchronized void invalidate(UUID transformationProcessId) {
+    Snapshot snapshot = snapshots.remove(transformationProcessId);
+    if (snapshot != null) {
+      size -= snapshot.content.length;
+    }
+  }
+}
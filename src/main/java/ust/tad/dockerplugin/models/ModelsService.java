@@ -1,13 +1,31 @@
 package ust.tad.dockerplugin.models;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import javax.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import ust.tad.dockerplugin.models.ModelSnapshotCache.Snapshot;
+import ust.tad.dockerplugin.models.tadm.ModelChanges;
 import ust.tad.dockerplugin.models.tadm.TechnologyAgnosticDeploymentModel;
 import ust.tad.dockerplugin.models.tsdm.TechnologySpecificDeploymentModel;
 
@@ -16,15 +34,64 @@ public class ModelsService {
 
   private static final Logger LOG = LoggerFactory.getLogger(ModelsService.class);
 
+  /** How updated technology-agnostic deployment models are sent to the models service. */
+  public enum UpdateMode {
+    /** Send the complete model. */
+    FULL,
+    /** Send a JSON Patch document with the changed components and component types. */
+    PATCH
+  }
+
+  private static final MediaType APPLICATION_JSON_PATCH =
+      MediaType.valueOf("application/json-patch+json");
+
+  /** Number of response body buffers requested ahead of the parser when reading a model. */
+  private static final int RESPONSE_BODY_PREFETCH = 4;
+
   @Autowired private WebClient modelsServiceApiClient;
 
+  @Autowired private ObjectReader technologyAgnosticDeploymentModelReader;
+
+  @Autowired private ObjectReader technologySpecificDeploymentModelReader;
+
+  @Autowired private BinaryModelFormat binaryModelFormat;
+
+  @Autowired private ModelSnapshotCache modelSnapshotCache;
+
+  @Autowired private ObjectMapper objectMapper;
+
+  private ObjectWriter technologyAgnosticDeploymentModelWriter;
+
+  private ObjectReader binaryTechnologyAgnosticDeploymentModelReader;
+
+  private ObjectReader binaryTechnologySpecificDeploymentModelReader;
+
+  @Value("${models-service.update-mode}")
+  private UpdateMode updateMode;
+
+  @Value("${models-service.discard-update-response}")
+  private boolean discardUpdateResponse;
+
+  @PostConstruct
+  private void createReadersAndWriters() {
+    technologyAgnosticDeploymentModelWriter =
+        objectMapper.writerFor(TechnologyAgnosticDeploymentModel.class);
+    if (binaryModelFormat.isConfigured()) {
+      binaryTechnologyAgnosticDeploymentModelReader =
+          binaryModelFormat.getObjectMapper().readerFor(TechnologyAgnosticDeploymentModel.class);
+      binaryTechnologySpecificDeploymentModelReader =
+          binaryModelFormat.getObjectMapper().readerFor(TechnologySpecificDeploymentModel.class);
+    }
+  }
+
   /**
-   * Retrieve a technology-specific deployment model from the model service.
+   * Retrieve a technology-specific deployment model from the model service. The model is bound
+   * while the response body arrives, see readModel.
    *
    * @param transformationProcessId
-   * @return
+   * @return a Mono emitting the technology-specific deployment model.
    */
-  public TechnologySpecificDeploymentModel getTechnologySpecificDeploymentModel(
+  public Mono<TechnologySpecificDeploymentModel> getTechnologySpecificDeploymentModel(
       UUID transformationProcessId) {
     LOG.info("Requesting technology-specific deployment model");
     return modelsServiceApiClient
@@ -32,10 +99,16 @@ public class ModelsService {
         .uri(
             uriBuilder ->
                 uriBuilder.path("/technology-specific/" + transformationProcessId).build())
-        .accept(MediaType.APPLICATION_JSON)
+        .accept(acceptedMediaTypes())
         .retrieve()
-        .bodyToMono(TechnologySpecificDeploymentModel.class)
-        .block();
+        .toEntityFlux(DataBuffer.class)
+        .flatMap(
+            response ->
+                readModel(
+                    response.getBody(),
+                    isBinaryModelFormat(response.getHeaders().getContentType())
+                        ? binaryTechnologySpecificDeploymentModelReader
+                        : technologySpecificDeploymentModelReader));
   }
 
   /**
@@ -43,58 +116,284 @@ public class ModelsService {
    * models service.
    *
    * @param technologySpecificDeploymentModel
+   * @return a Mono completing when the models service has accepted the update.
    */
-  public void updateTechnologySpecificDeploymentModel(
+  public Mono<Void> updateTechnologySpecificDeploymentModel(
       TechnologySpecificDeploymentModel technologySpecificDeploymentModel) {
     LOG.info("Updating technology-specific deployment model");
-    modelsServiceApiClient
-        .post()
-        .uri("/technology-specific")
-        .contentType(MediaType.APPLICATION_JSON)
-        .accept(MediaType.APPLICATION_JSON)
-        .body(BodyInserters.fromValue(technologySpecificDeploymentModel))
-        .retrieve()
-        .bodyToMono(TechnologySpecificDeploymentModel.class)
-        .block();
+    return postModel(
+            "/technology-specific",
+            technologySpecificDeploymentModel,
+            technologySpecificDeploymentModel,
+            TechnologySpecificDeploymentModel.class)
+        .then();
   }
 
   /**
-   * Retrieve a technology-agnostic deployment model from the model service.
+   * Retrieve a technology-agnostic deployment model from the model service. The model is bound
+   * while the response body arrives, see readModel.
+   *
+   * <p>If this plugin sent the model of the transformation process before, the snapshot of it in
+   * the ModelSnapshotCache is used instead, either right away within the trust window, or if the
+   * models service answers the request conditional on its ETag with 304 Not Modified.
    *
    * @param transformationProcessId
-   * @return
+   * @return a Mono emitting the technology-agnostic deployment model.
    */
-  public TechnologyAgnosticDeploymentModel getTechnologyAgnosticDeploymentModel(
+  public Mono<TechnologyAgnosticDeploymentModel> getTechnologyAgnosticDeploymentModel(
       UUID transformationProcessId) {
+    Optional<Snapshot> snapshot = modelSnapshotCache.get(transformationProcessId);
+    if (snapshot.isPresent() && modelSnapshotCache.isTrusted(snapshot.get())) {
+      LOG.info("Using technology-agnostic deployment model sent within the trust window");
+      return readSnapshot(snapshot.get());
+    }
     LOG.info("Requesting technology-agnostic deployment model");
+    String eTag = snapshot.map(Snapshot::getETag).orElse(null);
     return modelsServiceApiClient
         .get()
         .uri(
             uriBuilder ->
                 uriBuilder.path("/technology-agnostic/" + transformationProcessId).build())
-        .accept(MediaType.APPLICATION_JSON)
+        .accept(acceptedMediaTypes())
+        .headers(
+            headers -> {
+              if (eTag != null) {
+                headers.setIfNoneMatch(eTag);
+              }
+            })
         .retrieve()
-        .bodyToMono(TechnologyAgnosticDeploymentModel.class)
-        .block();
+        .toEntityFlux(DataBuffer.class)
+        .flatMap(
+            response -> {
+              if (response.getStatusCode() == HttpStatus.NOT_MODIFIED && snapshot.isPresent()) {
+                LOG.info("Technology-agnostic deployment model not modified since it was sent");
+                return response.getBody().then(readSnapshot(snapshot.get()));
+              }
+              if (snapshot.isPresent()) {
+                modelSnapshotCache.invalidate(transformationProcessId);
+              }
+              return readModel(
+                  response.getBody(),
+                  isBinaryModelFormat(response.getHeaders().getContentType())
+                      ? binaryTechnologyAgnosticDeploymentModelReader
+                      : technologyAgnosticDeploymentModelReader);
+            });
   }
 
   /**
-   * Update a technology-agnostic deployment model by sending it to the update endpoint of the
-   * models service.
+   * Update a technology-agnostic deployment model. Depending on the configured update mode, either
+   * the complete model is sent to the update endpoint of the models service, or a JSON Patch
+   * document with the changes since the change tracking of the model was started. If the changes
+   * of the model are not tracked, the complete model is sent. Once the models service accepted the
+   * update, a snapshot of the model is stored in the ModelSnapshotCache together with the ETag of
+   * the response.
    *
    * @param technologyAgnosticDeploymentModel
+   * @return a Mono completing when the models service has accepted the update.
    */
-  public void updateTechnologyAgnosticDeploymentModel(
+  public Mono<Void> updateTechnologyAgnosticDeploymentModel(
       TechnologyAgnosticDeploymentModel technologyAgnosticDeploymentModel) {
+    UUID transformationProcessId = technologyAgnosticDeploymentModel.getTransformationProcessId();
+    if (updateMode == UpdateMode.PATCH && transformationProcessId != null) {
+      Optional<ModelChanges> changes = technologyAgnosticDeploymentModel.describeChanges();
+      if (changes.isPresent()) {
+        Mono<HttpHeaders> patch =
+            patchTechnologyAgnosticDeploymentModel(transformationProcessId, changes.get());
+        if (!modelSnapshotCache.isEnabled()) {
+          return patch.then();
+        }
+        return patch
+            .flatMap(
+                headers ->
+                    writeSnapshot(technologyAgnosticDeploymentModel)
+                        .doOnNext(
+                            content ->
+                                modelSnapshotCache.put(
+                                    transformationProcessId, content, headers.getETag())))
+            .doOnError(e -> modelSnapshotCache.invalidate(transformationProcessId))
+            .then();
+      }
+      LOG.info("Changes of technology-agnostic deployment model not tracked, sending full model");
+    }
     LOG.info("Updating technology-agnostic deployment model");
-    modelsServiceApiClient
-        .post()
-        .uri("/technology-agnostic")
-        .contentType(MediaType.APPLICATION_JSON)
-        .accept(MediaType.APPLICATION_JSON)
-        .body(BodyInserters.fromValue(technologyAgnosticDeploymentModel))
-        .retrieve()
-        .bodyToMono(TechnologyAgnosticDeploymentModel.class)
-        .block();
+    if (transformationProcessId == null || !modelSnapshotCache.isEnabled()) {
+      return postModel(
+              "/technology-agnostic",
+              technologyAgnosticDeploymentModel,
+              technologyAgnosticDeploymentModel,
+              TechnologyAgnosticDeploymentModel.class)
+          .then();
+    }
+    return writeSnapshot(technologyAgnosticDeploymentModel)
+        .flatMap(
+            content ->
+                postModel(
+                        "/technology-agnostic",
+                        technologyAgnosticDeploymentModel,
+                        content,
+                        TechnologyAgnosticDeploymentModel.class)
+                    .doOnNext(
+                        headers ->
+                            modelSnapshotCache.put(
+                                transformationProcessId, content, headers.getETag())))
+        .doOnError(e -> modelSnapshotCache.invalidate(transformationProcessId))
+        .then();
+  }
+
+  /**
+   * Update a technology-agnostic deployment model by sending a JSON Patch document with its changed
+   * components and component types to the models service.
+   *
+   * @param transformationProcessId the id of the transformation process of the model.
+   * @param changes the changes of the model.
+   * @return a Mono emitting the response headers when the models service has accepted the update,
+   *     or an empty Mono if the model is unchanged.
+   */
+  private Mono<HttpHeaders> patchTechnologyAgnosticDeploymentModel(
+      UUID transformationProcessId, ModelChanges changes) {
+    if (changes.isEmpty()) {
+      LOG.info("Technology-agnostic deployment model unchanged, skipping update");
+      return Mono.empty();
+    }
+    List<JsonPatchOperation> patch = JsonPatchOperation.fromModelChanges(changes);
+    LOG.info("Patching technology-agnostic deployment model with {} operations", patch.size());
+    WebClient.ResponseSpec responseSpec =
+        modelsServiceApiClient
+            .patch()
+            .uri(
+                uriBuilder ->
+                    uriBuilder.path("/technology-agnostic/" + transformationProcessId).build())
+            .contentType(APPLICATION_JSON_PATCH)
+            .accept(acceptedMediaTypes())
+            .body(BodyInserters.fromValue(patch))
+            .retrieve();
+    return readUpdateResponse(responseSpec, TechnologyAgnosticDeploymentModel.class);
+  }
+
+  /**
+   * Send a model to an update endpoint of the models service, in the binary model format if one
+   * is configured. If the models service rejects the binary format with 415 Unsupported Media Type,
+   * the model is sent again as JSON, as are all models from then on.
+   *
+   * @param path the path of the update endpoint.
+   * @param model the model to send.
+   * @param jsonBody the body to send as JSON, either the model or its serialized JSON.
+   * @param modelType the type of the model.
+   * @return a Mono emitting the response headers when the models service has accepted the update.
+   */
+  private Mono<HttpHeaders> postModel(
+      String path, Object model, Object jsonBody, Class<?> modelType) {
+    if (!binaryModelFormat.isEnabled()) {
+      return postModel(path, jsonBody, modelType, MediaType.APPLICATION_JSON);
+    }
+    return postModel(path, model, modelType, binaryModelFormat.getMediaType())
+        .onErrorResume(
+            WebClientResponseException.UnsupportedMediaType.class,
+            e -> {
+              binaryModelFormat.reject();
+              return postModel(path, jsonBody, modelType, MediaType.APPLICATION_JSON);
+            });
+  }
+
+  private Mono<HttpHeaders> postModel(
+      String path, Object model, Class<?> modelType, MediaType contentType) {
+    WebClient.ResponseSpec responseSpec =
+        modelsServiceApiClient
+            .post()
+            .uri(path)
+            .contentType(contentType)
+            .accept(acceptedMediaTypes())
+            .body(BodyInserters.fromValue(model))
+            .retrieve();
+    return readUpdateResponse(responseSpec, modelType);
+  }
+
+  /** The media types accepted for models, preferring the binary model format if configured. */
+  private MediaType[] acceptedMediaTypes() {
+    if (binaryModelFormat.isConfigured()) {
+      return new MediaType[] {binaryModelFormat.getMediaType(), MediaType.APPLICATION_JSON};
+    }
+    return new MediaType[] {MediaType.APPLICATION_JSON};
+  }
+
+  private boolean isBinaryModelFormat(MediaType contentType) {
+    return binaryModelFormat.isConfigured()
+        && contentType != null
+        && contentType.isCompatibleWith(binaryModelFormat.getMediaType());
+  }
+
+  /**
+   * Bind a model from a response body with the Jackson streaming parser while the body arrives,
+   * instead of aggregating the complete body in memory first. Only a few buffers of the body are
+   * held at a time, so that the memory required is about the size of the bound model, and there is
+   * no limit on the size of the body. As the parser blocks while waiting for the next buffer, it
+   * runs on the bounded elastic scheduler.
+   *
+   * @param body the response body.
+   * @param reader the reader for the type of the model.
+   * @return a Mono emitting the model, or an empty Mono if the body is empty.
+   */
+  private <T> Mono<T> readModel(Flux<DataBuffer> body, ObjectReader reader) {
+    return Mono.using(
+        () -> new DataBufferInputStream(body, RESPONSE_BODY_PREFETCH),
+        inputStream ->
+            Mono.fromCallable(
+                    () -> {
+                      try (JsonParser parser = reader.getFactory().createParser(inputStream)) {
+                        if (parser.nextToken() == null) {
+                          return null;
+                        }
+                        return reader.<T>readValue(parser);
+                      }
+                    })
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorMap(e -> inputStream.getFailure() != null, e -> inputStream.getFailure()),
+        DataBufferInputStream::close);
+  }
+
+  /** Serialize a model as JSON, to send it and keep it as snapshot. */
+  private Mono<byte[]> writeSnapshot(TechnologyAgnosticDeploymentModel model) {
+    return Mono.fromCallable(
+        () -> technologyAgnosticDeploymentModelWriter.writeValueAsBytes(model));
+  }
+
+  /** Bind a model from a snapshot sent to the models service before. */
+  private Mono<TechnologyAgnosticDeploymentModel> readSnapshot(Snapshot snapshot) {
+    return Mono.fromCallable(
+        () -> technologyAgnosticDeploymentModelReader.readValue(snapshot.getContent()));
+  }
+
+  /**
+   * Emit the response headers when the response of an update request was received. Unless
+   * configured otherwise, the updated model echoed in the response body is not decoded, but its
+   * bytes are released as they arrive. Otherwise, it is bound while the body arrives like a
+   * retrieved model, see readModel, so that its size is not limited either.
+   */
+  private Mono<HttpHeaders> readUpdateResponse(
+      WebClient.ResponseSpec responseSpec, Class<?> modelType) {
+    if (discardUpdateResponse) {
+      return responseSpec.toBodilessEntity().map(HttpEntity::getHeaders);
+    }
+    return responseSpec
+        .toEntityFlux(DataBuffer.class)
+        .flatMap(
+            response ->
+                readModel(
+                        response.getBody(),
+                        modelReader(modelType, response.getHeaders().getContentType()))
+                    .then(Mono.just(response.getHeaders())));
+  }
+
+  /** The reader for a model type in the format of a response body. */
+  private ObjectReader modelReader(Class<?> modelType, MediaType contentType) {
+    boolean binary = isBinaryModelFormat(contentType);
+    if (modelType == TechnologySpecificDeploymentModel.class) {
+      return binary
+          ? binaryTechnologySpecificDeploymentModelReader
+          : technologySpecificDeploymentModelReader;
+    }
+    return binary
+        ? binaryTechnologyAgnosticDeploymentModelReader
+        : technologyAgnosticDeploymentModelReader;
   }
 }
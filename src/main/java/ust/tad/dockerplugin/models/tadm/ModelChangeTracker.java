@@ -0,0 +1,125 @@
+package ust.tad.dockerplugin.models.tadm;
+
+import java.util.*;
+
+/**
+ * Records which components and component types of a technology-agnostic deployment model were
+ * changed since the tracking started, and the positions of the components and component types at
+ * that time. From this, the changes can be described relative to the model as it was before.
+ */
+class ModelChangeTracker {
+
+  private final Map<Component, Integer> originalComponentIndexes = new IdentityHashMap<>();
+
+  private final Map<ComponentType, Integer> originalComponentTypeIndexes = new IdentityHashMap<>();
+
+  private final Set<Component> changedComponents =
+      Collections.newSetFromMap(new IdentityHashMap<>());
+
+  private final Set<ComponentType> changedComponentTypes =
+      Collections.newSetFromMap(new IdentityHashMap<>());
+
+  ModelChangeTracker(List<Component> components, List<ComponentType> componentTypes) {
+    for (int i = 0; i < components.size(); i++) {
+      originalComponentIndexes.putIfAbsent(components.get(i), i);
+    }
+    for (int i = 0; i < componentTypes.size(); i++) {
+      originalComponentTypeIndexes.putIfAbsent(componentTypes.get(i), i);
+    }
+  }
+
+  void componentChanged(Component component) {
+    changedComponents.add(component);
+  }
+
+  void componentTypeChanged(ComponentType componentType) {
+    changedComponentTypes.add(componentType);
+  }
+
+  /**
+   * Describe the changes relative to the original model. As components embed their type and
+   * component types embed their parent type, a changed component type also changes its components
+   * and the component types extending it.
+   *
+   * @param components the current components of the model.
+   * @param componentTypes the current component types of the model.
+   * @param modelIndex the index of the current model.
+   * @return the changes, or an empty Optional if the lists were reordered, so that the changes
+   *     cannot be described by the positions in the original lists.
+   */
+  Optional<ModelChanges> getChanges(
+      List<Component> components, List<ComponentType> componentTypes, ModelIndex modelIndex) {
+    Set<ComponentType> affectedComponentTypes = Collections.newSetFromMap(new IdentityHashMap<>());
+    Deque<ComponentType> componentTypesToVisit = new ArrayDeque<>(changedComponentTypes);
+    while (!componentTypesToVisit.isEmpty()) {
+      ComponentType componentType = componentTypesToVisit.pop();
+      if (affectedComponentTypes.add(componentType)) {
+        componentTypesToVisit.addAll(modelIndex.getComponentTypesWithParentType(componentType));
+      }
+    }
+    Set<Component> affectedComponents = Collections.newSetFromMap(new IdentityHashMap<>());
+    affectedComponents.addAll(changedComponents);
+    for (ComponentType componentType : affectedComponentTypes) {
+      affectedComponents.addAll(modelIndex.getComponentsOfType(componentType));
+    }
+
+    ModelChanges changes = new ModelChanges();
+    if (!collectChanges(
+            originalComponentIndexes,
+            components,
+            affectedComponents,
+            changes.getRemovedComponentIndexes(),
+            changes.getReplacedComponents(),
+            changes.getAddedComponents())
+        || !collectChanges(
+            originalComponentTypeIndexes,
+            componentTypes,
+            affectedComponentTypes,
+            changes.getRemovedComponentTypeIndexes(),
+            changes.getReplacedComponentTypes(),
+            changes.getAddedComponentTypes())) {
+      return Optional.empty();
+    }
+    return Optional.of(changes);
+  }
+
+  /**
+   * Compare the current elements with the original ones. Elements still present must keep their
+   * relative order and added elements must follow all of them, as is the case if elements were only
+   * removed and appended.
+   *
+   * @return false if the current elements cannot be described by this kind of changes.
+   */
+  private static <T> boolean collectChanges(
+      Map<T, Integer> originalIndexes,
+      List<T> currentElements,
+      Set<T> changedElements,
+      List<Integer> removedIndexes,
+      SortedMap<Integer, T> replacedElements,
+      List<T> addedElements) {
+    Set<T> retainedElements = Collections.newSetFromMap(new IdentityHashMap<>());
+    int lastOriginalIndex = -1;
+    for (int i = 0; i < currentElements.size(); i++) {
+      T element = currentElements.get(i);
+      Integer originalIndex = originalIndexes.get(element);
+      if (originalIndex == null || !retainedElements.add(element)) {
+        addedElements.add(element);
+      } else if (!addedElements.isEmpty() || originalIndex < lastOriginalIndex) {
+        return false;
+      } else {
+        lastOriginalIndex = originalIndex;
+        if (changedElements.contains(element)) {
+          replacedElements.put(i, element);
+        }
+      }
+    }
+    originalIndexes.forEach(
+        (element, originalIndex) -> {
+          if (!retainedElements.contains(element)) {
+            removedIndexes.add(originalIndex);
+          }
+        });
+    removedIndexes.sort(Comparator.reverseOrder());
+    return true;
+  }
+}
@@ -0,0 +1,67 @@
+package ust.tad.dockerplugin.models.tadm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The changes of the components and component types of a technology-agnostic deployment model
+ * since its change tracking started. Applied in this order, they turn the original lists into the
+ * current ones:
+ *
+ * <ol>
+ *   <li>remove the elements at the removed indexes, which refer to the original lists and are
+ *       sorted in descending order,
+ *   <li>replace the elements at the indexes of the replaced elements, which refer to the lists
+ *       after the removal,
+ *   <li>append the added elements.
+ * </ol>
+ */
+public class ModelChanges {
+
+  private final List<Integer> removedComponentIndexes = new ArrayList<>();
+
+  private final SortedMap<Integer, Component> replacedComponents = new TreeMap<>();
+
+  private final List<Component> addedComponents = new ArrayList<>();
+
+  private final List<Integer> removedComponentTypeIndexes = new ArrayList<>();
+
+  private final SortedMap<Integer, ComponentType> replacedComponentTypes = new TreeMap<>();
+
+  private final List<ComponentType> addedComponentTypes = new ArrayList<>();
+
+  public List<Integer> getRemovedComponentIndexes() {
+    return removedComponentIndexes;
+  }
+
+  public SortedMap<Integer, Component> getReplacedComponents() {
+    return replacedComponents;
+  }
+
+  public List<Component> getAddedComponents() {
+    return addedComponents;
+  }
+
+  public List<Integer> getRemovedComponentTypeIndexes() {
+    return removedComponentTypeIndexes;
+  }
+
+  public SortedMap<Integer, ComponentType> getReplacedComponentTypes() {
+    return replacedComponentTypes;
+  }
+
+  public List<ComponentType> getAddedComponentTypes() {
+    return addedComponentTypes;
+  }
+
+  public boolean isEmpty() {
+    return removedComponentIndexes.isEmpty()
+        && replacedComponents.isEmpty()
+        && addedComponents.isEmpty()
+        && removedComponentTypeIndexes.isEmpty()
+        && replacedComponentTypes.isEmpty()
+        && addedComponentTypes.isEmpty();
+  }
+}
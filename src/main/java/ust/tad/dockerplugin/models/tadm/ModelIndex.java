@@ -0,0 +1,149 @@
+package ust.tad.dockerplugin.models.tadm;
+
+import java.util.*;
+
+/**
+ * Lookup structures for the components and component types of a technology-agnostic deployment
+ * model: components by id, component types by id and by name, the components using a component
+ * type and the component types extending a component type.
+ *
+ * <p>The index is built for the component and component type lists of a model. It stays valid as
+ * long as these lists are only changed through the model, which keeps the index up to date.
+ */
+class ModelIndex {
+
+  private final List<Component> components;
+
+  private final List<ComponentType> componentTypes;
+
+  private int indexedComponentsSize;
+
+  private int indexedComponentTypesSize;
+
+  private final Map<String, Component> componentsById = new HashMap<>();
+
+  private final Map<String, ComponentType> componentTypesById = new HashMap<>();
+
+  private final Map<String, ComponentType> componentTypesByName = new HashMap<>();
+
+  private final Map<String, Set<Component>> componentsByTypeId = new HashMap<>();
+
+  private final Map<String, Set<ComponentType>> componentTypesByParentTypeId = new HashMap<>();
+
+  ModelIndex(List<Component> components, List<ComponentType> componentTypes) {
+    this.components = components;
+    this.componentTypes = componentTypes;
+    for (Component component : components) {
+      addComponent(component);
+    }
+    for (ComponentType componentType : componentTypes) {
+      addComponentType(componentType);
+    }
+  }
+
+  /**
+   * Check whether this index was built for the given lists and whether the lists were not extended
+   * or shrunk without updating the index.
+   *
+   * @param components the current components of the model.
+   * @param componentTypes the current component types of the model.
+   * @return true if the index can be used for the given lists.
+   */
+  boolean isValidFor(List<Component> components, List<ComponentType> componentTypes) {
+    return this.components == components
+        && this.componentTypes == componentTypes
+        && components.size() == indexedComponentsSize
+        && componentTypes.size() == indexedComponentTypesSize;
+  }
+
+  Optional<Component> getComponentById(String componentId) {
+    return Optional.ofNullable(componentsById.get(componentId));
+  }
+
+  Optional<ComponentType> getComponentTypeById(String componentTypeId) {
+    return Optional.ofNullable(componentTypesById.get(componentTypeId));
+  }
+
+  Optional<ComponentType> getComponentTypeByName(String name) {
+    return Optional.ofNullable(componentTypesByName.get(name));
+  }
+
+  Collection<Component> getComponentsOfType(ComponentType componentType) {
+    return componentsByTypeId.getOrDefault(componentType.getId(), Collections.emptySet());
+  }
+
+  Collection<ComponentType> getComponentTypesWithParentType(ComponentType parentType) {
+    return componentTypesByParentTypeId.getOrDefault(parentType.getId(), Collections.emptySet());
+  }
+
+  void addComponent(Component component) {
+    componentsById.putIfAbsent(component.getId(), component);
+    if (component.getType() != null) {
+      usagesOf(componentsByTypeId, component.getType().getId()).add(component);
+    }
+    indexedComponentsSize++;
+  }
+
+  void addComponentType(ComponentType componentType) {
+    componentTypesById.putIfAbsent(componentType.getId(), componentType);
+    componentTypesByName.putIfAbsent(componentType.getName(), componentType);
+    if (componentType.getParentType() != null) {
+      usagesOf(componentTypesByParentTypeId, componentType.getParentType().getId())
+          .add(componentType);
+    }
+    indexedComponentTypesSize++;
+  }
+
+  void removeComponentType(ComponentType componentType) {
+    componentTypesById.remove(componentType.getId(), componentType);
+    componentTypesByName.remove(componentType.getName(), componentType);
+    if (componentType.getParentType() != null) {
+      removeUsage(
+          componentTypesByParentTypeId, componentType.getParentType().getId(), componentType);
+    }
+    indexedComponentTypesSize--;
+  }
+
+  void changeTypeOfComponent(Component component, ComponentType oldType, ComponentType newType) {
+    if (oldType != null) {
+      removeUsage(componentsByTypeId, oldType.getId(), component);
+    }
+    if (newType != null) {
+      usagesOf(componentsByTypeId, newType.getId()).add(component);
+    }
+  }
+
+  void changeNameOfComponentType(ComponentType componentType, String oldName, String newName) {
+    componentTypesByName.remove(oldName, componentType);
+    componentTypesByName.putIfAbsent(newName, componentType);
+  }
+
+  void changeParentTypeOfComponentType(
+      ComponentType componentType, ComponentType oldParentType, ComponentType newParentType) {
+    if (oldParentType != null) {
+      removeUsage(componentTypesByParentTypeId, oldParentType.getId(), componentType);
+    }
+    if (newParentType != null) {
+      usagesOf(componentTypesByParentTypeId, newParentType.getId()).add(componentType);
+    }
+  }
+
+  /**
+   * Model entities are compared by identity in the reverse indexes, as their equals and hashCode
+   * methods depend on mutable fields.
+   */
+  private static <T> Set<T> usagesOf(Map<String, Set<T>> reverseIndex, String key) {
+    return reverseIndex.computeIfAbsent(
+        key, ignored -> Collections.newSetFromMap(new IdentityHashMap<>()));
+  }
+
+  private static <T> void removeUsage(Map<String, Set<T>> reverseIndex, String key, T entity) {
+    Set<T> usages = reverseIndex.get(key);
+    if (usages != null) {
+      usages.remove(entity);
+      if (usages.isEmpty()) {
+        reverseIndex.remove(key);
+      }
+    }
+  }
+}
@@ -1,7 +1,6 @@
 package ust.tad.dockerplugin.models.tadm;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class TechnologyAgnosticDeploymentModel {
 
@@ -19,6 +18,10 @@ public class TechnologyAgnosticDeploymentModel {
 
   private List<RelationType> relationTypes = new ArrayList<>();
 
+  private ModelIndex index;
+
+  private ModelChangeTracker changeTracker;
+
   public TechnologyAgnosticDeploymentModel() {}
 
   public TechnologyAgnosticDeploymentModel(
@@ -81,8 +84,149 @@ public class TechnologyAgnosticDeploymentModel {
   }
 
   public ComponentType getComponentTypeById(String componentTypeId) {
-    return this.getComponentTypes().stream().filter(componentType ->
-            componentType.getId().equals(componentTypeId)).findFirst().orElseThrow();
+    return this.getIndex().getComponentTypeById(componentTypeId).orElseThrow();
+  }
+
+  public Optional<ComponentType> getComponentTypeByName(String name) {
+    return this.getIndex().getComponentTypeByName(name);
+  }
+
+  public Optional<Component> getComponentById(String componentId) {
+    return this.getIndex().getComponentById(componentId);
+  }
+
+  /**
+   * Get the components that have the given component type set as their type.
+   *
+   * @param componentType the component type.
+   * @return an unmodifiable view of the components using the component type.
+   */
+  public Collection<Component> getComponentsOfType(ComponentType componentType) {
+    return Collections.unmodifiableCollection(this.getIndex().getComponentsOfType(componentType));
+  }
+
+  /**
+   * Get the component types that have the given component type set as their parent type.
+   *
+   * @param parentType the parent component type.
+   * @return an unmodifiable view of the component types extending the parent type.
+   */
+  public Collection<ComponentType> getComponentTypesWithParentType(ComponentType parentType) {
+    return Collections.unmodifiableCollection(
+        this.getIndex().getComponentTypesWithParentType(parentType));
+  }
+
+  /**
+   * Set the type of a component of this tadm.
+   *
+   * @param component the component to change.
+   * @param componentType the new type of the component.
+   */
+  public void setTypeOfComponent(Component component, ComponentType componentType) {
+    ModelIndex modelIndex = this.getIndex();
+    ComponentType oldComponentType = component.getType();
+    component.setType(componentType);
+    modelIndex.changeTypeOfComponent(component, oldComponentType, componentType);
+    this.markComponentChanged(component);
+  }
+
+  /**
+   * Set the name of a component type of this tadm.
+   *
+   * @param componentType the component type to rename.
+   * @param name the new name of the component type.
+   */
+  public void setNameOfComponentType(ComponentType componentType, String name) {
+    ModelIndex modelIndex = this.getIndex();
+    String oldName = componentType.getName();
+    componentType.setName(name);
+    modelIndex.changeNameOfComponentType(componentType, oldName, name);
+    this.markComponentTypeChanged(componentType);
+  }
+
+  /**
+   * Set the parent type of a component type of this tadm.
+   *
+   * @param componentType the component type to change.
+   * @param parentType the new parent type of the component type.
+   */
+  public void setParentTypeOfComponentType(ComponentType componentType, ComponentType parentType) {
+    ModelIndex modelIndex = this.getIndex();
+    ComponentType oldParentType = componentType.getParentType();
+    componentType.setParentType(parentType);
+    modelIndex.changeParentTypeOfComponentType(componentType, oldParentType, parentType);
+    this.markComponentTypeChanged(componentType);
+  }
+
+  /**
+   * Discard the lookup structures of this tadm. They are rebuilt on the next lookup.
+   * This is required after the id, name, type or parent type of a component or component type of
+   * this tadm was changed directly instead of through this tadm, or after its lists of components
+   * or component types were modified in place.
+   */
+  public void invalidateIndex() {
+    this.index = null;
+  }
+
+  /**
+   * Start tracking the changes of the components and component types of this tadm, relative to
+   * their current state. Changes made through this tadm are recorded automatically; direct changes
+   * of components or component types must be recorded with markComponentChanged and
+   * markComponentTypeChanged.
+   */
+  public void startChangeTracking() {
+    this.changeTracker = new ModelChangeTracker(this.components, this.componentTypes);
+  }
+
+  /**
+   * Record that a component of this tadm was changed directly, e.g. its artifacts or properties.
+   *
+   * @param component the changed component.
+   */
+  public void markComponentChanged(Component component) {
+    if (this.changeTracker != null) {
+      this.changeTracker.componentChanged(component);
+    }
+  }
+
+  /**
+   * Record that a component type of this tadm was changed directly, e.g. its properties or
+   * operations.
+   *
+   * @param componentType the changed component type.
+   */
+  public void markComponentTypeChanged(ComponentType componentType) {
+    if (this.changeTracker != null) {
+      this.changeTracker.componentTypeChanged(componentType);
+    }
+  }
+
+  /**
+   * Describe the changes of the components and component types since startChangeTracking was
+   * called.
+   *
+   * @return the changes, or an empty Optional if the changes are not tracked or cannot be described
+   *     relative to the original lists, e.g. because they were reordered or replaced.
+   */
+  public Optional<ModelChanges> describeChanges() {
+    if (this.changeTracker == null) {
+      return Optional.empty();
+    }
+    return this.changeTracker.getChanges(this.components, this.componentTypes, this.getIndex());
+  }
+
+  /**
+   * Get the lookup structures for the components and component types of this tadm.
+   * They are built lazily and rebuilt if the lists of components or component types were replaced
+   * or changed in size without going through this tadm.
+   *
+   * @return the index of this tadm.
+   */
+  private ModelIndex getIndex() {
+    if (this.index == null || !this.index.isValidFor(this.components, this.componentTypes)) {
+      this.index = new ModelIndex(this.components, this.componentTypes);
+    }
+    return this.index;
   }
 
   public void setComponentTypes(List<ComponentType> componentTypes) {
@@ -206,9 +350,11 @@ public class TechnologyAgnosticDeploymentModel {
    * @param newComponents the components to add.
    */
   public void addComponents(Collection<Component> newComponents) {
-    List<Component> components = this.getComponents();
-    components.addAll(newComponents);
-    this.setComponents(components);
+    ModelIndex modelIndex = this.getIndex();
+    for (Component newComponent : newComponents) {
+      this.components.add(newComponent);
+      modelIndex.addComponent(newComponent);
+    }
   }
 
   /**
@@ -235,26 +381,37 @@ public class TechnologyAgnosticDeploymentModel {
    * @param newComponentTypes the component types to add.
    */
   public void addComponentTypes(Collection<ComponentType> newComponentTypes) {
-    List<ComponentType> componentTypes = this.getComponentTypes();
-    List<String> componentTypeNames =
-            componentTypes.stream().map(ComponentType::getName).collect(Collectors.toList());
+    ModelIndex modelIndex = this.getIndex();
+    Map<String, List<ComponentType>> newComponentTypesByParentTypeId = new HashMap<>();
     for (ComponentType newComponentType : newComponentTypes) {
-      if (componentTypeNames.contains(newComponentType.getName())) {
-        Optional<ComponentType> matchedComponentType =
-                componentTypes.stream().filter(componentType -> componentType.getName().equals(newComponentType.getName())).findFirst();
-        matchedComponentType.ifPresent(componentType -> {
-          this.replaceComponentTypeForComponents(newComponentType, componentType);
-          componentType.addPropertiesIfNotPresent(newComponentType);
-          componentType.addOperationsIfNotPresent(newComponentType);
-          this.replaceParentTypeForComponentTypes(newComponentType, componentType,
-                  newComponentTypes);
-          this.replaceParentTypeForComponentTypes(newComponentType, componentType, componentTypes);
-        });
+      if (newComponentType.getParentType() != null) {
+        newComponentTypesByParentTypeId.computeIfAbsent(
+                newComponentType.getParentType().getId(), id -> new ArrayList<>())
+                .add(newComponentType);
+      }
+    }
+    for (ComponentType newComponentType : newComponentTypes) {
+      Optional<ComponentType> matchedComponentType =
+              modelIndex.getComponentTypeByName(newComponentType.getName());
+      if (matchedComponentType.isPresent()) {
+        ComponentType componentType = matchedComponentType.get();
+        if (componentType == newComponentType) {
+          continue;
+        }
+        this.replaceComponentTypeForComponents(newComponentType, componentType);
+        componentType.addPropertiesIfNotPresent(newComponentType);
+        componentType.addOperationsIfNotPresent(newComponentType);
+        this.markComponentTypeChanged(componentType);
+        this.replaceParentTypeForComponentTypes(newComponentType, componentType,
+                newComponentTypesByParentTypeId.getOrDefault(
+                        newComponentType.getId(), Collections.emptyList()));
+        this.replaceParentTypeForComponentTypes(newComponentType, componentType,
+                new ArrayList<>(modelIndex.getComponentTypesWithParentType(newComponentType)));
       } else {
-        componentTypes.add(newComponentType);
+        this.componentTypes.add(newComponentType);
+        modelIndex.addComponentType(newComponentType);
       }
     }
-    this.setComponentTypes(componentTypes);
   }
 
   /**
@@ -264,15 +421,43 @@ public class TechnologyAgnosticDeploymentModel {
    * @param componentTypeToRemove the component type to remove.
    */
   public void removeComponentTypeIfUnused(ComponentType componentTypeToRemove) {
-    List<ComponentType> componentTypes = this.getComponentTypes();
-    if (componentTypes.stream().anyMatch(componentType -> componentType.getParentType() != null
-            && componentType.getParentType().equals(componentTypeToRemove))
-            || this.getComponents().stream().anyMatch(
-                    component -> component.getType().equals(componentTypeToRemove))) {
+    ModelIndex modelIndex = this.getIndex();
+    if (!modelIndex.getComponentTypesWithParentType(componentTypeToRemove).isEmpty()
+            || !modelIndex.getComponentsOfType(componentTypeToRemove).isEmpty()) {
       return;
     }
-    componentTypes.remove(componentTypeToRemove);
-    this.setComponentTypes(componentTypes);
+    if (this.componentTypes.remove(componentTypeToRemove)) {
+      modelIndex.removeComponentType(componentTypeToRemove);
+    }
+  }
+
+  /**
+   * Removes the given component types from the tadm that are not the parent type of another
+   * component type and not set as the type of a component. Unlike calling
+   * removeComponentTypeIfUnused for each component type, this takes a single pass over the
+   * component types of the tadm.
+   *
+   * @param componentTypesToRemove the component types to remove.
+   */
+  public void removeComponentTypesIfUnused(Collection<ComponentType> componentTypesToRemove) {
+    ModelIndex modelIndex = this.getIndex();
+    Set<ComponentType> unusedComponentTypes = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (ComponentType componentType : componentTypesToRemove) {
+      if (modelIndex.getComponentTypesWithParentType(componentType).isEmpty()
+              && modelIndex.getComponentsOfType(componentType).isEmpty()) {
+        unusedComponentTypes.add(componentType);
+      }
+    }
+    if (unusedComponentTypes.isEmpty()) {
+      return;
+    }
+    int sizeBefore = this.componentTypes.size();
+    this.componentTypes.removeIf(unusedComponentTypes::contains);
+    if (sizeBefore - this.componentTypes.size() == unusedComponentTypes.size()) {
+      unusedComponentTypes.forEach(modelIndex::removeComponentType);
+    } else {
+      this.invalidateIndex();
+    }
   }
 
   /**
@@ -283,13 +468,11 @@ public class TechnologyAgnosticDeploymentModel {
    */
   private void replaceComponentTypeForComponents(ComponentType oldComponentType,
                                                  ComponentType newComponentType) {
-    List<Component> components = this.getComponents();
-    for (Component component : components) {
-      if (component.getType().equals(oldComponentType)) {
-        component.setType(newComponentType);
-      }
+    List<Component> componentsOfOldType =
+            new ArrayList<>(this.getIndex().getComponentsOfType(oldComponentType));
+    for (Component component : componentsOfOldType) {
+      this.setTypeOfComponent(component, newComponentType);
     }
-    this.setComponents(components);
   }
 
   /**
@@ -299,16 +482,22 @@ public class TechnologyAgnosticDeploymentModel {
    * @param oldComponentType the current parentType.
    * @param newComponentType the new parentType.
    * @param componentTypes the list of ComponentTypes to search for the old relation type.
-   * @return
    */
-  private Collection<ComponentType> replaceParentTypeForComponentTypes(
+  private void replaceParentTypeForComponentTypes(
           ComponentType oldComponentType,
           ComponentType newComponentType,
           Collection<ComponentType> componentTypes) {
-    return componentTypes.stream().filter(componentType -> (componentType.getParentType() != null &&
-                    componentType.getParentType().equals(oldComponentType)))
-            .peek(componentType -> componentType.setParentType(newComponentType))
-            .collect(Collectors.toList());
+    ModelIndex modelIndex = this.getIndex();
+    for (ComponentType componentType : componentTypes) {
+      if (componentType.getParentType() != null
+              && Objects.equals(componentType.getParentType().getId(), oldComponentType.getId())) {
+        if (modelIndex.getComponentTypeById(componentType.getId()).orElse(null) == componentType) {
+          this.setParentTypeOfComponentType(componentType, newComponentType);
+        } else {
+          componentType.setParentType(newComponentType);
+        }
+      }
+    }
   }
 
   /**
@@ -321,58 +510,74 @@ public class TechnologyAgnosticDeploymentModel {
    * @param newRelationTypes the relation types to add.
    */
   public void addRelationTypes(Collection<RelationType> newRelationTypes) {
-    List<RelationType> relationTypes = this.getRelationTypes();
-    List<String> relationTypeNames =
-            relationTypes.stream().map(RelationType::getName).collect(Collectors.toList());
+    Map<String, RelationType> relationTypesByName = new HashMap<>();
+    for (RelationType relationType : this.relationTypes) {
+      relationTypesByName.putIfAbsent(relationType.getName(), relationType);
+    }
+    Map<RelationType, RelationType> replacedRelationTypes = new IdentityHashMap<>();
     for (RelationType otherRelationType : newRelationTypes) {
-      if (relationTypeNames.contains(otherRelationType.getName())) {
-        Optional<RelationType> matchedRelationType =
-                relationTypes.stream().filter(relationType -> relationType.getName().equals(otherRelationType.getName())).findFirst();
-        matchedRelationType.ifPresent(relationType -> {
-          this.replaceRelationTypeForRelations(otherRelationType, relationType);
-          this.replaceParentTypeForRelationTypes(otherRelationType, relationType, newRelationTypes);
-          this.replaceParentTypeForRelationTypes(otherRelationType, relationType, relationTypes);
-        });
-      } else {
-        relationTypes.add(otherRelationType);
+      RelationType matchedRelationType = relationTypesByName.get(otherRelationType.getName());
+      if (matchedRelationType == null) {
+        this.relationTypes.add(otherRelationType);
+        relationTypesByName.put(otherRelationType.getName(), otherRelationType);
+      } else if (matchedRelationType != otherRelationType) {
+        replacedRelationTypes.put(otherRelationType, matchedRelationType);
       }
     }
-    this.setRelationTypes(relationTypes);
+    if (!replacedRelationTypes.isEmpty()) {
+      this.replaceRelationTypeForRelations(replacedRelationTypes);
+      this.replaceParentTypeForRelationTypes(replacedRelationTypes, newRelationTypes);
+      this.replaceParentTypeForRelationTypes(replacedRelationTypes, this.relationTypes);
+    }
   }
 
   /**
-   * Replace the RelationType of a Relation with a new one.
+   * Replace the RelationType of Relations with new ones.
    *
-   * @param oldRelationType the relation type to be replaced.
-   * @param newRelationType the relation type that replaces the old one.
+   * @param replacedRelationTypes the relation types to be replaced, mapped to the relation types
+   *                              that replace them.
    */
-  private void replaceRelationTypeForRelations(RelationType oldRelationType, RelationType newRelationType) {
-    List<Relation> relations = this.getRelations();
-    for (Relation relation : relations) {
-      if (relation.getType().equals(oldRelationType)) {
-        relation.setType(newRelationType);
+  private void replaceRelationTypeForRelations(
+          Map<RelationType, RelationType> replacedRelationTypes) {
+    Map<String, RelationType> replacementsById = replacementsById(replacedRelationTypes);
+    for (Relation relation : this.relations) {
+      if (relation.getType() != null) {
+        RelationType newRelationType = replacementsById.get(relation.getType().getId());
+        if (newRelationType != null) {
+          relation.setType(newRelationType);
+        }
       }
     }
-    this.setRelations(relations);
   }
 
   /**
-   * Replace the parentType of all RelationTypes in a list of RelationTypes that match the given
-   * old RelationType with a new RelationType.
+   * Replace the parentType of all RelationTypes in a list of RelationTypes that match one of the
+   * replaced RelationTypes with the RelationType replacing it.
    *
-   * @param oldRelationType the current parentType.
-   * @param newRelationType the new parentType.
-   * @param relationTypes the list of RelationTypes to search for the old relation type.
-   * @return
+   * @param replacedRelationTypes the relation types to be replaced, mapped to the relation types
+   *                              that replace them.
+   * @param relationTypes the list of RelationTypes to search for replaced parent types.
    */
-  private Collection<RelationType> replaceParentTypeForRelationTypes(
-          RelationType oldRelationType,
-          RelationType newRelationType,
+  private void replaceParentTypeForRelationTypes(
+          Map<RelationType, RelationType> replacedRelationTypes,
           Collection<RelationType> relationTypes) {
-    return relationTypes.stream().filter(relationType -> (relationType.getParentType() != null &&
-                    relationType.getParentType().equals(oldRelationType)))
-            .peek(relationType -> relationType.setParentType(newRelationType))
-            .collect(Collectors.toList());
+    Map<String, RelationType> replacementsById = replacementsById(replacedRelationTypes);
+    for (RelationType relationType : relationTypes) {
+      if (relationType.getParentType() != null) {
+        RelationType newParentType = replacementsById.get(relationType.getParentType().getId());
+        if (newParentType != null) {
+          relationType.setParentType(newParentType);
+        }
+      }
+    }
+  }
+
+  private static Map<String, RelationType> replacementsById(
+          Map<RelationType, RelationType> replacedRelationTypes) {
+    Map<String, RelationType> replacementsById = new HashMap<>();
+    replacedRelationTypes.forEach((oldRelationType, newRelationType) ->
+            replacementsById.put(oldRelationType.getId(), newRelationType));
+    return replacementsById;
   }
 
   /**
@@ -9,9 +9,12 @@ import java.net.Socket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.FanoutExchange;
-import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.listener.api.ChannelAwareMessageListener;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.listener.AbstractMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.DirectMessageListenerContainer;
 import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -23,6 +26,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
 import ust.tad.dockerplugin.analysistask.AnalysisTaskReceiver;
+import ust.tad.dockerplugin.config.VirtualThreads;
 
 /**
  * Runner that is executed at application startup to register this plugin at the Analysis Manager.
@@ -40,6 +44,8 @@ public class PluginRegistrationRunner implements ApplicationRunner {
 
   @Autowired private AnalysisTaskReceiver analysisTaskReceiver;
 
+  @Autowired private ObjectMapper objectMapper;
+
   @Value("${analysis-manager.plugin-registration.url}")
   private String pluginRegistrationURI;
 
@@ -52,6 +58,30 @@ public class PluginRegistrationRunner implements ApplicationRunner {
   @Value("${messaging.analysistask.response.exchange.name}")
   private String responseExchangeName;
 
+  @Value("${messaging.analysistask.request.listener.type}")
+  private String listenerType;
+
+  @Value("${messaging.analysistask.request.listener.concurrent-consumers}")
+  private int concurrentConsumers;
+
+  @Value("${messaging.analysistask.request.listener.max-concurrent-consumers}")
+  private int maxConcurrentConsumers;
+
+  @Value("${messaging.analysistask.request.listener.prefetch-count}")
+  private int prefetchCount;
+
+  @Value("${messaging.analysistask.request.listener.batch-size}")
+  private int batchSize;
+
+  @Value("${messaging.analysistask.request.listener.stop-consumer-min-interval}")
+  private long stopConsumerMinInterval;
+
+  @Value("${messaging.analysistask.request.listener.consecutive-idle-trigger}")
+  private int consecutiveIdleTrigger;
+
+  @Value("${analysis.virtual-threads}")
+  private boolean virtualThreads;
+
   @Override
   public void run(ApplicationArguments args) throws JsonProcessingException, InterruptedException {
 
@@ -75,7 +105,7 @@ public class PluginRegistrationRunner implements ApplicationRunner {
 
     AbstractMessageListenerContainer requestQueueListener =
         createListenerForRequestQueue(
-            response.getRequestQueueName(), message -> analysisTaskReceiver.receive(message));
+            response.getRequestQueueName(), analysisTaskReceiver::receive);
 
     context.registerBean(
         "requestQueueListener", requestQueueListener.getClass(), requestQueueListener);
@@ -105,21 +135,78 @@ public class PluginRegistrationRunner implements ApplicationRunner {
   }
 
   private String createPluginRegistrationBody() throws JsonProcessingException {
-    ObjectMapper mapper = new ObjectMapper();
-    ObjectNode plugin = mapper.createObjectNode();
+    ObjectNode plugin = objectMapper.createObjectNode();
     plugin.put("technology", pluginTechnology);
     plugin.put("analysisType", pluginAnalysisType);
-    return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(plugin);
+    return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(plugin);
   }
 
+  /**
+   * Create and start the listener container for the request queue. Depending on the configured
+   * listener type either a SimpleMessageListenerContainer, which scales its consumers between the
+   * configured minimum and maximum and stops idle consumers again, or a
+   * DirectMessageListenerContainer with a fixed number of consumers is created.
+   * Messages are acknowledged manually by the listener when their processing has completed, so the
+   * prefetch count limits the number of analysis tasks in progress per consumer.
+   * In the virtual thread mode, the consumers of a SimpleMessageListenerContainer run on virtual
+   * threads, which are cheap to park while the AnalysisTaskScheduler pauses them. A
+   * DirectMessageListenerContainer only uses its task executor to start and stop consumers; its
+   * listener callbacks, including the blocking admission by the AnalysisTaskScheduler, run on the
+   * consumer threads of the RabbitMQ client. The virtual thread mode does not apply to it, which is
+   * logged at startup.
+   *
+   * @param requestQueueName the name of the queue to listen to.
+   * @param messageListener the listener that receives the messages.
+   * @return the started listener container.
+   */
   private AbstractMessageListenerContainer createListenerForRequestQueue(
-      String requestQueueName, MessageListener messageListener) {
-    SimpleMessageListenerContainer listener =
-        new SimpleMessageListenerContainer(rabbitAdmin.getRabbitTemplate().getConnectionFactory());
+      String requestQueueName, ChannelAwareMessageListener messageListener) {
+    ConnectionFactory connectionFactory = rabbitAdmin.getRabbitTemplate().getConnectionFactory();
+    int maxConsumers =
+        maxConcurrentConsumers > 0
+            ? maxConcurrentConsumers
+            : Runtime.getRuntime().availableProcessors();
+
+    AbstractMessageListenerContainer listener;
+    if (listenerType.equalsIgnoreCase("direct")) {
+      DirectMessageListenerContainer directListener =
+          new DirectMessageListenerContainer(connectionFactory);
+      directListener.setConsumersPerQueue(maxConsumers);
+      listener = directListener;
+    } else {
+      SimpleMessageListenerContainer simpleListener =
+          new SimpleMessageListenerContainer(connectionFactory);
+      simpleListener.setConcurrentConsumers(Math.min(concurrentConsumers, maxConsumers));
+      simpleListener.setMaxConcurrentConsumers(maxConsumers);
+      simpleListener.setBatchSize(batchSize);
+      simpleListener.setStopConsumerMinInterval(stopConsumerMinInterval);
+      simpleListener.setConsecutiveIdleTrigger(consecutiveIdleTrigger);
+      listener = simpleListener;
+    }
+    if (virtualThreads && listener instanceof SimpleMessageListenerContainer) {
+      listener.setTaskExecutor(VirtualThreads.taskExecutor("request-listener-"));
+    } else if (virtualThreads) {
+      LOG.warn(
+          "The request queue consumers of a direct listener run on the threads of the RabbitMQ"
+              + " client, not on virtual threads; use the simple listener type for virtual"
+              + " threads");
+    }
+    listener.setPrefetchCount(prefetchCount);
+    listener.setAcknowledgeMode(AcknowledgeMode.MANUAL);
     listener.addQueueNames(requestQueueName);
     listener.setMessageListener(messageListener);
     listener.start();
 
+    LOG.info(
+        "Listening to "
+            + requestQueueName
+            + " with a "
+            + listener.getClass().getSimpleName()
+            + " (up to "
+            + maxConsumers
+            + " consumers, prefetch "
+            + prefetchCount
+            + ")");
     return listener;
   }
 
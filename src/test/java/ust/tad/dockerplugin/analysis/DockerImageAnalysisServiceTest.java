@@ -0,0 +1,136 @@
+package ust.tad.dockerplugin.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ust.tad.dockerplugin.analysis.classification.ImageCategory;
+import ust.tad.dockerplugin.analysis.classification.ImageClassifier;
+import ust.tad.dockerplugin.analysis.image.ImageReference;
+import ust.tad.dockerplugin.analysis.image.ImageReferenceParser;
+import ust.tad.dockerplugin.analysis.inspection.ImageInspector;
+import ust.tad.dockerplugin.analysis.util.ComponentTypeProvider;
+import ust.tad.dockerplugin.metrics.AnalysisMetrics;
+import ust.tad.dockerplugin.models.tadm.Artifact;
+import ust.tad.dockerplugin.models.tadm.Component;
+import ust.tad.dockerplugin.models.tadm.ComponentType;
+import ust.tad.dockerplugin.models.tadm.TechnologyAgnosticDeploymentModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+public class DockerImageAnalysisServiceTest {
+
+    private static final ImageClassifier IMAGE_CLASSIFIER =
+            repositoryPath -> repositoryPath.equals("postgres") || repositoryPath.equals("redis")
+                    ? Optional.of(ImageCategory.DATABASE_SYSTEM)
+                    : Optional.empty();
+
+    @Test
+    public void analyzeAllEqualsAnalysisOfSingleComponents() throws Exception {
+        DockerImageAnalysisService singleService =
+                createService(mock(ImageInspector.class), new SimpleMeterRegistry());
+        TechnologyAgnosticDeploymentModel singleTADM = createModel();
+        for (Component component : new ArrayList<>(singleTADM.getComponents())) {
+            singleTADM = singleService.analyzeDockerImageOfComponent(component, singleTADM);
+        }
+        ImageInspector imageInspector = mock(ImageInspector.class);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DockerImageAnalysisService bulkService = createService(imageInspector, meterRegistry);
+        TechnologyAgnosticDeploymentModel bulkTADM = createModel();
+
+        Map<Component, Exception> failures = bulkService.analyzeAll(bulkTADM,
+                bulkTADM.getComponents().stream().map(Component::getId)
+                        .collect(Collectors.toList()));
+
+        assertTrue(failures.isEmpty());
+        assertEquals(describeTypes(singleTADM), describeTypes(bulkTADM));
+        verify(imageInspector, times(5)).inspect(any());
+        verify(imageInspector, times(1)).inspect(ImageReference.parse("postgres:16"));
+        assertEquals(6, meterRegistry.get("analysis.component.classification")
+                .tag("result", "success").timer().count());
+    }
+
+    /**
+     * A model with an existing 'DatabaseSystem' type shared by the postgres and redis components,
+     * but without a 'SoftwareApplication' type, which is created for the first unclassified image.
+     * Two postgres components also share their component type.
+     */
+    private TechnologyAgnosticDeploymentModel createModel() {
+        TechnologyAgnosticDeploymentModel tadm = new TechnologyAgnosticDeploymentModel();
+        ComponentType baseType = new ComponentType();
+        baseType.setName("BaseType");
+        ComponentType databaseSystemType = new ComponentType();
+        databaseSystemType.setName("DatabaseSystem");
+        databaseSystemType.setParentType(baseType);
+        tadm.setComponentTypes(new ArrayList<>(List.of(baseType, databaseSystemType)));
+        ComponentType sharedPostgresType = createComponentType(tadm, "postgres");
+        addComponent(tadm, "orders-db", "postgres:16", sharedPostgresType);
+        addComponent(tadm, "billing-db", "postgres:16", sharedPostgresType);
+        addComponent(tadm, "app", "mycorp/app:1", createComponentType(tadm, "app"));
+        addComponent(tadm, "legacy-db", "postgres:15", createComponentType(tadm, "legacy"));
+        addComponent(tadm, "cache", "redis", createComponentType(tadm, "redis"));
+        addComponent(tadm, "worker", "mycorp/worker", createComponentType(tadm, "worker"));
+        return tadm;
+    }
+
+    private ComponentType createComponentType(TechnologyAgnosticDeploymentModel tadm,
+                                              String name) {
+        ComponentType componentType = new ComponentType();
+        componentType.setName("ComponentType-" + name);
+        tadm.addComponentTypes(new ArrayList<>(List.of(componentType)));
+        return componentType;
+    }
+
+    private void addComponent(TechnologyAgnosticDeploymentModel tadm, String name,
+                              String imageName, ComponentType componentType) {
+        Artifact artifact = new Artifact();
+        artifact.setType("docker_image");
+        artifact.setName(imageName);
+        Component component = new Component();
+        component.setName(name);
+        component.setType(componentType);
+        component.setArtifacts(new ArrayList<>(List.of(artifact)));
+        tadm.addComponents(new ArrayList<>(List.of(component)));
+    }
+
+    private List<String> describeTypes(TechnologyAgnosticDeploymentModel tadm) {
+        List<String> description = new ArrayList<>();
+        for (ComponentType componentType : tadm.getComponentTypes()) {
+            description.add(componentType.getName() + " < " + (componentType.getParentType() == null
+                    ? null : componentType.getParentType().getName()));
+        }
+        for (Component component : tadm.getComponents()) {
+            description.add(component.getName() + ": " + component.getType().getName() + " "
+                    + component.getArtifacts().get(0).getFileURI());
+        }
+        return description;
+    }
+
+    private DockerImageAnalysisService createService(ImageInspector imageInspector,
+                                                     MeterRegistry meterRegistry) {
+        AnalysisMetrics analysisMetrics = new AnalysisMetrics();
+        ReflectionTestUtils.setField(analysisMetrics, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.invokeMethod(analysisMetrics, "registerMeters");
+        ImageReferenceParser imageReferenceParser = new ImageReferenceParser();
+        ReflectionTestUtils.setField(imageReferenceParser, "cacheSize", 16);
+        ReflectionTestUtils.invokeMethod(imageReferenceParser, "createCache");
+        DockerImageAnalysisService service = new DockerImageAnalysisService();
+        ReflectionTestUtils.setField(service, "imageClassifier", IMAGE_CLASSIFIER);
+        ReflectionTestUtils.setField(service, "imageReferenceParser", imageReferenceParser);
+        ReflectionTestUtils.setField(service, "componentTypeProvider", new ComponentTypeProvider());
+        ReflectionTestUtils.setField(service, "imageInspector", imageInspector);
+        ReflectionTestUtils.setField(service, "analysisMetrics", analysisMetrics);
+        return service;
+    }
+}
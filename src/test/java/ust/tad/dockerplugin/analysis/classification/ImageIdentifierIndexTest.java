@@ -0,0 +1,42 @@
+package ust.tad.dockerplugin.analysis.classification;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+public class ImageIdentifierIndexTest {
+
+  @Test
+  public void lookupMatchesAllPatternKinds() {
+    ImageIdentifierIndex index = new ImageIdentifierIndex();
+    index.addPatterns(ImageCategory.DATABASE_SYSTEM, List.of("postgres", "bitnami/postgresql"));
+    index.addPatterns(ImageCategory.MONITORING, List.of("prom/*", "*-exporter", "grafana-*"));
+    index.addAliases(Map.of("postgis", "postgres"));
+
+    assertEquals(Optional.of(ImageCategory.DATABASE_SYSTEM), index.lookup("postgres"));
+    assertEquals(Optional.of(ImageCategory.DATABASE_SYSTEM), index.lookup("library/postgres"));
+    assertEquals(Optional.of(ImageCategory.DATABASE_SYSTEM), index.lookup("bitnami/postgresql"));
+    assertEquals(Optional.of(ImageCategory.DATABASE_SYSTEM), index.lookup("postgis/postgis"));
+    assertEquals(Optional.of(ImageCategory.MONITORING), index.lookup("prom/statsd"));
+    assertEquals(Optional.of(ImageCategory.MONITORING), index.lookup("example/redis-exporter"));
+    assertEquals(Optional.of(ImageCategory.MONITORING), index.lookup("grafana-agent"));
+    assertEquals(Optional.empty(), index.lookup("postgresql"));
+    assertEquals(Optional.empty(), index.lookup("example/orders-api"));
+  }
+
+  @Test
+  public void exactMatchesAndFirstCategoryWin() {
+    ImageIdentifierIndex index = new ImageIdentifierIndex();
+    index.addPatterns(ImageCategory.DATABASE_SYSTEM, List.of("redis"));
+    index.addPatterns(ImageCategory.CACHE, List.of("redis", "redis*"));
+    index.addPatterns(ImageCategory.MONITORING, List.of("prom/*"));
+    index.addPatterns(ImageCategory.PROXY, List.of("prom/proxy"));
+
+    assertEquals(Optional.of(ImageCategory.DATABASE_SYSTEM), index.lookup("redis"));
+    assertEquals(Optional.of(ImageCategory.CACHE), index.lookup("redis-stack"));
+    assertEquals(Optional.of(ImageCategory.PROXY), index.lookup("prom/proxy"));
+  }
+}
@@ -0,0 +1,63 @@
+package ust.tad.dockerplugin.analysis.image;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class ImageReferenceTest {
+
+  @Test
+  public void parseOfficialImageWithTag() {
+    ImageReference imageReference = ImageReference.parse("postgres:16");
+
+    assertNull(imageReference.getRegistry());
+    assertEquals("", imageReference.getNamespacePath());
+    assertEquals("postgres", imageReference.getRepository());
+    assertEquals("16", imageReference.getTag());
+    assertNull(imageReference.getDigest());
+    assertTrue(imageReference.isDockerHubOfficialImage());
+  }
+
+  @Test
+  public void parseRegistryWithPortAndNestedNamespaces() {
+    ImageReference imageReference =
+        ImageReference.parse("registry.example.com:5000/team/backend/orders:1.4.2");
+
+    assertEquals("registry.example.com:5000", imageReference.getRegistry());
+    assertEquals("team/backend", imageReference.getNamespacePath());
+    assertEquals("orders", imageReference.getRepository());
+    assertEquals("team/backend/orders", imageReference.getRepositoryPath());
+    assertEquals("1.4.2", imageReference.getTag());
+    assertFalse(imageReference.isDockerHubImage());
+  }
+
+  @Test
+  public void parseDigestWithoutTag() {
+    ImageReference imageReference = ImageReference.parse("localhost:5000/app@sha256:4a1c4b21");
+
+    assertEquals("localhost:5000", imageReference.getRegistry());
+    assertEquals("app", imageReference.getRepository());
+    assertNull(imageReference.getTag());
+    assertEquals("sha256:4a1c4b21", imageReference.getDigest());
+  }
+
+  @Test
+  public void parseTagAndDigest() {
+    ImageReference imageReference = ImageReference.parse("docker.io/bitnami/kafka:3.9@sha256:ab");
+
+    assertEquals("docker.io", imageReference.getRegistry());
+    assertEquals("bitnami/kafka", imageReference.getRepositoryPath());
+    assertEquals("3.9", imageReference.getTag());
+    assertEquals("sha256:ab", imageReference.getDigest());
+    assertTrue(imageReference.isDockerHubImage());
+    assertFalse(imageReference.isDockerHubOfficialImage());
+  }
+
+  @Test
+  public void firstPathComponentWithoutDotOrPortIsANamespace() {
+    assertNull(ImageReference.parse("registry/postgres:6.7.8").getRegistry());
+    assertEquals("localhost", ImageReference.parse("localhost/app").getRegistry());
+    assertEquals("mysql", ImageReference.parse("/mysql").getRepositoryPath());
+    assertTrue(ImageReference.parse("docker.io/library/redis").isDockerHubOfficialImage());
+  }
+}
@@ -0,0 +1,67 @@
+package ust.tad.dockerplugin.analysis.inspection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ImageInspectionCacheTest {
+
+  @TempDir Path directory;
+
+  @Test
+  public void resultsSurviveRestarts() {
+    createCache(1024).put("images-v1", "sha256:abc", bytes("result"));
+
+    ImageInspectionCache restartedCache = createCache(1024);
+
+    assertEquals("result", string(restartedCache.get("images-v1", "sha256:abc")));
+    assertTrue(restartedCache.get("layers-v1", "sha256:abc").isEmpty());
+    assertTrue(restartedCache.get("images-v1", "../sha256:abc").isEmpty());
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsedResults() {
+    ImageInspectionCache cache = createCache(10);
+    cache.put("images-v1", "sha256:a", bytes("aaaa"));
+    cache.put("images-v1", "sha256:b", bytes("bbbb"));
+    cache.get("images-v1", "sha256:a");
+
+    cache.put("images-v1", "sha256:c", bytes("cccc"));
+
+    assertEquals("aaaa", string(cache.get("images-v1", "sha256:a")));
+    assertTrue(cache.get("images-v1", "sha256:b").isEmpty());
+    assertFalse(Files.exists(directory.resolve("images-v1/sha256/b")));
+    assertEquals("cccc", string(cache.get("images-v1", "sha256:c")));
+  }
+
+  @Test
+  public void usesResultsStoredByOtherInstances() {
+    ImageInspectionCache cache = createCache(1024);
+
+    createCache(1024).put("images-v1", "sha256:abc", bytes("result"));
+
+    assertEquals("result", string(cache.get("images-v1", "sha256:abc")));
+  }
+
+  private ImageInspectionCache createCache(long maxSize) {
+    ImageInspectionCache cache = new ImageInspectionCache();
+    ReflectionTestUtils.setField(cache, "directory", directory.toString());
+    ReflectionTestUtils.setField(cache, "maxSize", maxSize);
+    ReflectionTestUtils.invokeMethod(cache, "loadFiles");
+    return cache;
+  }
+
+  private static byte[] bytes(String content) {
+    return content.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String string(Optional<byte[]> content) {
+    return new String(content.orElseThrow(), StandardCharsets.UTF_8);
+  }
+}
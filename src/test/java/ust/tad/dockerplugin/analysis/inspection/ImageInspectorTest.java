@@ -0,0 +1,405 @@
+package ust.tad.dockerplugin.analysis.inspection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import ust.tad.dockerplugin.analysis.classification.ImageCategory;
+import ust.tad.dockerplugin.analysis.image.ImageReference;
+
+public class ImageInspectorTest {
+
+  private static final String ORDERS_CONFIG =
+      "{\"architecture\":\"amd64\",\"os\":\"linux\",\"config\":{"
+          + "\"ExposedPorts\":{\"8080/tcp\":{}},"
+          + "\"Env\":[\"PATH=/usr/bin\",\"JAVA_VERSION=21\"],"
+          + "\"Entrypoint\":[\"java\",\"-jar\",\"/app.jar\"],"
+          + "\"Labels\":{\"org.opencontainers.image.base.name\":\"eclipse-temurin:21-jre\"}}}";
+
+  private static final String DB_AMD64_CONFIG =
+      "{\"config\":{\"ExposedPorts\":{\"5432/tcp\":{}},\"Env\":[\"PG_MAJOR=16\"],"
+          + "\"Cmd\":[\"postgres\"]}}";
+
+  private static final String DB_ARM64_CONFIG = "{\"config\":{\"Cmd\":[\"arm64\"]}}";
+
+  @TempDir Path directory;
+
+  @Test
+  public void inspectDockerSaveArchive() throws IOException {
+    writeTar(
+        directory.resolve("orders.tar"),
+        Map.of(
+            "manifest.json",
+            bytes(
+                "[{\"Config\":\"abc.json\",\"RepoTags\":[\"mycorp/orders-api:1.0\"],"
+                    + "\"Layers\":[\"layer/layer.tar\"]}]"),
+            "abc.json",
+            bytes(ORDERS_CONFIG),
+            "layer/layer.tar",
+            gzip(tar(Map.of("opt/java/openjdk/bin/java", new byte[1 << 20])))));
+    ImageInspector imageInspector = createImageInspector(64 * 1024);
+
+    ImageInspection inspection =
+        imageInspector.inspect(ImageReference.parse("docker.io/mycorp/orders-api:1.0")).get();
+    ImageConfiguration configuration = inspection.getConfiguration();
+
+    assertEquals(List.of("8080/tcp"), configuration.getExposedPorts());
+    assertEquals(List.of("java", "-jar", "/app.jar"), configuration.getEntrypoint());
+    assertEquals("21", configuration.getEnvironment().get("JAVA_VERSION"));
+    assertEquals(
+        List.of("eclipse-temurin", "java"), List.copyOf(configuration.getRepositoryPathHints()));
+    assertEquals(Map.of("opt/java/openjdk/bin/java", "java"), inspection.getBinaries());
+    assertTrue(imageInspector.classifyBinaries(inspection).isEmpty());
+    assertSame(
+        inspection, imageInspector.inspect(ImageReference.parse("mycorp/orders-api:1.0")).get());
+    assertTrue(imageInspector.inspect(ImageReference.parse("mycorp/orders-api:2.0")).isEmpty());
+  }
+
+  @Test
+  public void layersSharedByImagesAreScannedOnce() throws IOException {
+    byte[] baseLayer = tar(Map.of("usr/bin/bash", new byte[16]));
+    byte[] dbLayer = gzip(tar(Map.of("usr/lib/postgresql/16/bin/postgres", new byte[16])));
+    writeTar(
+        directory.resolve("images.tar"),
+        Map.of(
+            "manifest.json",
+            bytes(
+                "[{\"Config\":\"base.json\",\"RepoTags\":[\"mycorp/base:1\"],"
+                    + "\"Layers\":[\"base/layer.tar\"]},"
+                    + "{\"Config\":\"db.json\",\"RepoTags\":[\"mycorp/orders-db:1\"],"
+                    + "\"Layers\":[\"base/layer.tar\",\"db/layer.tar\"]}]"),
+            "base.json",
+            bytes("{\"rootfs\":{\"diff_ids\":[\"sha256:base\"]}}"),
+            "db.json",
+            bytes("{\"rootfs\":{\"diff_ids\":[\"sha256:base\",\"sha256:db\"]}}"),
+            "base/layer.tar",
+            baseLayer,
+            "db/layer.tar",
+            dbLayer));
+    ImageInspector imageInspector = createImageInspector(64 * 1024);
+    AtomicInteger scans = new AtomicInteger();
+    LayerScanner layerScanner =
+        (LayerScanner) ReflectionTestUtils.getField(imageInspector, "layerScanner");
+    ReflectionTestUtils.setField(
+        ReflectionTestUtils.getField(imageInspector, "layerIndex"),
+        "layerScanner",
+        new LayerScanner() {
+          @Override
+          public LayerFindings scan(InputStream layer) throws IOException {
+            scans.incrementAndGet();
+            return layerScanner.scan(layer);
+          }
+        });
+
+    ImageInspection base = imageInspector.inspect(ImageReference.parse("mycorp/base:1")).get();
+    ImageInspection db = imageInspector.inspect(ImageReference.parse("mycorp/orders-db:1")).get();
+
+    assertTrue(base.getBinaries().isEmpty());
+    assertEquals(Map.of("usr/lib/postgresql/16/bin/postgres", "postgres"), db.getBinaries());
+    assertEquals(Optional.of(ImageCategory.DATABASE_SYSTEM), imageInspector.classifyBinaries(db));
+    assertEquals(2, scans.get());
+    assertTrue(Files.exists(directory.resolve("cache/layers-v4/sha256/db")));
+  }
+
+  @Test
+  public void incompleteInspectionsAreNotKept() throws IOException {
+    writeTar(
+        directory.resolve("db.tar"),
+        Map.of(
+            "manifest.json",
+            bytes(
+                "[{\"Config\":\"db.json\",\"RepoTags\":[\"mycorp/orders-db:1\"],"
+                    + "\"Layers\":[\"db/layer.tar\"]}]"),
+            "db.json",
+            bytes("{\"rootfs\":{\"diff_ids\":[\"sha256:db\"]}}"),
+            "db/layer.tar",
+            tar(Map.of("usr/lib/postgresql/16/bin/postgres", new byte[16]))));
+    ImageInspector imageInspector = createImageInspector(64 * 1024);
+    AtomicInteger scans = new AtomicInteger();
+    LayerScanner layerScanner =
+        (LayerScanner) ReflectionTestUtils.getField(imageInspector, "layerScanner");
+    ReflectionTestUtils.setField(
+        ReflectionTestUtils.getField(imageInspector, "layerIndex"),
+        "layerScanner",
+        new LayerScanner() {
+          @Override
+          public LayerFindings scan(InputStream layer) throws IOException {
+            if (scans.incrementAndGet() == 1) {
+              throw new IOException("Layer not readable");
+            }
+            return layerScanner.scan(layer);
+          }
+        });
+
+    ImageInspection incomplete =
+        imageInspector.inspect(ImageReference.parse("mycorp/orders-db:1")).get();
+    ImageInspection complete =
+        imageInspector.inspect(ImageReference.parse("mycorp/orders-db:1")).get();
+
+    assertTrue(incomplete.getBinaries().isEmpty());
+    assertEquals(Map.of("usr/lib/postgresql/16/bin/postgres", "postgres"), complete.getBinaries());
+    assertEquals(2, scans.get());
+  }
+
+  @Test
+  public void upperLayersDeleteBinariesOfLowerLayers() throws IOException {
+    writeTar(
+        directory.resolve("slim.tar"),
+        Map.of(
+            "manifest.json",
+            bytes(
+                "[{\"Config\":\"slim.json\",\"RepoTags\":[\"mycorp/slim:1\"],"
+                    + "\"Layers\":[\"1/layer.tar\",\"2/layer.tar\",\"3/layer.tar\"]}]"),
+            "slim.json",
+            bytes("{\"rootfs\":{\"diff_ids\":[\"sha256:1\",\"sha256:2\",\"sha256:3\"]}}"),
+            "1/layer.tar",
+            tar(
+                Map.of(
+                    "usr/lib/postgresql/16/bin/postgres", new byte[16],
+                    "opt/java/openjdk/bin/java", new byte[16])),
+            "2/layer.tar",
+            tar(Map.of("usr/lib/.wh.postgresql", new byte[0])),
+            "3/layer.tar",
+            gzip(
+                tar(
+                    Map.of(
+                        "opt/java/.wh..wh..opq", new byte[0],
+                        "opt/java/jre/bin/java", new byte[16])))));
+    ImageInspector imageInspector = createImageInspector(64 * 1024);
+
+    ImageInspection inspection =
+        imageInspector.inspect(ImageReference.parse("mycorp/slim:1")).get();
+
+    assertEquals(Map.of("opt/java/jre/bin/java", "java"), inspection.getBinaries());
+    assertTrue(imageInspector.classifyBinaries(inspection).isEmpty());
+  }
+
+  @Test
+  public void upperLayersReplacePackageDatabasesOfLowerLayers() throws IOException {
+    String dpkgStatus = "Package: %s\nStatus: install ok installed\nVersion: %s\n\n";
+    writeTar(
+        directory.resolve("db.tar"),
+        Map.of(
+            "manifest.json",
+            bytes(
+                "[{\"Config\":\"db.json\",\"RepoTags\":[\"mycorp/orders-db:1\"],"
+                    + "\"Layers\":[\"1/layer.tar\",\"2/layer.tar\"]}]"),
+            "db.json",
+            bytes("{\"rootfs\":{\"diff_ids\":[\"sha256:1\",\"sha256:2\"]}}"),
+            "1/layer.tar",
+            tar(Map.of("var/lib/dpkg/status", bytes(String.format(dpkgStatus, "bash", "5.2")))),
+            "2/layer.tar",
+            gzip(
+                tar(
+                    Map.of(
+                        "var/lib/dpkg/status",
+                        bytes(
+                            String.format(dpkgStatus, "bash", "5.2")
+                                + String.format(dpkgStatus, "postgresql-16", "16.2-1")))))));
+    ImageInspector imageInspector = createImageInspector(64 * 1024);
+
+    ImageInspection inspection =
+        imageInspector.inspect(ImageReference.parse("mycorp/orders-db:1")).get();
+
+    assertEquals(Map.of("bash", "5.2", "postgresql-16", "16.2-1"), inspection.getPackages());
+    assertEquals(
+        Map.of("postgresql-16", "16.2-1"), imageInspector.getWellKnownPackages(inspection));
+    assertEquals(
+        Optional.of(ImageCategory.DATABASE_SYSTEM), imageInspector.classifyPackages(inspection));
+  }
+
+  @Test
+  public void inspectOciLayoutWithPlatformIndex() throws IOException {
+    Path layout = Files.createDirectory(directory.resolve("db"));
+    writeFile(layout.resolve("oci-layout"), "{\"imageLayoutVersion\":\"1.0.0\"}");
+    writeFile(
+        layout.resolve("index.json"),
+        "{\"manifests\":[{\"digest\":\"sha256:index\",\"annotations\":{"
+            + "\"io.containerd.image.name\":\"registry.example.com/team/db:16\"}}]}");
+    writeFile(
+        layout.resolve("blobs/sha256/index"),
+        "{\"manifests\":["
+            + descriptor("arm64manifest", "linux", "arm64")
+            + ","
+            + descriptor("amd64manifest", "linux", "amd64")
+            + "]}");
+    writeFile(
+        layout.resolve("blobs/sha256/arm64manifest"),
+        "{\"config\":{\"digest\":\"sha256:arm64config\"}}");
+    writeFile(
+        layout.resolve("blobs/sha256/amd64manifest"),
+        "{\"config\":{\"digest\":\"sha256:amd64config\"}}");
+    writeFile(layout.resolve("blobs/sha256/arm64config"), DB_ARM64_CONFIG);
+    writeFile(layout.resolve("blobs/sha256/amd64config"), DB_AMD64_CONFIG);
+    ImageInspector imageInspector = createImageInspector(64 * 1024);
+
+    Optional<ImageInspection> inspection =
+        imageInspector.inspect(ImageReference.parse("registry.example.com/team/db:16"));
+
+    assertEquals(List.of("postgres"), inspection.get().getConfiguration().getCommand());
+    assertEquals(
+        Optional.of(ImageCategory.DATABASE_SYSTEM),
+        imageInspector.classifyExposedPorts(inspection.get().getConfiguration()));
+    assertEquals(
+        inspection, imageInspector.inspect(ImageReference.parse("team/db@sha256:index")));
+  }
+
+  @Test
+  public void cachedInspectionsAreUsedAfterRestart() throws IOException {
+    inspectOciLayoutWithPlatformIndex();
+    Files.walk(directory.resolve("db"))
+        .sorted(Comparator.reverseOrder())
+        .forEach(path -> path.toFile().delete());
+    ImageInspector imageInspector = createImageInspector(64 * 1024);
+
+    Optional<ImageInspection> inspection =
+        imageInspector.inspect(ImageReference.parse("team/db@sha256:index"));
+
+    assertEquals(List.of("postgres"), inspection.get().getConfiguration().getCommand());
+    assertEquals("16", inspection.get().getConfiguration().getEnvironment().get("PG_MAJOR"));
+    assertTrue(Files.exists(directory.resolve("cache/images-v5/sha256/amd64config")));
+  }
+
+  @Test
+  public void archivesAddedLaterAreIndexed() throws IOException {
+    ImageInspector imageInspector = createImageInspector(64 * 1024);
+    assertTrue(imageInspector.inspect(ImageReference.parse("orders:1.0")).isEmpty());
+    writeTar(
+        directory.resolve("orders.tar"),
+        Map.of(
+            "manifest.json",
+            bytes("[{\"Config\":\"abc.json\",\"RepoTags\":[\"orders:1.0\"]}]"),
+            "abc.json",
+            bytes(ORDERS_CONFIG)));
+
+    Optional<ImageInspection> inspection =
+        imageInspector.inspect(ImageReference.parse("orders:1.0"));
+
+    assertEquals(List.of("8080/tcp"), inspection.get().getConfiguration().getExposedPorts());
+  }
+
+  @Test
+  public void missingCachedInspectionsAreLookedUpAgain() throws IOException {
+    ImageInspector imageInspector = createImageInspector(64 * 1024);
+    assertTrue(imageInspector.inspect(ImageReference.parse("team/db@sha256:index")).isEmpty());
+    inspectOciLayoutWithPlatformIndex();
+    Files.walk(directory.resolve("db"))
+        .sorted(Comparator.reverseOrder())
+        .forEach(path -> path.toFile().delete());
+
+    Optional<ImageInspection> inspection =
+        imageInspector.inspect(ImageReference.parse("team/db@sha256:index"));
+
+    assertEquals(List.of("postgres"), inspection.get().getConfiguration().getCommand());
+  }
+
+  @Test
+  public void configurationsLargerThanTheMaximumSizeAreNotRead() throws IOException {
+    writeTar(
+        directory.resolve("orders.tar"),
+        Map.of(
+            "manifest.json",
+            bytes("[{\"Config\":\"abc.json\",\"RepoTags\":[\"orders:1.0\"]}]"),
+            "abc.json",
+            bytes(ORDERS_CONFIG)));
+    ImageInspector imageInspector = createImageInspector(100);
+
+    assertTrue(imageInspector.inspect(ImageReference.parse("orders:1.0")).isEmpty());
+  }
+
+  private ImageInspector createImageInspector(long maxMetadataSize) {
+    ImageInspectionCache imageInspectionCache = new ImageInspectionCache();
+    ReflectionTestUtils.setField(
+        imageInspectionCache, "directory", directory.resolve("cache").toString());
+    ReflectionTestUtils.setField(imageInspectionCache, "maxSize", 1024 * 1024L);
+    ReflectionTestUtils.invokeMethod(imageInspectionCache, "loadFiles");
+    LayerScanner layerScanner = new LayerScanner();
+    ReflectionTestUtils.setField(
+        layerScanner, "binaryCategoryNames", Map.of("postgres", "DATABASE_SYSTEM", "java", ""));
+    ReflectionTestUtils.invokeMethod(layerScanner, "parseBinaryCategories");
+    ReflectionTestUtils.setField(
+        layerScanner, "packageCategoryNames", Map.of("postgresql-?[0-9.]*", "DATABASE_SYSTEM"));
+    ReflectionTestUtils.setField(layerScanner, "maxPackageDatabaseSize", maxMetadataSize);
+    ReflectionTestUtils.invokeMethod(layerScanner, "parsePackageCategories");
+    ObjectMapper objectMapper = new ObjectMapper();
+    LayerIndex layerIndex = new LayerIndex();
+    ReflectionTestUtils.setField(layerIndex, "layerScanner", layerScanner);
+    ReflectionTestUtils.setField(layerIndex, "imageInspectionCache", imageInspectionCache);
+    ReflectionTestUtils.setField(layerIndex, "objectMapper", objectMapper);
+    ReflectionTestUtils.setField(layerIndex, "maxEntries", 16);
+    ImageInspector imageInspector = new ImageInspector();
+    ReflectionTestUtils.setField(imageInspector, "imageInspectionCache", imageInspectionCache);
+    ReflectionTestUtils.setField(imageInspector, "layerIndex", layerIndex);
+    ReflectionTestUtils.setField(imageInspector, "layerScanner", layerScanner);
+    ReflectionTestUtils.setField(imageInspector, "objectMapper", objectMapper);
+    ReflectionTestUtils.setField(imageInspector, "scanLayers", true);
+    ReflectionTestUtils.setField(imageInspector, "refreshInterval", 0L);
+    ReflectionTestUtils.setField(imageInspector, "maxEntries", 16);
+    ReflectionTestUtils.setField(imageInspector, "layerScanPool", ForkJoinPool.commonPool());
+    ReflectionTestUtils.setField(imageInspector, "directory", directory.toString());
+    ReflectionTestUtils.setField(imageInspector, "platform", "linux/amd64");
+    ReflectionTestUtils.setField(imageInspector, "maxMetadataSize", maxMetadataSize);
+    ReflectionTestUtils.setField(
+        imageInspector, "exposedPortCategoryNames", Map.of("5432", "DATABASE_SYSTEM"));
+    ReflectionTestUtils.invokeMethod(imageInspector, "parseExposedPortCategories");
+    return imageInspector;
+  }
+
+  private static String descriptor(String digest, String os, String architecture) {
+    return String.format(
+        "{\"digest\":\"sha256:%s\",\"platform\":{\"os\":\"%s\",\"architecture\":\"%s\"}}",
+        digest, os, architecture);
+  }
+
+  private static void writeFile(Path path, String content) throws IOException {
+    Files.createDirectories(path.getParent());
+    Files.writeString(path, content);
+  }
+
+  private static void writeTar(Path path, Map<String, byte[]> entries) throws IOException {
+    Files.write(path, tar(entries));
+  }
+
+  static byte[] tar(Map<String, byte[]> entries) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (TarArchiveOutputStream tar = new TarArchiveOutputStream(outputStream)) {
+      for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+        TarArchiveEntry tarEntry = new TarArchiveEntry("./" + entry.getKey());
+        tarEntry.setSize(entry.getValue().length);
+        tar.putArchiveEntry(tarEntry);
+        tar.write(entry.getValue());
+        tar.closeArchiveEntry();
+      }
+    }
+    return outputStream.toByteArray();
+  }
+
+  static byte[] gzip(byte[] content) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(outputStream)) {
+      gzip.write(content);
+    }
+    return outputStream.toByteArray();
+  }
+
+  private static byte[] bytes(String content) {
+    return content.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,93 @@
+package ust.tad.dockerplugin.analysis.inspection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class LayerIndexTest {
+
+  @Test
+  public void concurrentRequestsForALayerWaitForItsScan() throws Exception {
+    AtomicInteger scans = new AtomicInteger();
+    CountDownLatch scanStarted = new CountDownLatch(1);
+    CompletableFuture<Void> scanReleased = new CompletableFuture<>();
+    LayerIndex layerIndex =
+        createLayerIndex(
+            new LayerScanner() {
+              @Override
+              public LayerFindings scan(InputStream layer) throws IOException {
+                scans.incrementAndGet();
+                scanStarted.countDown();
+                scanReleased.join();
+                return super.scan(layer);
+              }
+            });
+    byte[] layer = ImageInspectorTest.tar(Map.of("usr/bin/postgres", new byte[16]));
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<LayerFindings> first =
+          executor.submit(
+              () -> layerIndex.getFindings("sha256:db", () -> new ByteArrayInputStream(layer)));
+      assertTrue(scanStarted.await(10, TimeUnit.SECONDS));
+      Future<LayerFindings> second =
+          executor.submit(
+              () -> layerIndex.getFindings("sha256:db", () -> new ByteArrayInputStream(layer)));
+      Thread.sleep(100);
+      scanReleased.complete(null);
+
+      assertSame(first.get(10, TimeUnit.SECONDS), second.get(10, TimeUnit.SECONDS));
+      assertEquals(1, scans.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void failedScansAreReportedAndRetried() throws IOException {
+    LayerIndex layerIndex = createLayerIndex(new LayerScanner());
+
+    assertThrows(
+        IOException.class,
+        () ->
+            layerIndex.getFindings(
+                "sha256:db",
+                () -> {
+                  throw new IOException("unreadable");
+                }));
+    LayerFindings findings =
+        layerIndex.getFindings(
+            "sha256:db",
+            () -> new ByteArrayInputStream(ImageInspectorTest.tar(Map.of("bin/sh", new byte[1]))));
+
+    assertNotNull(findings);
+  }
+
+  private static LayerIndex createLayerIndex(LayerScanner layerScanner) {
+    ReflectionTestUtils.setField(layerScanner, "binaryCategoryNames", Map.of("postgres", ""));
+    ReflectionTestUtils.invokeMethod(layerScanner, "parseBinaryCategories");
+    ReflectionTestUtils.setField(layerScanner, "packageCategoryNames", Map.of());
+    ReflectionTestUtils.setField(layerScanner, "maxPackageDatabaseSize", 64 * 1024L);
+    ReflectionTestUtils.invokeMethod(layerScanner, "parsePackageCategories");
+    ImageInspectionCache imageInspectionCache = new ImageInspectionCache();
+    ReflectionTestUtils.setField(imageInspectionCache, "directory", "");
+    LayerIndex layerIndex = new LayerIndex();
+    ReflectionTestUtils.setField(layerIndex, "layerScanner", layerScanner);
+    ReflectionTestUtils.setField(layerIndex, "imageInspectionCache", imageInspectionCache);
+    ReflectionTestUtils.setField(layerIndex, "objectMapper", new ObjectMapper());
+    ReflectionTestUtils.setField(layerIndex, "maxEntries", 16);
+    return layerIndex;
+  }
+}
@@ -0,0 +1,228 @@
+package ust.tad.dockerplugin.analysis.inspection;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ust.tad.dockerplugin.analysis.inspection.ImageInspectorTest.gzip;
+import static ust.tad.dockerplugin.analysis.inspection.ImageInspectorTest.tar;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ust.tad.dockerplugin.analysis.classification.ImageCategory;
+
+public class LayerScannerTest {
+
+  private final LayerScanner layerScanner = createLayerScanner();
+
+  @Test
+  public void scanFindsWellKnownBinariesInBinDirectories() throws IOException {
+    byte[] layer =
+        tar(
+            Map.of(
+                "usr/lib/postgresql/16/bin/postgres", new byte[16],
+                "usr/local/bin/redis-server", new byte[16],
+                "usr/share/doc/postgres", new byte[16],
+                "usr/bin/bash", new byte[16]));
+
+    LayerFindings plainFindings = layerScanner.scan(new ByteArrayInputStream(layer));
+    LayerFindings gzipFindings = layerScanner.scan(new ByteArrayInputStream(gzip(layer)));
+
+    assertEquals(
+        Map.of(
+            "usr/lib/postgresql/16/bin/postgres", "postgres",
+            "usr/local/bin/redis-server", "redis-server"),
+        plainFindings.getBinaries());
+    assertEquals(plainFindings, gzipFindings);
+  }
+
+  @Test
+  public void scanRecordsWhiteouts() throws IOException {
+    byte[] layer =
+        tar(
+            Map.of(
+                "usr/lib/.wh.postgresql", new byte[0],
+                ".wh.opt", new byte[0],
+                "var/lib/.wh..wh..opq", new byte[0]));
+
+    LayerFindings findings = layerScanner.scan(new ByteArrayInputStream(layer));
+
+    assertTrue(findings.getBinaries().isEmpty());
+    assertEquals(Set.of("opt", "usr/lib/postgresql"), findings.getWhiteouts());
+    assertEquals(Set.of("var/lib"), findings.getOpaqueDirectories());
+  }
+
+  @Test
+  public void scanReadsPackageDatabases() throws IOException {
+    byte[] layer =
+        tar(
+            Map.of(
+                "var/lib/dpkg/status",
+                bytes(
+                    "Package: postgresql-16\nStatus: install ok installed\n"
+                        + "Version: 16.2-1.pgdg120+2\nDescription: object-relational SQL database\n"
+                        + " continued description\n\n"
+                        + "Package: nginx\nStatus: deinstall ok config-files\nVersion: 1.22.1-9\n"),
+                "lib/apk/db/installed",
+                bytes("C:Q1abc=\nP:redis\nV:7.2.4-r0\nA:x86_64\n\nP:musl\nV:1.2.4-r2\n"),
+                "var/lib/dpkg/status.d/openjdk",
+                bytes("Package: openjdk-17-jre-headless\nVersion: 17.0.10+7-1\n")));
+
+    LayerFindings findings = layerScanner.scan(new ByteArrayInputStream(gzip(layer)));
+
+    assertEquals(
+        Map.of(
+            "var/lib/dpkg/status",
+            Map.of("postgresql-16", "16.2-1.pgdg120+2"),
+            "lib/apk/db/installed",
+            Map.of("redis", "7.2.4-r0", "musl", "1.2.4-r2"),
+            "var/lib/dpkg/status.d/openjdk",
+            Map.of("openjdk-17-jre-headless", "17.0.10+7-1")),
+        findings.getPackageDatabases());
+  }
+
+  @Test
+  public void scanReadsRpmDatabases() throws IOException {
+    byte[] rpmDatabase;
+    try (InputStream resource = getClass().getResourceAsStream("/rpmdb.sqlite")) {
+      rpmDatabase = resource.readAllBytes();
+    }
+    byte[] layer =
+        tar(
+            Map.of(
+                "var/lib/rpm/rpmdb.sqlite",
+                rpmDatabase,
+                "var/lib/rpmmanifest/container-manifest-2",
+                bytes("bash\t5.1.8-4.cm2\t1674183423\t(none)\tx86_64\nbroken line\n")));
+
+    LayerFindings findings = layerScanner.scan(new ByteArrayInputStream(layer));
+
+    Map<String, String> rpmPackages =
+        findings.getPackageDatabases().get("var/lib/rpm/rpmdb.sqlite");
+    assertEquals(42, rpmPackages.size());
+    assertEquals("15.6-1.el9", rpmPackages.get("postgresql-server"));
+    assertEquals("1:3.0.7-27.el9", rpmPackages.get("openssl-libs"));
+    assertEquals(
+        Map.of("bash", "5.1.8-4.cm2"),
+        findings.getPackageDatabases().get("var/lib/rpmmanifest/container-manifest-2"));
+    assertEquals(
+        Optional.of(ImageCategory.DATABASE_SYSTEM),
+        layerScanner.classifyPackages(rpmPackages.keySet()));
+  }
+
+  @Test
+  public void malformedRpmDatabasesAreSkipped() throws IOException {
+    byte[] layer =
+        tar(
+            Map.of(
+                "var/lib/rpm/rpmdb.sqlite", bytes("not a database"),
+                "usr/bin/redis-server", new byte[16]));
+
+    LayerFindings findings = layerScanner.scan(new ByteArrayInputStream(layer));
+
+    assertEquals(
+        Map.of("var/lib/rpm/rpmdb.sqlite", Map.of()), findings.getPackageDatabases());
+    assertEquals(Map.of("usr/bin/redis-server", "redis-server"), findings.getBinaries());
+  }
+
+  @Test
+  public void packageDatabasesAboveTheSizeLimitAreSkipped() throws IOException {
+    byte[] layer =
+        tar(
+            Map.of(
+                "lib/apk/db/installed", bytes("P:redis\nV:7.2.4-r0\n"),
+                "usr/bin/redis-server", new byte[16]));
+    ReflectionTestUtils.setField(layerScanner, "maxPackageDatabaseSize", 8L);
+
+    LayerFindings findings = layerScanner.scan(new ByteArrayInputStream(layer));
+
+    assertTrue(findings.getPackageDatabases().isEmpty());
+    assertEquals(Map.of("usr/bin/redis-server", "redis-server"), findings.getBinaries());
+  }
+
+  @Test
+  public void scanStopsAtThePackageDatabaseIfConfigured() throws IOException {
+    Map<String, byte[]> entries = new LinkedHashMap<>();
+    entries.put("lib/apk/db/installed", bytes("P:redis\nV:7.2.4-r0\n"));
+    entries.put("usr/bin/redis-server", new byte[16]);
+    byte[] layer = gzip(tar(entries));
+
+    LayerFindings completeFindings = layerScanner.scan(new ByteArrayInputStream(layer));
+    ReflectionTestUtils.setField(layerScanner, "stopAtPackageDatabase", true);
+    LayerFindings partialFindings = layerScanner.scan(new ByteArrayInputStream(layer));
+
+    assertEquals(Map.of("usr/bin/redis-server", "redis-server"), completeFindings.getBinaries());
+    assertTrue(partialFindings.getBinaries().isEmpty());
+    assertEquals(completeFindings.getPackageDatabases(), partialFindings.getPackageDatabases());
+  }
+
+  @Test
+  public void wellKnownPackagesAreSelectedAndClassified() {
+    Map<String, String> packages =
+        Map.of(
+            "postgresql-client-16", "16.2-1",
+            "openjdk-17-jre-headless", "17.0.10+7-1",
+            "nginx-core", "1.22.1-9",
+            "bash", "5.2.15-2");
+
+    assertEquals(
+        Map.of("openjdk-17-jre-headless", "17.0.10+7-1", "nginx-core", "1.22.1-9"),
+        layerScanner.selectWellKnownPackages(packages));
+    assertEquals(
+        Optional.of(ImageCategory.WEB_SERVER), layerScanner.classifyPackages(packages.keySet()));
+    assertEquals(
+        Optional.of(ImageCategory.DATABASE_SYSTEM),
+        layerScanner.classifyPackages(List.of("nginx", "postgresql16")));
+  }
+
+  @Test
+  public void scanRejectsZstdCompressedLayers() {
+    byte[] layer = {0x28, (byte) 0xb5, 0x2f, (byte) 0xfd, 0, 0, 0, 0};
+
+    assertThrows(IOException.class, () -> layerScanner.scan(new ByteArrayInputStream(layer)));
+  }
+
+  @Test
+  public void classifyBinariesUsesTheFirstCategory() {
+    assertEquals(
+        Optional.of(ImageCategory.DATABASE_SYSTEM),
+        layerScanner.classifyBinaries(List.of("java", "nginx", "redis-server")));
+    assertEquals(
+        Optional.of(ImageCategory.WEB_SERVER),
+        layerScanner.classifyBinaries(List.of("java", "nginx")));
+    assertTrue(layerScanner.classifyBinaries(List.of("java", "bash")).isEmpty());
+  }
+
+  private static LayerScanner createLayerScanner() {
+    LayerScanner layerScanner = new LayerScanner();
+    ReflectionTestUtils.setField(
+        layerScanner,
+        "binaryCategoryNames",
+        Map.of(
+            "postgres", "DATABASE_SYSTEM",
+            "redis-server", "DATABASE_SYSTEM",
+            "nginx", "WEB_SERVER",
+            "java", ""));
+    ReflectionTestUtils.invokeMethod(layerScanner, "parseBinaryCategories");
+    ReflectionTestUtils.setField(
+        layerScanner,
+        "packageCategoryNames",
+        Map.of(
+            "postgresql-?[0-9.]*(-server)?", "DATABASE_SYSTEM",
+            "nginx(-core)?", "WEB_SERVER",
+            "openjdk-?[0-9]+-jre(-headless)?", ""));
+    ReflectionTestUtils.setField(layerScanner, "maxPackageDatabaseSize", 1024 * 1024L);
+    ReflectionTestUtils.invokeMethod(layerScanner, "parsePackageCategories");
+    return layerScanner;
+  }
+
+  private static byte[] bytes(String content) {
+    return content.getBytes(StandardCharsets.UTF_8);
+  }
+}
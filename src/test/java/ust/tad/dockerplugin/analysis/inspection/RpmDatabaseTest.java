@@ -0,0 +1,48 @@
+package ust.tad.dockerplugin.analysis.inspection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+public class RpmDatabaseTest {
+
+  private static final int PAGE_SIZE = 512;
+
+  @Test
+  public void pagesReferringToThemselvesAreRejected() {
+    ByteBuffer database = createDatabase();
+    database.put(100, (byte) 0x05);
+    database.putInt(108, 1);
+
+    assertThrows(IOException.class, () -> RpmDatabase.read(database.array()));
+  }
+
+  @Test
+  public void rootPagesOutOfRangeAreRejected() {
+    ByteArrayOutputStream record = new ByteArrayOutputStream();
+    record.writeBytes(new byte[] {6, 13 + 2 * 5, 13 + 2 * 8, 13 + 2 * 8, 6, 0});
+    record.writeBytes("tablePackagesPackages".getBytes(StandardCharsets.US_ASCII));
+    record.writeBytes(ByteBuffer.allocate(8).putLong(Long.MAX_VALUE).array());
+    ByteBuffer database = createDatabase();
+    database.put(100, (byte) 0x0d);
+    database.putShort(103, (short) 1);
+    database.putShort(108, (short) 300);
+    database.put(300, (byte) record.size());
+    database.put(301, (byte) 1);
+    database.put(302, record.toByteArray());
+
+    assertThrows(IOException.class, () -> RpmDatabase.read(database.array()));
+  }
+
+  /** An SQLite database of one page without content. */
+  private static ByteBuffer createDatabase() {
+    ByteBuffer database = ByteBuffer.allocate(PAGE_SIZE);
+    database.put("SQLite format 3\0".getBytes(StandardCharsets.US_ASCII));
+    database.putShort(16, (short) PAGE_SIZE);
+    return database;
+  }
+}
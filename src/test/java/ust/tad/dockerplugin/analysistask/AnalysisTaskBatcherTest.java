@@ -0,0 +1,85 @@
+package ust.tad.dockerplugin.analysistask;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import ust.tad.dockerplugin.analysis.AnalysisService;
+import ust.tad.dockerplugin.metrics.AnalysisMetrics;
+
+@ExtendWith(MockitoExtension.class)
+public class AnalysisTaskBatcherTest {
+
+  @Mock private AnalysisService analysisService;
+
+  @Mock private AnalysisMetrics analysisMetrics;
+
+  @InjectMocks private AnalysisTaskBatcher analysisTaskBatcher;
+
+  @BeforeEach
+  public void setUp() {
+    ReflectionTestUtils.setField(analysisTaskBatcher, "batchWindow", 100L);
+    ReflectionTestUtils.setField(analysisTaskBatcher, "batchMaxSize", 3);
+    ReflectionTestUtils.setField(
+        analysisTaskBatcher,
+        "analysisTaskScheduler",
+        AnalysisTaskSchedulerTest.createScheduler(4, 0, 100, 50));
+    when(analysisMetrics.trackTask(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    when(analysisService.startAnalysis(any(), any())).thenReturn(Mono.empty());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void tasksOfTheSameTransformationProcessAreAnalyzedAsOneBatch() {
+    UUID transformationProcessId = UUID.randomUUID();
+    UUID otherTransformationProcessId = UUID.randomUUID();
+    AnalysisTaskStartRequest first = createTask(transformationProcessId);
+    AnalysisTaskStartRequest second = createTask(transformationProcessId);
+    AnalysisTaskStartRequest other = createTask(otherTransformationProcessId);
+
+    Mono.when(
+            analysisTaskBatcher.submit(first, System.nanoTime()),
+            analysisTaskBatcher.submit(second, System.nanoTime()),
+            analysisTaskBatcher.submit(other, System.nanoTime()))
+        .block(Duration.ofSeconds(5));
+
+    ArgumentCaptor<List<AnalysisTaskStartRequest>> tasks = ArgumentCaptor.forClass(List.class);
+    verify(analysisService).startAnalysis(eq(transformationProcessId), tasks.capture());
+    assertEquals(List.of(first, second), tasks.getValue());
+    verify(analysisService).startAnalysis(eq(otherTransformationProcessId), eq(List.of(other)));
+    verify(analysisMetrics, times(3)).recordQueueLatency(anyLong());
+  }
+
+  @Test
+  public void fullBatchIsStartedBeforeTheWindowPassed() {
+    ReflectionTestUtils.setField(analysisTaskBatcher, "batchWindow", 60000L);
+    UUID transformationProcessId = UUID.randomUUID();
+
+    Mono.when(
+            analysisTaskBatcher.submit(createTask(transformationProcessId), System.nanoTime()),
+            analysisTaskBatcher.submit(createTask(transformationProcessId), System.nanoTime()),
+            analysisTaskBatcher.submit(createTask(transformationProcessId), System.nanoTime()))
+        .block(Duration.ofSeconds(5));
+
+    verify(analysisService, times(1)).startAnalysis(eq(transformationProcessId), anyList());
+  }
+
+  private AnalysisTaskStartRequest createTask(UUID transformationProcessId) {
+    AnalysisTaskStartRequest task = new AnalysisTaskStartRequest();
+    task.setTaskId(UUID.randomUUID());
+    task.setTransformationProcessId(transformationProcessId);
+    return task;
+  }
+}
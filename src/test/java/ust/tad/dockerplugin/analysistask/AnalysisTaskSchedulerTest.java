@@ -0,0 +1,77 @@
+package ust.tad.dockerplugin.analysistask;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+public class AnalysisTaskSchedulerTest {
+
+  @Test
+  public void smallAnalysesOvertakeLargeOnesAndProcessesRunOneAtATime() throws Exception {
+    AnalysisTaskScheduler scheduler = createScheduler(1, 1000, 10, 5);
+    UUID large = UUID.randomUUID();
+    UUID small = UUID.randomUUID();
+    List<String> started = new CopyOnWriteArrayList<>();
+    Sinks.Empty<Void> blocker = Sinks.empty();
+
+    scheduler.schedule(UUID.randomUUID(), 0, blocker::asMono).subscribe();
+    CompletableFuture<Void> all =
+        Mono.when(
+            scheduler.schedule(large, 100, () -> record(started, "large-1")),
+            scheduler.schedule(large, 1, () -> record(started, "large-2")),
+            scheduler.schedule(small, 1, () -> record(started, "small-1")),
+            scheduler.schedule(small, 1, () -> record(started, "small-2")))
+            .toFuture();
+    assertTrue(started.isEmpty());
+
+    blocker.tryEmitEmpty();
+    all.get(5, TimeUnit.SECONDS);
+
+    assertEquals(List.of("small-1", "small-2", "large-1", "large-2"), started);
+  }
+
+  @Test
+  public void admitBlocksFromHighUntilLowWatermark() throws InterruptedException {
+    AnalysisTaskScheduler scheduler = createScheduler(1, 0, 2, 0);
+    scheduler.admit();
+    scheduler.admit();
+    CountDownLatch admitted = new CountDownLatch(1);
+    Thread listener =
+        new Thread(
+            () -> {
+              scheduler.admit();
+              admitted.countDown();
+            });
+    listener.start();
+
+    assertFalse(admitted.await(100, TimeUnit.MILLISECONDS));
+    scheduler.release();
+    assertFalse(admitted.await(100, TimeUnit.MILLISECONDS));
+    scheduler.release();
+    assertTrue(admitted.await(5, TimeUnit.SECONDS));
+    listener.join();
+  }
+
+  static AnalysisTaskScheduler createScheduler(
+      int maxConcurrent, long delayPerComponent, int highWatermark, int lowWatermark) {
+    AnalysisTaskScheduler scheduler = new AnalysisTaskScheduler();
+    ReflectionTestUtils.setField(scheduler, "maxConcurrent", maxConcurrent);
+    ReflectionTestUtils.setField(scheduler, "delayPerComponent", delayPerComponent);
+    ReflectionTestUtils.setField(scheduler, "highWatermark", highWatermark);
+    ReflectionTestUtils.setField(scheduler, "lowWatermark", lowWatermark);
+    return scheduler;
+  }
+
+  private static Mono<Void> record(List<String> started, String name) {
+    return Mono.fromRunnable(() -> started.add(name));
+  }
+}
@@ -0,0 +1,80 @@
+package ust.tad.dockerplugin.analysistaskresponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import ust.tad.dockerplugin.analysistask.AnalysisTaskResponse;
+import ust.tad.dockerplugin.analysistask.AnalysisTaskResponseSender;
+
+public class AnalysisTaskResponseSenderConfirmTest {
+
+  private final RabbitTemplate template = mock(RabbitTemplate.class);
+
+  private final AnalysisTaskResponseSender analysisTaskResponseSender =
+      new AnalysisTaskResponseSender();
+
+  @BeforeEach
+  public void setUp() {
+    ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+    when(connectionFactory.isPublisherConfirms()).thenReturn(true);
+    when(template.getConnectionFactory()).thenReturn(connectionFactory);
+    ReflectionTestUtils.setField(analysisTaskResponseSender, "template", template);
+    ReflectionTestUtils.setField(
+        analysisTaskResponseSender,
+        "analysisTaskResponseWriter",
+        new ObjectMapper().writerFor(AnalysisTaskResponse.class));
+    ReflectionTestUtils.setField(analysisTaskResponseSender, "responseExchangeName", "exchange");
+    ReflectionTestUtils.setField(analysisTaskResponseSender, "confirmTimeout", 1000L);
+    ReflectionTestUtils.setField(analysisTaskResponseSender, "maxRetries", 2);
+    ReflectionTestUtils.setField(analysisTaskResponseSender, "retryBackoff", 1L);
+    ReflectionTestUtils.invokeMethod(analysisTaskResponseSender, "checkPublisherConfirms");
+  }
+
+  @Test
+  public void resendsResponseRejectedByBroker() {
+    AtomicInteger attempts = new AtomicInteger();
+    doAnswer(
+            invocation -> {
+              CorrelationData correlationData = invocation.getArgument(3);
+              correlationData
+                  .getFuture()
+                  .set(new CorrelationData.Confirm(attempts.incrementAndGet() > 1, "nack"));
+              return null;
+            })
+        .when(template)
+        .send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+
+    analysisTaskResponseSender
+        .sendSuccessResponse(UUID.randomUUID())
+        .block(Duration.ofSeconds(5));
+
+    assertEquals(2, attempts.get());
+  }
+
+  @Test
+  public void failsAfterRetriesWithoutConfirm() {
+    ReflectionTestUtils.setField(analysisTaskResponseSender, "confirmTimeout", 10L);
+
+    assertThrows(
+        RuntimeException.class,
+        () ->
+            analysisTaskResponseSender
+                .sendFailureResponse(UUID.randomUUID(), "error")
+                .block(Duration.ofSeconds(5)));
+    verify(template, times(3))
+        .send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+  }
+}
@@ -14,6 +14,6 @@ public class AnalysisTaskResponseSenderTest {
 
   @Test
   public void sendAnalysisTaskResponse() throws JsonProcessingException {
-    analysisTaskResponseSender.sendSuccessResponse(UUID.randomUUID());
+    analysisTaskResponseSender.sendSuccessResponse(UUID.randomUUID()).block();
   }
 }
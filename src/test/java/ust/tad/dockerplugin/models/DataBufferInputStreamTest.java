@@ -0,0 +1,64 @@
+package ust.tad.dockerplugin.models;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.netty.buffer.PooledByteBufAllocator;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+public class DataBufferInputStreamTest {
+
+  private final NettyDataBufferFactory bufferFactory =
+      new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+  @Test
+  public void readsAllBuffersAndReleasesThem() throws IOException {
+    List<DataBuffer> buffers = List.of(buffer("{\"a\":"), buffer(""), buffer("1}"));
+    AtomicInteger requested = new AtomicInteger();
+    Flux<DataBuffer> body =
+        Flux.fromIterable(buffers).doOnRequest(n -> requested.addAndGet((int) n));
+
+    try (DataBufferInputStream inputStream = new DataBufferInputStream(body, 1)) {
+      assertEquals(1, requested.get());
+      assertEquals("{\"a\":1}", new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+      assertEquals(-1, inputStream.read());
+    }
+    for (DataBuffer buffer : buffers) {
+      assertTrue(isReleased(buffer));
+    }
+  }
+
+  @Test
+  public void propagatesErrorsAndReleasesUnreadBuffersOnClose() throws IOException {
+    DataBuffer unread = buffer("unread");
+    IllegalStateException failure = new IllegalStateException("failed");
+    Flux<DataBuffer> body = Flux.concat(Flux.just(buffer("x"), unread), Flux.error(failure));
+
+    DataBufferInputStream inputStream = new DataBufferInputStream(body, 4);
+    assertEquals('x', inputStream.read());
+    inputStream.close();
+    assertTrue(isReleased(unread));
+
+    DataBufferInputStream failingStream = new DataBufferInputStream(Flux.error(failure), 4);
+    IOException exception = assertThrows(IOException.class, failingStream::read);
+    assertSame(failure, exception.getCause());
+    assertSame(failure, failingStream.getFailure());
+  }
+
+  private DataBuffer buffer(String content) {
+    DataBuffer buffer = bufferFactory.allocateBuffer(16);
+    buffer.write(content, StandardCharsets.UTF_8);
+    return buffer;
+  }
+
+  private static boolean isReleased(DataBuffer buffer) {
+    return ((NettyDataBuffer) buffer).getNativeBuffer().refCnt() == 0;
+  }
+}
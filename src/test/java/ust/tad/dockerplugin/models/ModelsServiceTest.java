@@ -0,0 +1,231 @@
+package ust.tad.dockerplugin.models;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPInputStream;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import ust.tad.dockerplugin.config.WebClientConfig;
+import ust.tad.dockerplugin.metrics.AnalysisMetrics;
+import ust.tad.dockerplugin.models.tadm.ComponentType;
+import ust.tad.dockerplugin.models.tadm.TechnologyAgnosticDeploymentModel;
+
+public class ModelsServiceTest {
+
+  private static final String MODEL_ETAG = "\"v1\"";
+
+  private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+  private final List<String> receivedContentTypes = new CopyOnWriteArrayList<>();
+
+  private final List<String> receivedContentEncodings = new CopyOnWriteArrayList<>();
+
+  private final List<byte[]> receivedBodies = new CopyOnWriteArrayList<>();
+
+  private final List<String> receivedIfNoneMatch = new CopyOnWriteArrayList<>();
+
+  private DisposableServer server;
+
+  private byte[] modelJson;
+
+  @BeforeEach
+  public void startServer() throws IOException {
+    TechnologyAgnosticDeploymentModel tadm = new TechnologyAgnosticDeploymentModel();
+    ComponentType componentType = new ComponentType();
+    componentType.setName("BaseType");
+    tadm.setComponentTypes(List.of(componentType));
+    modelJson = objectMapper.writeValueAsBytes(tadm);
+    server =
+        HttpServer.create()
+            .port(0)
+            .compress(true)
+            .route(
+                routes ->
+                    routes
+                        .get(
+                            "/technology-agnostic/{id}",
+                            (request, response) -> {
+                              String ifNoneMatch = request.requestHeaders().get("If-None-Match");
+                              receivedIfNoneMatch.add(String.valueOf(ifNoneMatch));
+                              if (MODEL_ETAG.equals(ifNoneMatch)) {
+                                return response.status(304).send();
+                              }
+                              return response
+                                  .header("Content-Type", "application/json")
+                                  .sendByteArray(Mono.just(modelJson));
+                            })
+                        .post(
+                            "/technology-agnostic",
+                            (request, response) -> {
+                              String contentType = request.requestHeaders().get("Content-Type");
+                              receivedContentTypes.add(contentType);
+                              if (!contentType.startsWith("application/json")) {
+                                return response.status(415).send();
+                              }
+                              return request
+                                  .receive()
+                                  .aggregate()
+                                  .asByteArray()
+                                  .flatMap(
+                                      body -> {
+                                        String contentEncoding =
+                                            request.requestHeaders().get("Content-Encoding");
+                                        receivedContentEncodings.add(contentEncoding);
+                                        receivedBodies.add(
+                                            "gzip".equals(contentEncoding) ? gunzip(body) : body);
+                                        return response
+                                            .header("Content-Type", "application/json")
+                                            .header("ETag", MODEL_ETAG)
+                                            .sendByteArray(Mono.just(body))
+                                            .then();
+                                      });
+                            }))
+            .bindNow();
+  }
+
+  @AfterEach
+  public void stopServer() {
+    server.disposeNow();
+  }
+
+  @Test
+  public void readsCompressedModelAndFallsBackToJsonAfterUnsupportedMediaType()
+      throws IOException {
+    ModelsService modelsService = createModelsService("smile", true);
+
+    TechnologyAgnosticDeploymentModel tadm =
+        modelsService.getTechnologyAgnosticDeploymentModel(UUID.randomUUID()).block();
+    assertEquals("BaseType", tadm.getComponentTypes().get(0).getName());
+
+    modelsService.updateTechnologyAgnosticDeploymentModel(tadm).block(Duration.ofSeconds(10));
+    modelsService.updateTechnologyAgnosticDeploymentModel(tadm).block(Duration.ofSeconds(10));
+
+    assertEquals(3, receivedContentTypes.size());
+    assertTrue(receivedContentTypes.get(0).startsWith("application/x-jackson-smile"));
+    assertTrue(receivedContentTypes.get(1).startsWith("application/json"));
+    assertTrue(receivedContentTypes.get(2).startsWith("application/json"));
+    assertEquals(List.of("gzip", "gzip"), receivedContentEncodings);
+    assertEquals(
+        objectMapper.readTree(objectMapper.writeValueAsBytes(tadm)),
+        objectMapper.readTree(receivedBodies.get(0)));
+  }
+
+  @Test
+  public void usesModelSentBeforeIfNotModified() {
+    ModelsService modelsService = createModelsService("none", false);
+    UUID transformationProcessId = UUID.randomUUID();
+
+    TechnologyAgnosticDeploymentModel tadm =
+        modelsService.getTechnologyAgnosticDeploymentModel(transformationProcessId).block();
+    tadm.setTransformationProcessId(transformationProcessId);
+    tadm.setNameOfComponentType(tadm.getComponentTypes().get(0), "RenamedType");
+    modelsService.updateTechnologyAgnosticDeploymentModel(tadm).block(Duration.ofSeconds(10));
+    TechnologyAgnosticDeploymentModel cachedTADM =
+        modelsService.getTechnologyAgnosticDeploymentModel(transformationProcessId).block();
+
+    assertEquals(List.of("null", MODEL_ETAG), receivedIfNoneMatch);
+    assertNotSame(tadm, cachedTADM);
+    assertEquals(transformationProcessId, cachedTADM.getTransformationProcessId());
+    assertEquals("RenamedType", cachedTADM.getComponentTypes().get(0).getName());
+  }
+
+  @Test
+  public void decodesLargeUpdateResponsesWhileTheyArrive() {
+    ModelsService modelsService = createModelsService("none", false);
+    ReflectionTestUtils.setField(modelsService, "discardUpdateResponse", false);
+    List<ComponentType> componentTypes = new ArrayList<>();
+    for (int i = 0; i < 20000; i++) {
+      ComponentType componentType = new ComponentType();
+      componentType.setName("ComponentType" + i);
+      componentTypes.add(componentType);
+    }
+    TechnologyAgnosticDeploymentModel tadm = new TechnologyAgnosticDeploymentModel();
+    tadm.setComponentTypes(componentTypes);
+
+    modelsService.updateTechnologyAgnosticDeploymentModel(tadm).block(Duration.ofSeconds(10));
+
+    assertEquals(1, receivedBodies.size());
+    assertTrue(receivedBodies.get(0).length > 256 * 1024);
+  }
+
+  private ModelsService createModelsService(String binaryFormat, boolean compressRequests) {
+    BinaryModelFormat binaryModelFormat = new BinaryModelFormat();
+    @SuppressWarnings("unchecked")
+    ObjectProvider<Jackson2ObjectMapperBuilder> builderProvider = mock(ObjectProvider.class);
+    when(builderProvider.getObject()).thenAnswer(invocation -> Jackson2ObjectMapperBuilder.json());
+    ReflectionTestUtils.setField(binaryModelFormat, "format", binaryFormat);
+    ReflectionTestUtils.setField(binaryModelFormat, "objectMapperBuilder", builderProvider);
+    ReflectionTestUtils.invokeMethod(binaryModelFormat, "createObjectMapper");
+
+    AnalysisMetrics analysisMetrics = new AnalysisMetrics();
+    ReflectionTestUtils.setField(analysisMetrics, "meterRegistry", new SimpleMeterRegistry());
+    ReflectionTestUtils.invokeMethod(analysisMetrics, "registerMeters");
+
+    WebClientConfig webClientConfig = new WebClientConfig();
+    ReflectionTestUtils.setField(webClientConfig, "analysisMetrics", analysisMetrics);
+    ReflectionTestUtils.setField(webClientConfig, "objectMapper", objectMapper);
+    ReflectionTestUtils.setField(webClientConfig, "binaryModelFormat", binaryModelFormat);
+    ReflectionTestUtils.setField(
+        webClientConfig, "modelsServiceURL", "http://localhost:" + server.port());
+    ReflectionTestUtils.setField(webClientConfig, "compressResponses", true);
+    ReflectionTestUtils.setField(webClientConfig, "compressRequests", compressRequests);
+    ReflectionTestUtils.setField(webClientConfig, "compressRequestsMinSize", 0);
+    ReflectionTestUtils.setField(webClientConfig, "maxConnections", 1);
+    ReflectionTestUtils.setField(webClientConfig, "pendingAcquireMaxCount", -1);
+    ReflectionTestUtils.setField(webClientConfig, "pendingAcquireTimeout", 10000L);
+    ReflectionTestUtils.setField(webClientConfig, "maxIdleTime", 10000L);
+    ReflectionTestUtils.setField(webClientConfig, "maxLifeTime", 60000L);
+    ReflectionTestUtils.setField(webClientConfig, "connectTimeout", 5000);
+    ReflectionTestUtils.setField(webClientConfig, "responseTimeout", 10000L);
+    ReflectionTestUtils.setField(webClientConfig, "readTimeout", 10000L);
+    WebClient webClient = webClientConfig.modelsServiceApiClient();
+
+    ModelsService modelsService = new ModelsService();
+    ReflectionTestUtils.setField(modelsService, "modelsServiceApiClient", webClient);
+    ReflectionTestUtils.setField(
+        modelsService,
+        "technologyAgnosticDeploymentModelReader",
+        webClientConfig.technologyAgnosticDeploymentModelReader());
+    ReflectionTestUtils.setField(
+        modelsService,
+        "technologySpecificDeploymentModelReader",
+        webClientConfig.technologySpecificDeploymentModelReader());
+    ReflectionTestUtils.setField(modelsService, "binaryModelFormat", binaryModelFormat);
+    ModelSnapshotCache modelSnapshotCache = new ModelSnapshotCache();
+    ReflectionTestUtils.setField(modelSnapshotCache, "maxEntries", 10);
+    ReflectionTestUtils.setField(modelSnapshotCache, "maxSize", 1024 * 1024L);
+    ReflectionTestUtils.setField(modelsService, "modelSnapshotCache", modelSnapshotCache);
+    ReflectionTestUtils.setField(modelsService, "objectMapper", objectMapper);
+    ReflectionTestUtils.setField(modelsService, "updateMode", ModelsService.UpdateMode.FULL);
+    ReflectionTestUtils.setField(modelsService, "discardUpdateResponse", true);
+    ReflectionTestUtils.invokeMethod(modelsService, "createReadersAndWriters");
+    return modelsService;
+  }
+
+  private static byte[] gunzip(byte[] body) {
+    try (GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(body))) {
+      return inputStream.readAllBytes();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package ust.tad.dockerplugin.models.tadm;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class TechnologyAgnosticDeploymentModelTest {
+
+  @Test
+  public void lookupsFollowChangesThroughTheModel() {
+    TechnologyAgnosticDeploymentModel tadm = new TechnologyAgnosticDeploymentModel();
+    ComponentType baseType = createComponentType("BaseType", null);
+    ComponentType oldType = createComponentType("old", baseType);
+    tadm.addComponentTypes(new ArrayList<>(List.of(baseType, oldType)));
+    Component component = createComponent("component", oldType);
+    tadm.addComponents(List.of(component));
+
+    assertSame(component, tadm.getComponentById(component.getId()).orElseThrow());
+    assertSame(oldType, tadm.getComponentTypeByName("old").orElseThrow());
+    assertEquals(List.of(component), new ArrayList<>(tadm.getComponentsOfType(oldType)));
+    assertEquals(List.of(oldType), new ArrayList<>(tadm.getComponentTypesWithParentType(baseType)));
+
+    ComponentType newType = createComponentType("new", baseType);
+    tadm.addComponentTypes(List.of(newType));
+    tadm.setTypeOfComponent(component, newType);
+    tadm.removeComponentTypeIfUnused(oldType);
+    tadm.setNameOfComponentType(newType, "renamed");
+
+    assertFalse(tadm.getComponentTypes().contains(oldType));
+    assertTrue(tadm.getComponentTypeByName("old").isEmpty());
+    assertTrue(tadm.getComponentTypeByName("new").isEmpty());
+    assertSame(newType, tadm.getComponentTypeByName("renamed").orElseThrow());
+    assertSame(newType, tadm.getComponentTypeById(newType.getId()));
+    assertEquals(List.of(component), new ArrayList<>(tadm.getComponentsOfType(newType)));
+  }
+
+  @Test
+  public void addComponentTypesMergesTypesWithSameName() {
+    TechnologyAgnosticDeploymentModel tadm = new TechnologyAgnosticDeploymentModel();
+    ComponentType baseType = createComponentType("BaseType", null);
+    ComponentType existingType = createComponentType("shared", baseType);
+    tadm.addComponentTypes(new ArrayList<>(List.of(baseType, existingType)));
+
+    TechnologyAgnosticDeploymentModel otherTADM = new TechnologyAgnosticDeploymentModel();
+    ComponentType duplicateType = createComponentType("shared", null);
+    ComponentType childType = createComponentType("child", duplicateType);
+    Component component = createComponent("component", duplicateType);
+    otherTADM.setComponentTypes(new ArrayList<>(List.of(duplicateType, childType)));
+    otherTADM.setComponents(new ArrayList<>(List.of(component)));
+
+    tadm.addFromOtherTADM(otherTADM);
+
+    assertEquals(3, tadm.getComponentTypes().size());
+    assertSame(existingType, component.getType());
+    assertSame(existingType, childType.getParentType());
+    assertEquals(List.of(component), new ArrayList<>(tadm.getComponentsOfType(existingType)));
+    assertEquals(
+        List.of(childType), new ArrayList<>(tadm.getComponentTypesWithParentType(existingType)));
+  }
+
+  @Test
+  public void indexIsRebuiltAfterDirectListChanges() {
+    TechnologyAgnosticDeploymentModel tadm = new TechnologyAgnosticDeploymentModel();
+    ComponentType type = createComponentType("type", null);
+    tadm.addComponentTypes(new ArrayList<>(List.of(type)));
+    assertTrue(tadm.getComponentsOfType(type).isEmpty());
+
+    Component component = createComponent("component", type);
+    tadm.getComponents().add(component);
+
+    assertSame(component, tadm.getComponentById(component.getId()).orElseThrow());
+    assertEquals(1, tadm.getComponentsOfType(type).size());
+  }
+
+  @Test
+  public void removeComponentTypesIfUnusedKeepsUsedTypes() {
+    TechnologyAgnosticDeploymentModel tadm = new TechnologyAgnosticDeploymentModel();
+    ComponentType baseType = createComponentType("BaseType", null);
+    ComponentType usedType = createComponentType("used", baseType);
+    ComponentType unusedType = createComponentType("unused", baseType);
+    tadm.addComponentTypes(new ArrayList<>(List.of(baseType, usedType, unusedType)));
+    tadm.addComponents(List.of(createComponent("component", usedType)));
+
+    tadm.removeComponentTypesIfUnused(List.of(baseType, usedType, unusedType));
+
+    assertEquals(List.of(baseType, usedType), tadm.getComponentTypes());
+    assertTrue(tadm.getComponentTypeByName("unused").isEmpty());
+    assertEquals(List.of(usedType), new ArrayList<>(tadm.getComponentTypesWithParentType(baseType)));
+  }
+
+  @Test
+  public void changesCascadeFromComponentTypesToComponentsAndChildTypes() {
+    TechnologyAgnosticDeploymentModel tadm = new TechnologyAgnosticDeploymentModel();
+    ComponentType baseType = createComponentType("BaseType", null);
+    ComponentType parentType = createComponentType("parent", baseType);
+    ComponentType childType = createComponentType("child", parentType);
+    ComponentType unusedType = createComponentType("unused", baseType);
+    tadm.addComponentTypes(new ArrayList<>(List.of(baseType, parentType, childType, unusedType)));
+    Component unchanged = createComponent("unchanged", baseType);
+    Component ofChildType = createComponent("ofChildType", childType);
+    Component marked = createComponent("marked", baseType);
+    tadm.addComponents(List.of(unchanged, ofChildType, marked));
+    tadm.startChangeTracking();
+
+    tadm.setNameOfComponentType(parentType, "renamed");
+    tadm.removeComponentTypeIfUnused(unusedType);
+    ComponentType addedType = createComponentType("added", baseType);
+    tadm.addComponentTypes(List.of(addedType));
+    tadm.markComponentChanged(marked);
+
+    ModelChanges changes = tadm.describeChanges().orElseThrow();
+    assertEquals(List.of(3), changes.getRemovedComponentTypeIndexes());
+    assertEquals(
+        List.of(parentType, childType),
+        new ArrayList<>(changes.getReplacedComponentTypes().values()));
+    assertEquals(List.of(1, 2), new ArrayList<>(changes.getReplacedComponentTypes().keySet()));
+    assertEquals(List.of(addedType), changes.getAddedComponentTypes());
+    assertEquals(List.of(1, 2), new ArrayList<>(changes.getReplacedComponents().keySet()));
+    assertTrue(changes.getRemovedComponentIndexes().isEmpty());
+    assertTrue(changes.getAddedComponents().isEmpty());
+  }
+
+  @Test
+  public void changesAreNotDescribedAfterReordering() {
+    TechnologyAgnosticDeploymentModel tadm = new TechnologyAgnosticDeploymentModel();
+    ComponentType first = createComponentType("first", null);
+    ComponentType second = createComponentType("second", null);
+    tadm.addComponentTypes(new ArrayList<>(List.of(first, second)));
+    assertTrue(tadm.describeChanges().isEmpty());
+
+    tadm.startChangeTracking();
+    assertTrue(tadm.describeChanges().orElseThrow().isEmpty());
+    tadm.getComponentTypes().sort((a, b) -> b.getName().compareTo(a.getName()));
+
+    assertTrue(tadm.describeChanges().isEmpty());
+  }
+
+  private ComponentType createComponentType(String name, ComponentType parentType) {
+    ComponentType componentType = new ComponentType();
+    componentType.setName(name);
+    componentType.setParentType(parentType);
+    return componentType;
+  }
+
+  private Component createComponent(String name, ComponentType type) {
+    Component component = new Component();
+    component.setName(name);
+    component.setType(type);
+    return component;
+  }
+}